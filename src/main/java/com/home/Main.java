@@ -1,24 +1,62 @@
 package com.home;
 
 import com.home.bot.PaymentBot;
+import com.home.bot.command.BulkCommandHandler;
 import com.home.bot.command.CancelCommandHandler;
 import com.home.bot.command.HelpCommandHandler;
+import com.home.bot.command.PayCommandHandler;
 import com.home.bot.command.StartCommandHandler;
 import com.home.bot.command.StatusCommandHandler;
+import com.home.bot.cluster.UpdateGateway;
+import com.home.bot.cluster.UpdateWorker;
 import com.home.bot.common.MessageSenderImpl;
-import com.home.bot.session.SessionManager;
+import com.home.bot.common.OutboundQueue;
+import com.home.bot.common.TelegramTransport;
+import com.home.bot.dispatch.ChatLaneExecutor;
+import com.home.bot.dispatch.HandlerRegistry;
+import com.home.bot.dispatch.UpdateDeduplicator;
+import com.home.bot.inline.InlineQueryHandler;
+import com.home.bot.receive.PollingReceiver;
+import com.home.bot.receive.WebhookServer;
+import com.home.bot.session.InMemorySessionStore;
+import com.home.bot.session.RedisSessionStore;
+import com.home.bot.session.SessionReaper;
+import com.home.bot.session.api.SessionStore;
 import com.home.bot.state.NameInputHandler;
 import com.home.bot.state.PriceInputHandler;
 import com.home.bot.state.QuantityInputHandler;
 import com.home.config.BotConfig;
+import com.home.config.BulkConfig;
+import com.home.config.ClusterConfig;
+import com.home.config.DedupConfig;
+import com.home.config.DispatchConfig;
+import com.home.config.InlineConfig;
+import com.home.config.JournalConfig;
+import com.home.config.KeyboardConfig;
+import com.home.config.OutboundConfig;
+import com.home.config.PollingConfig;
+import com.home.config.PriceCatalogConfig;
+import com.home.config.ReceiveMode;
+import com.home.config.RedisConfig;
+import com.home.config.SessionConfig;
 import com.home.config.StripeConfig;
+import com.home.config.StripeRetryConfig;
+import com.home.config.TelegramTransportConfig;
+import com.home.config.WebhookConfig;
+import com.home.stripe.PooledStripeHttpClient;
+import com.home.stripe.PriceCatalog;
 import com.home.stripe.StripeLinkCreator;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.telegram.telegrambots.meta.TelegramBotsApi;
-import org.telegram.telegrambots.updatesreceivers.DefaultBotSession;
+import org.telegram.telegrambots.bots.DefaultBotOptions;
+import org.telegram.telegrambots.meta.api.methods.updates.SetWebhook;
+import org.telegram.telegrambots.meta.api.objects.Update;
 
+import java.io.IOException;
 import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 /**
  * Entry point for the Telegram PaymentBot application. Loads configuration, builds the bot
@@ -39,65 +77,339 @@ public class Main {
         // 1. Load configuration files for bot and Stripe
         var botConfig = BotConfig.load();
         var stripeConfig = StripeConfig.load();
+        var dispatchConfig = DispatchConfig.load();
+        var receiveMode = ReceiveMode.load();
+        var sessionConfig = SessionConfig.load();
+        var journalConfig = JournalConfig.load();
+        var redisConfig = RedisConfig.load();
+        var clusterConfig = ClusterConfig.load();
+        var bulkConfig = BulkConfig.load(stripeConfig.threads());
 
         log.info(
-                "Config loaded: bot.username={}, stripe.successUrl={}, stripe.cancelUrl={}",
+                "Config loaded: bot.username={}, stripe.successUrl={}, stripe.cancelUrl={}, "
+                        + "dispatch.workerThreads={}, dispatch.queueCapacity={}, receiveMode={}, "
+                        + "session.ttl={}, session.journal={}, session.redis={}, cluster.role={}",
                 botConfig.username(),
                 stripeConfig.successUrl(),
-                stripeConfig.cancelUrl());
+                stripeConfig.cancelUrl(),
+                dispatchConfig.workerThreads(),
+                dispatchConfig.queueCapacity(),
+                receiveMode,
+                sessionConfig.ttl(),
+                journalConfig.enabled() ? journalConfig.directory() : "disabled",
+                redisConfig.enabled() ? redisConfig.host() + ":" + redisConfig.port() : "disabled",
+                clusterConfig.role());
 
-        // 2. Create shared services
-        var stripeLinkCreator = new StripeLinkCreator(stripeConfig);
-        var telegramBot = buildPaymentBot(stripeLinkCreator, botConfig);
+        // 2. A gateway only receives and forwards; it needs no handlers or sessions
+        if (clusterConfig.role() == ClusterConfig.Role.GATEWAY) {
+            startGateway(botConfig, receiveMode, clusterConfig);
+            return;
+        }
+
+        // 3. Create shared services
+        var stripeHttpClient =
+                new PooledStripeHttpClient(stripeConfig.connectTimeout(), stripeConfig.timeout());
+        // Warm the product index so repeat items reference their Stripe Price from the first link
+        var priceCatalog = new PriceCatalog(PriceCatalogConfig.load());
+        log.info("Loaded {} catalog prices", priceCatalog.load());
+        var stripeLinkCreator =
+                new StripeLinkCreator(
+                        stripeConfig, StripeRetryConfig.load(), priceCatalog, stripeHttpClient);
+        // Open the Stripe connection now so the first payment link skips the TLS handshake
+        stripeHttpClient.warmUp();
+        var updateExecutor = new ChatLaneExecutor(dispatchConfig);
+
+        // Restore unfinished sessions before any update can touch them
+        SessionStore sessionStore =
+                redisConfig.enabled()
+                        ? new RedisSessionStore(sessionConfig, redisConfig)
+                        : new InMemorySessionStore(sessionConfig, journalConfig);
+        var recoveryStarted = System.nanoTime();
+        var restored = sessionStore.recover();
+        log.info(
+                "Restored {} sessions in {} ms",
+                restored,
+                (System.nanoTime() - recoveryStarted) / 1_000_000);
+        Runtime.getRuntime().addShutdownHook(new Thread(sessionStore::close, "session-shutdown"));
+
+        var telegramBot =
+                buildPaymentBot(
+                        stripeLinkCreator,
+                        updateExecutor,
+                        sessionStore,
+                        botConfig,
+                        sessionConfig,
+                        bulkConfig);
+
+        // 4. A worker takes its updates from the gateway instead of Telegram
+        if (clusterConfig.role() == ClusterConfig.Role.WORKER) {
+            var worker = new UpdateWorker(clusterConfig, telegramBot::onUpdateReceived);
+            worker.start();
+            Runtime.getRuntime().addShutdownHook(new Thread(worker::stop, "worker-shutdown"));
+            return;
+        }
+
+        // 5. Start receiving updates; handler wiring is identical in both modes
+        startReceiving(telegramBot, telegramBot::onUpdateReceived, botConfig, receiveMode);
+    }
 
-        // 3. Register bot with Telegram API
+    /**
+     * Starts the receiver for the configured mode, logging instead of failing if registration with
+     * Telegram fails.
+     *
+     * @param telegramBot    the bot used to talk to Telegram
+     * @param updateConsumer receives every update
+     * @param botConfig      provides the update types to request
+     * @param receiveMode    polling or webhook
+     */
+    private static void startReceiving(
+            PaymentBot telegramBot,
+            Consumer<Update> updateConsumer,
+            BotConfig botConfig,
+            ReceiveMode receiveMode) {
         try {
-            var botsApi = new TelegramBotsApi(DefaultBotSession.class);
-            botsApi.registerBot(telegramBot);
-            log.info("Bot successfully registered.");
+            switch (receiveMode) {
+                case POLLING ->
+                        startPolling(telegramBot, updateConsumer, botConfig, PollingConfig.load());
+                case WEBHOOK ->
+                        startWebhook(telegramBot, updateConsumer, botConfig, WebhookConfig.load());
+            }
         } catch (Exception e) {
             log.error("Failed to register bot: {}", e.getMessage(), e);
         }
     }
 
+    /**
+     * Runs this process as the single Telegram receiver that forwards updates to workers by chat.
+     *
+     * @param botConfig     token and update types
+     * @param receiveMode   polling or webhook
+     * @param clusterConfig worker listener and routing settings
+     */
+    private static void startGateway(
+            BotConfig botConfig, ReceiveMode receiveMode, ClusterConfig clusterConfig) {
+        var gateway = new UpdateGateway(clusterConfig);
+        try {
+            gateway.start();
+        } catch (IOException e) {
+            log.error("Failed to start gateway: {}", e.getMessage(), e);
+            return;
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(gateway::stop, "gateway-shutdown"));
+
+        // The bot shell is only used to call the Telegram API, never to handle updates
+        var telegramBot = attachTransports(new PaymentBot(botConfig), botConfig);
+        startReceiving(telegramBot, gateway::forward, botConfig, receiveMode);
+    }
+
+    /**
+     * Gives the bot separate, tuned connection pools for polling and for all other calls, and logs
+     * their statistics periodically.
+     *
+     * @param telegramBot the bot whose Telegram calls should use the pools
+     * @param botConfig   provides the bot token
+     * @return the same bot
+     */
+    private static PaymentBot attachTransports(PaymentBot telegramBot, BotConfig botConfig) {
+        var transportConfig = TelegramTransportConfig.load(PollingConfig.load());
+        var methodUrl = telegramBot.getOptions().getBaseUrl() + botConfig.token() + "/";
+        var sendTransport =
+                new TelegramTransport(
+                        "send",
+                        methodUrl,
+                        transportConfig.sendConnections(),
+                        transportConfig.socketTimeout(),
+                        transportConfig);
+        var pollTransport =
+                new TelegramTransport(
+                        "poll",
+                        methodUrl,
+                        transportConfig.pollConnections(),
+                        transportConfig.pollSocketTimeout(),
+                        transportConfig);
+        Runtime.getRuntime()
+                .addShutdownHook(
+                        new Thread(
+                                () -> {
+                                    sendTransport.close();
+                                    pollTransport.close();
+                                },
+                                "transport-shutdown"));
+
+        if (transportConfig.statsInterval() != null) {
+            var statsLogger =
+                    Executors.newSingleThreadScheduledExecutor(
+                            runnable -> {
+                                var thread = new Thread(runnable, "transport-stats");
+                                thread.setDaemon(true);
+                                return thread;
+                            });
+            var intervalSeconds = transportConfig.statsInterval().toSeconds();
+            statsLogger.scheduleAtFixedRate(
+                    () -> {
+                        sendTransport.logStats();
+                        pollTransport.logStats();
+                    },
+                    intervalSeconds,
+                    intervalSeconds,
+                    TimeUnit.SECONDS);
+        }
+        return telegramBot.withTransports(sendTransport, pollTransport);
+    }
+
+    /**
+     * Removes any webhook and starts the pipelined long-polling receiver.
+     *
+     * @param telegramBot    the bot used to call getUpdates
+     * @param updateConsumer receives every update
+     * @param botConfig      provides the update types to request
+     * @param pollingConfig  batch size, timeout and offset persistence settings
+     * @throws Exception if the webhook cannot be removed
+     */
+    private static void startPolling(
+            PaymentBot telegramBot,
+            Consumer<Update> updateConsumer,
+            BotConfig botConfig,
+            PollingConfig pollingConfig)
+            throws Exception {
+        telegramBot.clearWebhook();
+
+        var receiver =
+                new PollingReceiver(
+                        telegramBot,
+                        pollingConfig,
+                        botConfig.allowedUpdates(),
+                        updateConsumer);
+        receiver.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(receiver::stop, "polling-shutdown"));
+        log.info("Bot successfully registered for long polling.");
+    }
+
+    /**
+     * Starts the embedded webhook listener and, if a public URL is configured, registers it with
+     * Telegram. Without a public URL the listener only accepts locally POSTed updates.
+     *
+     * @param telegramBot    the bot used to register the webhook
+     * @param updateConsumer receives every update
+     * @param botConfig      provides the update types to request
+     * @param webhookConfig  listener and registration settings
+     * @throws Exception if the listener cannot start or registration fails
+     */
+    private static void startWebhook(
+            PaymentBot telegramBot,
+            Consumer<Update> updateConsumer,
+            BotConfig botConfig,
+            WebhookConfig webhookConfig)
+            throws Exception {
+        var webhookServer = new WebhookServer(webhookConfig, updateConsumer);
+        webhookServer.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(webhookServer::stop, "webhook-shutdown"));
+
+        if (webhookConfig.publicUrl() == null || webhookConfig.publicUrl().isBlank()) {
+            log.warn("bot.webhook.url is not set; webhook not registered with Telegram.");
+            return;
+        }
+
+        telegramBot.execute(
+                SetWebhook.builder()
+                        .url(webhookConfig.publicUrl() + webhookConfig.path())
+                        .secretToken(webhookConfig.secretToken())
+                        .allowedUpdates(botConfig.allowedUpdates())
+                        .build());
+        log.info("Bot successfully registered for webhook at {}.", webhookConfig.publicUrl());
+    }
+
     /**
      * Builds and wires the PaymentBot with handlers and dependencies.
      *
      * @param stripeLinkCreator helper to create Stripe payment links
+     * @param updateExecutor    executor running updates in per-chat lanes
+     * @param sessionStore      session store, already recovered
      * @param botConfig         configuration for the bot (token, username)
+     * @param sessionConfig     session TTL and expiry notification settings
+     * @param bulkConfig        /bulk admins and limits
      * @return fully configured PaymentBot
      */
     private static PaymentBot buildPaymentBot(
-            StripeLinkCreator stripeLinkCreator, BotConfig botConfig) {
-        // Instantiate the bot shell
-        var paymentBot = new PaymentBot(botConfig);
+            StripeLinkCreator stripeLinkCreator,
+            ChatLaneExecutor updateExecutor,
+            SessionStore sessionStore,
+            BotConfig botConfig,
+            SessionConfig sessionConfig,
+            BulkConfig bulkConfig) {
+        // Instantiate the bot shell; executeAsync needs a client thread per in-flight request
+        var outboundConfig = OutboundConfig.load();
+        var botOptions = new DefaultBotOptions();
+        botOptions.setMaxThreads(outboundConfig.window());
+        var paymentBot = attachTransports(new PaymentBot(botConfig, botOptions), botConfig);
 
-        // Set up message sender (used by handlers)
-        var messageSender = new MessageSenderImpl(paymentBot);
+        // Set up message sender (used by handlers); replies are paced within Telegram's limits
+        var outboundQueue = new OutboundQueue(paymentBot, outboundConfig);
+        Runtime.getRuntime().addShutdownHook(new Thread(outboundQueue::close, "outbound-shutdown"));
+        var messageSender = new MessageSenderImpl(outboundQueue);
 
-        // Set up session manager (manages user state)
-        var sessionManager = new SessionManager();
+        // Evict abandoned in-memory sessions in the background; notices go through the chat's lane.
+        // Shared stores expire sessions server-side.
+        if (sessionStore instanceof InMemorySessionStore inMemorySessionStore) {
+            var sessionReaper =
+                    new SessionReaper(
+                            inMemorySessionStore,
+                            chatId -> {
+                                if (sessionConfig.notifyOnExpiry()) {
+                                    updateExecutor.execute(
+                                            chatId,
+                                            () ->
+                                                    messageSender.send(
+                                                            chatId,
+                                                            "Your session has expired. Please send /start to begin again."));
+                                }
+                            });
+            sessionReaper.start();
+        }
 
-        // Register command handlers (/start, /help, /cancel, /status)
+        // Register command handlers (/start, /help, /cancel, /status, /pay, /bulk); the flow's
+        // prompts offer inline buttons for common currencies and quantities
+        var keyboardConfig = KeyboardConfig.load();
         var commandHandlers =
                 List.of(
                         new HelpCommandHandler(messageSender),
-                        new StartCommandHandler(sessionManager, messageSender),
-                        new CancelCommandHandler(sessionManager, messageSender),
-                        new StatusCommandHandler(sessionManager, messageSender));
+                        new StartCommandHandler(sessionStore, messageSender, keyboardConfig),
+                        new CancelCommandHandler(sessionStore, messageSender),
+                        new StatusCommandHandler(sessionStore, messageSender),
+                        new PayCommandHandler(stripeLinkCreator, messageSender),
+                        new BulkCommandHandler(
+                                bulkConfig, stripeLinkCreator, messageSender, paymentBot));
 
         // Register state input handlers (price, name, quantity)
         var stateHandlers =
                 List.of(
-                        new PriceInputHandler(sessionManager, messageSender),
-                        new NameInputHandler(sessionManager, messageSender),
-                        new QuantityInputHandler(sessionManager, stripeLinkCreator, messageSender));
+                        new PriceInputHandler(sessionStore, messageSender),
+                        new NameInputHandler(sessionStore, messageSender, keyboardConfig),
+                        new QuantityInputHandler(sessionStore, stripeLinkCreator, messageSender));
+
+        // Build the dispatch index once; fails fast on duplicate commands or states
+        var handlerRegistry =
+                new HandlerRegistry(botConfig.username(), commandHandlers, stateHandlers);
+
+        // Answer inline-mode queries; links are only created for results the user sends
+        var inlineQueryHandler =
+                new InlineQueryHandler(InlineConfig.load(), outboundQueue, stripeLinkCreator);
+        Runtime.getRuntime()
+                .addShutdownHook(new Thread(inlineQueryHandler::close, "inline-shutdown"));
+
+        // Drop redelivered updates before they can send replies or create links twice
+        var updateDeduplicator = new UpdateDeduplicator(DedupConfig.load());
+        log.info("Update dedup window restored up to update {}", updateDeduplicator.highest());
+        Runtime.getRuntime()
+                .addShutdownHook(new Thread(updateDeduplicator::close, "dedup-shutdown"));
 
         // Inject dependencies into the bot instance
         return paymentBot
+                .withUpdateDeduplicator(updateDeduplicator)
                 .withMessageSender(messageSender)
-                .withSessionManager(sessionManager)
-                .withCommandHandlers(commandHandlers)
-                .withStateHandlers(stateHandlers);
+                .withUpdateExecutor(updateExecutor)
+                .withInlineQueryHandler(inlineQueryHandler)
+                .withSessionStore(sessionStore)
+                .withHandlerRegistry(handlerRegistry);
     }
 }
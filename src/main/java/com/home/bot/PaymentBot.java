@@ -1,27 +1,44 @@
 package com.home.bot;
 
-import com.home.bot.command.api.CommandHandler;
+import com.home.bot.dispatch.CallbackData;
+import com.home.bot.dispatch.ChatLaneExecutor;
+import com.home.bot.dispatch.HandlerRegistry;
+import com.home.bot.dispatch.UpdateDeduplicator;
+import com.home.bot.inline.InlineQueryHandler;
+import com.home.bot.common.TelegramTransport;
 import com.home.bot.common.api.MessageSender;
-import com.home.bot.session.SessionManager;
-import com.home.bot.state.api.StateInputHandler;
+import com.home.bot.session.api.SessionStore;
 import com.home.config.BotConfig;
+import org.telegram.telegrambots.bots.DefaultBotOptions;
 import org.telegram.telegrambots.bots.TelegramLongPollingBot;
+import org.telegram.telegrambots.meta.api.methods.BotApiMethod;
+import org.telegram.telegrambots.meta.api.methods.updates.GetUpdates;
+import org.telegram.telegrambots.meta.api.objects.CallbackQuery;
+import org.telegram.telegrambots.meta.api.objects.Document;
 import org.telegram.telegrambots.meta.api.objects.Update;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
 
-import java.util.List;
+import java.io.Serializable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 /**
  * PaymentBot is a Telegram bot that guides users through payment link creation via Stripe. It
- * handles both command messages (e.g. /start, /help) and stateful user input.
+ * handles command messages (e.g. /start, /help), stateful user input, presses of the inline
+ * buttons offered along the way and inline-mode queries typed in other chats.
  */
 public class PaymentBot extends TelegramLongPollingBot {
 
     private final BotConfig botConfig;
 
-    private SessionManager sessionManager;
-    private List<CommandHandler> commandHandlers;
-    private List<StateInputHandler> stateHandlers;
+    private SessionStore sessionStore;
+    private HandlerRegistry handlerRegistry;
     private MessageSender messageSender;
+    private ChatLaneExecutor updateExecutor;
+    private UpdateDeduplicator updateDeduplicator;
+    private InlineQueryHandler inlineQueryHandler;
+    private TelegramTransport sendTransport;
+    private TelegramTransport pollTransport;
 
     /**
      * Constructs a basic PaymentBot instance. Handlers and dependencies must be injected via
@@ -34,53 +51,199 @@ public class PaymentBot extends TelegramLongPollingBot {
         this.botConfig = botConfig;
     }
 
+    /**
+     * Constructs a PaymentBot whose Telegram client uses the given options, e.g. enough threads
+     * for {@code executeAsync} to keep several requests in flight.
+     *
+     * @param botConfig the configuration used to initialize the bot
+     * @param options   Telegram client settings
+     */
+    public PaymentBot(BotConfig botConfig, DefaultBotOptions options) {
+        super(options, botConfig.token());
+        this.botConfig = botConfig;
+    }
+
     @Override
     public String getBotUsername() {
         return botConfig.username();
     }
 
     /**
-     * Called by Telegram when an update (message) is received. Delegates to either a command handler
-     * or a state handler, or sends fallback if unmatched.
+     * Calls a Bot API method over the bot's own transports when they are set: getUpdates over the
+     * polling pool, everything else over the sending pool.
+     */
+    @Override
+    public <T extends Serializable, Method extends BotApiMethod<T>> T execute(Method method)
+            throws TelegramApiException {
+        if (sendTransport == null) {
+            return super.execute(method);
+        }
+        return transportFor(method).execute(method);
+    }
+
+    /**
+     * Calls a Bot API method on the client's worker threads, over the bot's own transports when
+     * they are set.
+     */
+    @Override
+    public <T extends Serializable, Method extends BotApiMethod<T>>
+            CompletableFuture<T> executeAsync(Method method) throws TelegramApiException {
+        if (sendTransport == null) {
+            return super.executeAsync(method);
+        }
+        var transport = transportFor(method);
+        return CompletableFuture.supplyAsync(
+                () -> {
+                    try {
+                        return transport.execute(method);
+                    } catch (TelegramApiException e) {
+                        throw new CompletionException(e);
+                    }
+                },
+                exe);
+    }
+
+    private TelegramTransport transportFor(BotApiMethod<?> method) {
+        return method instanceof GetUpdates ? pollTransport : sendTransport;
+    }
+
+    /**
+     * Called by Telegram when an update (message or button press) is received. Hands the update to
+     * the chat's serial lane so that a slow chat never holds up the receiving thread or other
+     * chats. An update already received once is dropped before anything is sent or created.
      *
      * @param update the Telegram update
      */
     @Override
     public void onUpdateReceived(Update update) {
+        if (updateDeduplicator != null
+                && update.getUpdateId() != null
+                && !updateDeduplicator.firstSeen(update.getUpdateId())) {
+            return;
+        }
+        // Inline queries are debounced per user and never touch chat lanes or sessions
+        if (update.hasInlineQuery()) {
+            if (inlineQueryHandler != null) {
+                inlineQueryHandler.onQuery(update.getInlineQuery());
+            }
+            return;
+        }
+        if (update.hasChosenInlineQuery()) {
+            if (inlineQueryHandler != null) {
+                inlineQueryHandler.onChosen(update.getChosenInlineQuery());
+            }
+            return;
+        }
+        if (update.hasCallbackQuery()) {
+            var query = update.getCallbackQuery();
+            if (query.getMessage() == null) {
+                // Buttons on inline-mode messages carry no chat; only a placeholder is shown there
+                messageSender.answerCallback(query.getId(), null);
+                return;
+            }
+            var chatId = query.getMessage().getChatId();
+            updateExecutor.execute(chatId, () -> dispatchCallback(chatId, query));
+            return;
+        }
+        if (update.hasMessage() && update.getMessage().hasDocument()) {
+            var message = update.getMessage();
+            var chatId = message.getChatId();
+            var caption = message.getCaption() != null ? message.getCaption().trim() : "";
+            updateExecutor.execute(
+                    chatId, () -> dispatchDocument(chatId, caption, message.getDocument()));
+            return;
+        }
         if (!update.hasMessage() || !update.getMessage().hasText()) return;
 
         var message = update.getMessage();
         var chatId = message.getChatId();
         var text = message.getText().trim();
 
-        // 1. Check if the message is a command like /start or /help
-        for (var handler : commandHandlers) {
-            if (handler.canHandle(text)) {
-                handler.handle(chatId);
-                return;
-            }
+        updateExecutor.execute(chatId, () -> dispatch(chatId, text));
+    }
+
+    /**
+     * Delegates a text message to either a command handler or a state handler, or sends fallback if
+     * unmatched. Runs on the chat's lane, so calls for the same chat never overlap.
+     *
+     * @param chatId the chat the message came from
+     * @param text   the trimmed message text
+     */
+    private void dispatch(Long chatId, String text) {
+        // 1. Check if the message is a command like /start or /pay 19.99 EUR "Mug"
+        var commandHandler = handlerRegistry.findCommand(text);
+        if (commandHandler != null) {
+            commandHandler.handle(chatId, handlerRegistry.arguments(text));
+            return;
         }
 
         // 2. Check session validity
-        var state = sessionManager.getState(chatId);
-        if (sessionManager.isExpired(chatId)) {
-            sessionManager.clear(chatId);
+        var session = sessionStore.get(chatId);
+        if (sessionStore.isExpired(session)) {
+            sessionStore.clear(chatId, session);
             messageSender.send(chatId, "Your session has expired. Please send /start to begin again.");
             return;
         }
 
         // 3. Delegate input based on user's current state
-        for (var handler : stateHandlers) {
-            if (handler.canHandle(state)) {
-                handler.handle(chatId, text);
-                return;
-            }
+        var stateHandler = handlerRegistry.findStateHandler(session != null ? session.state() : null);
+        if (stateHandler != null) {
+            stateHandler.handle(chatId, session, text);
+            return;
         }
 
         // 4. If input doesn't match anything, show fallback message
         messageSender.send(chatId, "Unexpected input. Please use /help.");
     }
 
+    /**
+     * Delegates a file to the command in its caption, e.g. a CSV sent with the caption /bulk.
+     *
+     * @param chatId   the chat the file came from
+     * @param caption  the trimmed caption, empty if none
+     * @param document the file
+     */
+    private void dispatchDocument(Long chatId, String caption, Document document) {
+        var commandHandler = handlerRegistry.findCommand(caption);
+        if (commandHandler == null) {
+            messageSender.send(chatId, "Unexpected file. To create links from a CSV, use /bulk.");
+            return;
+        }
+        commandHandler.handle(chatId, handlerRegistry.arguments(caption), document);
+    }
+
+    /**
+     * Delegates an inline button press to the handler of the state encoded in its callback data.
+     * The press is only accepted while the session is still in that state and the button belongs
+     * to the session's current prompt, so buttons left on older messages cannot replay input, even
+     * from an earlier pass through the same step. Every press is answered, which stops the
+     * button's spinner.
+     *
+     * @param chatId the chat the pressed button's message is in
+     * @param query  the button press
+     */
+    private void dispatchCallback(Long chatId, CallbackQuery query) {
+        var state = CallbackData.state(query.getData());
+        var session = sessionStore.get(chatId);
+        var stateHandler = handlerRegistry.findStateHandler(state);
+        if (stateHandler == null
+                || session == null
+                || session.state() != state
+                || session.promptId() != query.getMessage().getMessageId()
+                || sessionStore.isExpired(session)) {
+            messageSender.answerCallback(
+                    query.getId(), "This button has expired. Send /start to begin again.");
+            return;
+        }
+
+        messageSender.answerCallback(query.getId(), null);
+        stateHandler.handleCallback(
+                chatId,
+                query.getMessage().getMessageId(),
+                session,
+                CallbackData.payload(query.getData()));
+    }
+
     /**
      * Injects the message sender used to send responses to Telegram users.
      */
@@ -90,26 +253,52 @@ public class PaymentBot extends TelegramLongPollingBot {
     }
 
     /**
-     * Injects the session manager that tracks user state and input.
+     * Injects the HTTP transports used instead of the library's shared client: one for getUpdates
+     * and one for all other calls.
+     */
+    public PaymentBot withTransports(TelegramTransport sendTransport, TelegramTransport pollTransport) {
+        this.sendTransport = sendTransport;
+        this.pollTransport = pollTransport;
+        return this;
+    }
+
+    /**
+     * Injects the executor that runs updates in per-chat order.
+     */
+    public PaymentBot withUpdateExecutor(ChatLaneExecutor updateExecutor) {
+        this.updateExecutor = updateExecutor;
+        return this;
+    }
+
+    /**
+     * Injects the window of seen update IDs; without it redelivered updates are handled again.
+     */
+    public PaymentBot withUpdateDeduplicator(UpdateDeduplicator updateDeduplicator) {
+        this.updateDeduplicator = updateDeduplicator;
+        return this;
+    }
+
+    /**
+     * Injects the handler of inline-mode queries; without it inline queries are ignored.
      */
-    public PaymentBot withSessionManager(SessionManager sessionManager) {
-        this.sessionManager = sessionManager;
+    public PaymentBot withInlineQueryHandler(InlineQueryHandler inlineQueryHandler) {
+        this.inlineQueryHandler = inlineQueryHandler;
         return this;
     }
 
     /**
-     * Injects the list of command handlers that respond to commands like /start.
+     * Injects the session store that tracks user state and input.
      */
-    public PaymentBot withCommandHandlers(List<CommandHandler> commandHandlers) {
-        this.commandHandlers = commandHandlers;
+    public PaymentBot withSessionStore(SessionStore sessionStore) {
+        this.sessionStore = sessionStore;
         return this;
     }
 
     /**
-     * Injects the list of state input handlers that process user input based on state.
+     * Injects the dispatch index of command handlers (e.g. /start) and state input handlers.
      */
-    public PaymentBot withStateHandlers(List<StateInputHandler> stateHandlers) {
-        this.stateHandlers = stateHandlers;
+    public PaymentBot withHandlerRegistry(HandlerRegistry handlerRegistry) {
+        this.handlerRegistry = handlerRegistry;
         return this;
     }
 }
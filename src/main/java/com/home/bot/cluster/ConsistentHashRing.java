@@ -0,0 +1,98 @@
+package com.home.bot.cluster;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Function;
+
+/**
+ * Consistent-hash ring mapping chat IDs to members.
+ *
+ * <p>Each member is placed at several pseudo-random ring positions (virtual nodes); a chat belongs
+ * to the first position at or after its own hash. When a member joins or leaves only the chats
+ * between its positions and their predecessors move, so most chats keep their worker. The ring is
+ * rebuilt on membership changes, which are rare, and read without locking.
+ *
+ * @param <T> member type
+ */
+final class ConsistentHashRing<T> {
+
+    private final int virtualNodes;
+    private final Function<T, String> nameOf;
+    private volatile TreeMap<Long, T> ring = new TreeMap<>();
+
+    /**
+     * @param virtualNodes ring positions per member
+     * @param nameOf       stable member name the positions are derived from
+     */
+    ConsistentHashRing(int virtualNodes, Function<T, String> nameOf) {
+        this.virtualNodes = virtualNodes;
+        this.nameOf = nameOf;
+    }
+
+    /**
+     * Adds a member at its virtual node positions, replacing any member with the same name.
+     */
+    synchronized void add(T member) {
+        var next = new TreeMap<>(ring);
+        var name = nameOf.apply(member);
+        next.values().removeIf(existing -> nameOf.apply(existing).equals(name));
+        for (var i = 0; i < virtualNodes; i++) {
+            next.put(position(name, i), member);
+        }
+        ring = next;
+    }
+
+    /**
+     * Removes the member from all its positions.
+     *
+     * @return true if the member was on the ring
+     */
+    synchronized boolean remove(T member) {
+        var next = new TreeMap<>(ring);
+        var removed = next.values().removeIf(existing -> existing == member);
+        ring = next;
+        return removed;
+    }
+
+    /**
+     * Returns the member responsible for the chat.
+     *
+     * @return the owner, or null if the ring is empty
+     */
+    T route(long chatId) {
+        var current = ring;
+        if (current.isEmpty()) {
+            return null;
+        }
+        Map.Entry<Long, T> owner = current.ceilingEntry(mix(chatId));
+        return owner != null ? owner.getValue() : current.firstEntry().getValue();
+    }
+
+    /**
+     * Returns whether the ring has no members.
+     */
+    boolean isEmpty() {
+        return ring.isEmpty();
+    }
+
+    private static long position(String name, int replica) {
+        var hash = 0xcbf29ce484222325L;
+        for (var b : name.getBytes(StandardCharsets.UTF_8)) {
+            hash = (hash ^ (b & 0xff)) * 0x100000001b3L;
+        }
+        return mix(hash ^ replica * 0x9e3779b97f4a7c15L);
+    }
+
+    /**
+     * Murmur3 fmix64 finalizer; spreads sequential chat IDs over the whole ring.
+     */
+    private static long mix(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return key;
+    }
+}
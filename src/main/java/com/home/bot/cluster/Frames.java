@@ -0,0 +1,48 @@
+package com.home.bot.cluster;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+
+/**
+ * Length-prefixed framing used between the gateway and its workers: a 4-byte big-endian length
+ * followed by the payload. The first frame a worker sends is its UTF-8 name; every frame the
+ * gateway sends is one update as Telegram JSON.
+ *
+ * <p>After its name a worker sends only 8-byte big-endian values, unframed: the ID of each update
+ * it has taken, in the order received, or {@link #LEAVING} once when it stops.
+ */
+final class Frames {
+
+    static final int MAX_FRAME_BYTES = 1 << 20;
+
+    /**
+     * Sent by a worker in place of an update ID to leave the ring; update IDs are never negative.
+     */
+    static final long LEAVING = -1;
+
+    private Frames() {
+    }
+
+    static void write(DataOutputStream out, byte[] payload) throws IOException {
+        out.writeInt(payload.length);
+        out.write(payload);
+    }
+
+    /**
+     * Reads one frame.
+     *
+     * @throws EOFException if the peer closed the connection
+     * @throws IOException  if the frame is larger than {@link #MAX_FRAME_BYTES}
+     */
+    static byte[] read(DataInputStream in) throws IOException {
+        var length = in.readInt();
+        if (length < 0 || length > MAX_FRAME_BYTES) {
+            throw new IOException("Invalid frame length: " + length);
+        }
+        var payload = new byte[length];
+        in.readFully(payload);
+        return payload;
+    }
+}
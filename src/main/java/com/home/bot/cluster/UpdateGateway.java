@@ -0,0 +1,391 @@
+package com.home.bot.cluster;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.home.config.ClusterConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.telegram.telegrambots.meta.api.objects.Update;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Receiving side of a gateway/worker deployment: the single process that talks to Telegram hands
+ * every update to the worker owning its chat.
+ *
+ * <p>Workers connect over TCP and register by name. Chats are assigned on a consistent-hash ring,
+ * so all updates of a chat go to the same worker, in order, and only a fraction of chats move when
+ * a worker joins or leaves. Each worker has a bounded queue drained by its own writer thread; when
+ * the owning worker falls behind, {@link #forward} blocks, which stalls the receiver instead of
+ * buffering without limit.
+ *
+ * <p>Workers acknowledge every update they take. When a worker's connection fails, the updates
+ * sent to it but not acknowledged are re-routed to the chats' new owners ahead of those still
+ * queued for it, so none is lost; an update whose acknowledgement was lost with the connection may
+ * then be handled twice. A worker that stops gracefully is taken off the ring first and drains
+ * what was already sent to it before the gateway closes the connection.
+ *
+ * <p>Ordering is kept per chat while membership is stable. During a rebalance a moved chat's
+ * updates may briefly be handled by the old and the new worker at once; sessions shared through
+ * {@code session.redis.host} keep such handoffs consistent.
+ */
+public class UpdateGateway {
+
+    private static final Logger log = LoggerFactory.getLogger(UpdateGateway.class);
+
+    private static final int HANDSHAKE_TIMEOUT_MILLIS = 5000;
+    private static final long OFFER_TIMEOUT_MILLIS = 100;
+    private static final long NO_WORKER_LOG_INTERVAL_MILLIS = 10_000;
+
+    private final ClusterConfig config;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ConsistentHashRing<WorkerLink> ring;
+    private final Set<WorkerLink> links = ConcurrentHashMap.newKeySet();
+
+    private volatile boolean running;
+    private ServerSocket serverSocket;
+    private long lastNoWorkerLog;
+
+    /**
+     * Creates a gateway; workers can connect once {@link #start()} is called.
+     *
+     * @param config listener address, ring and queue sizes
+     */
+    public UpdateGateway(ClusterConfig config) {
+        this.config = config;
+        this.ring = new ConsistentHashRing<>(config.virtualNodes(), WorkerLink::name);
+    }
+
+    /**
+     * Binds the worker listener and starts accepting workers.
+     *
+     * @throws IOException if the port cannot be bound
+     */
+    public void start() throws IOException {
+        serverSocket =
+                new ServerSocket(
+                        config.gatewayPort(), 50, InetAddress.getByName(config.gatewayHost()));
+        running = true;
+
+        var acceptor = new Thread(this::acceptLoop, "gateway-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        log.info("Gateway accepting workers on {}:{}", config.gatewayHost(), config.gatewayPort());
+    }
+
+    /**
+     * Stops accepting workers and disconnects the connected ones.
+     */
+    public void stop() {
+        running = false;
+        try {
+            serverSocket.close();
+        } catch (IOException ignored) {
+            // Already closed
+        }
+        for (var link : links) {
+            link.close();
+        }
+    }
+
+    /**
+     * Hands the update to the worker owning its chat, blocking while that worker's queue is full or
+     * no worker is connected.
+     *
+     * @param update the update received from Telegram
+     */
+    public void forward(Update update) {
+        byte[] frame;
+        try {
+            frame = objectMapper.writeValueAsBytes(update);
+        } catch (JsonProcessingException e) {
+            log.warn(
+                    "Dropping update {} that cannot be serialized: {}",
+                    update.getUpdateId(),
+                    e.getMessage());
+            return;
+        }
+        deliver(new Pending(routingKey(update), update.getUpdateId(), frame));
+    }
+
+    /**
+     * Returns the number of connected workers.
+     */
+    public int workerCount() {
+        return links.size();
+    }
+
+    private void deliver(Pending pending) {
+        while (running) {
+            var link = ring.route(pending.key());
+            if (link == null) {
+                logNoWorker();
+                sleep(OFFER_TIMEOUT_MILLIS);
+                continue;
+            }
+            try {
+                if (link.queue.offer(pending, OFFER_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                    return;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            // Queue full: the worker is behind or gone; route again in case the ring changed
+        }
+    }
+
+    private void acceptLoop() {
+        while (running) {
+            try {
+                var socket = serverSocket.accept();
+                register(socket);
+            } catch (SocketException e) {
+                if (running) {
+                    log.warn("Gateway listener failed: {}", e.getMessage());
+                }
+            } catch (IOException e) {
+                log.warn("Worker registration failed: {}", e.getMessage());
+            }
+        }
+    }
+
+    private void register(Socket socket) throws IOException {
+        try {
+            socket.setTcpNoDelay(true);
+            socket.setSoTimeout(HANDSHAKE_TIMEOUT_MILLIS);
+            var in = new DataInputStream(socket.getInputStream());
+            var name = new String(Frames.read(in), StandardCharsets.UTF_8);
+            socket.setSoTimeout(0);
+
+            var link = new WorkerLink(name, socket, in);
+            links.add(link);
+            ring.add(link);
+            link.start();
+            log.info(
+                    "Worker {} joined from {} ({} workers)",
+                    name,
+                    socket.getRemoteSocketAddress(),
+                    links.size());
+        } catch (IOException e) {
+            socket.close();
+            throw e;
+        }
+    }
+
+    private void logNoWorker() {
+        var now = System.currentTimeMillis();
+        if (now - lastNoWorkerLog >= NO_WORKER_LOG_INTERVAL_MILLIS) {
+            lastNoWorkerLog = now;
+            log.warn("No workers connected; holding updates until one joins");
+        }
+    }
+
+    /**
+     * Chooses the ID updates are partitioned by: the chat for chat-bound updates, the user for
+     * inline updates, which have no chat.
+     */
+    private static long routingKey(Update update) {
+        if (update.hasMessage()) {
+            return update.getMessage().getChatId();
+        }
+        if (update.hasEditedMessage()) {
+            return update.getEditedMessage().getChatId();
+        }
+        if (update.hasCallbackQuery()) {
+            var query = update.getCallbackQuery();
+            return query.getMessage() != null
+                    ? query.getMessage().getChatId()
+                    : query.getFrom().getId();
+        }
+        if (update.hasInlineQuery()) {
+            return update.getInlineQuery().getFrom().getId();
+        }
+        if (update.hasChosenInlineQuery()) {
+            return update.getChosenInlineQuery().getFrom().getId();
+        }
+        return update.getUpdateId();
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private record Pending(long key, long updateId, byte[] frame) {
+    }
+
+    /**
+     * One connected worker: a bounded queue, a writer thread draining it, and a reader thread that
+     * takes the worker's acknowledgements and notices when it disconnects.
+     */
+    private final class WorkerLink {
+        private final String name;
+        private final Socket socket;
+        private final DataInputStream in;
+        private final BlockingQueue<Pending> queue;
+        // Written to the socket, oldest first; bounded by the socket buffers, as the worker only
+        // reads as fast as it takes updates
+        private final ConcurrentLinkedQueue<Pending> unacked = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean closed = new AtomicBoolean();
+        private volatile boolean draining;
+        private Thread writer;
+
+        private WorkerLink(String name, Socket socket, DataInputStream in) {
+            this.name = name;
+            this.socket = socket;
+            this.in = in;
+            this.queue = new ArrayBlockingQueue<>(config.workerQueueCapacity());
+        }
+
+        private String name() {
+            return name;
+        }
+
+        private void start() {
+            writer = new Thread(this::writeLoop, "gateway-writer-" + name);
+            var reader = new Thread(this::readLoop, "gateway-reader-" + name);
+            writer.setDaemon(true);
+            reader.setDaemon(true);
+            writer.start();
+            reader.start();
+        }
+
+        private void writeLoop() {
+            DataOutputStream out = null;
+            try {
+                out =
+                        new DataOutputStream(
+                                new BufferedOutputStream(socket.getOutputStream(), 64 * 1024));
+                while (!closed.get()) {
+                    var pending = queue.take();
+                    // Tracked before it is written, so a failed write leaves it to be re-routed
+                    unacked.add(pending);
+                    Frames.write(out, pending.frame());
+                    // Coalesce a burst into one flush
+                    if (queue.isEmpty()) {
+                        out.flush();
+                    }
+                }
+            } catch (IOException e) {
+                log.warn("Worker {} connection failed: {}", name, e.getMessage());
+                leave();
+            } catch (InterruptedException e) {
+                // Interrupted by leave(), or by drain(), which needs what was written to arrive
+                if (draining && !closed.get()) {
+                    try {
+                        out.flush();
+                    } catch (IOException failed) {
+                        log.warn("Worker {} connection failed: {}", name, failed.getMessage());
+                        leave();
+                    }
+                }
+            }
+        }
+
+        /**
+         * Takes the worker's acknowledgements until it disconnects, or until it asked to leave and
+         * has acknowledged everything sent to it.
+         */
+        private void readLoop() {
+            try {
+                while (!draining || !unacked.isEmpty()) {
+                    var updateId = in.readLong();
+                    if (updateId == Frames.LEAVING) {
+                        drain();
+                    } else {
+                        acknowledge(updateId);
+                    }
+                }
+            } catch (IOException ignored) {
+                // Treated like end of stream
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            leave();
+        }
+
+        /**
+         * Forgets the acknowledged update and any older one; acknowledgements arrive in the order
+         * updates were written.
+         */
+        private void acknowledge(long updateId) {
+            Pending acked;
+            do {
+                acked = unacked.poll();
+            } while (acked != null && acked.updateId() != updateId);
+        }
+
+        /**
+         * Stops sending to a worker that asked to leave, so that what it has been sent is all it
+         * still has to acknowledge.
+         */
+        private void drain() throws InterruptedException {
+            draining = true;
+            ring.remove(this);
+            writer.interrupt();
+            writer.join();
+            log.info("Worker {} leaving; waiting for {} updates", name, unacked.size());
+        }
+
+        /**
+         * Takes the worker off the ring and re-routes what it has not acknowledged, then what was
+         * still queued for it. Called by both the reader and the writer; whichever comes second
+         * re-routes what the first one missed.
+         */
+        private void leave() {
+            if (closed.compareAndSet(false, true)) {
+                ring.remove(this);
+                links.remove(this);
+                closeSocket();
+                writer.interrupt();
+                log.info("Worker {} left ({} workers)", name, links.size());
+            }
+
+            var orphaned = new ArrayList<Pending>();
+            Pending sent;
+            while ((sent = unacked.poll()) != null) {
+                orphaned.add(sent);
+            }
+            queue.drainTo(orphaned);
+            if (running && !orphaned.isEmpty()) {
+                log.info("Re-routing {} updates not taken by worker {}", orphaned.size(), name);
+                for (var pending : orphaned) {
+                    deliver(pending);
+                }
+            }
+        }
+
+        private void close() {
+            closed.set(true);
+            closeSocket();
+        }
+
+        private void closeSocket() {
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+                // Nothing useful to do when closing a broken connection
+            }
+        }
+    }
+}
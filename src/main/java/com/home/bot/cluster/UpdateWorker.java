@@ -0,0 +1,150 @@
+package com.home.bot.cluster;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.home.config.ClusterConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.telegram.telegrambots.meta.api.objects.Update;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Consumer;
+
+/**
+ * Handling side of a gateway/worker deployment: connects to the gateway, registers under the
+ * configured name and passes every forwarded update to the local handler stack.
+ *
+ * <p>Updates are read one at a time on a single thread, so when the consumer blocks (the update
+ * executor is full) the socket stops being read and TCP flow control pushes back to the gateway.
+ * Each update is acknowledged once the consumer has taken it, even if the consumer failed, so the
+ * gateway re-routes only updates this worker never took. The connection is re-established with
+ * exponential backoff if the gateway goes away.
+ */
+public class UpdateWorker {
+
+    private static final Logger log = LoggerFactory.getLogger(UpdateWorker.class);
+
+    private static final int CONNECT_TIMEOUT_MILLIS = 5000;
+    private static final long MIN_BACKOFF_MILLIS = 500;
+    private static final long MAX_BACKOFF_MILLIS = 30_000;
+    private static final long DRAIN_TIMEOUT_MILLIS = 10_000;
+
+    private final ClusterConfig config;
+    private final Consumer<Update> updateConsumer;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private volatile boolean running;
+    private volatile DataOutputStream output;
+    private Thread thread;
+
+    /**
+     * Creates a worker that delivers forwarded updates to the given consumer.
+     *
+     * @param config         gateway address and worker name
+     * @param updateConsumer receives each update, in the order the gateway forwarded them
+     */
+    public UpdateWorker(ClusterConfig config, Consumer<Update> updateConsumer) {
+        this.config = config;
+        this.updateConsumer = updateConsumer;
+    }
+
+    /**
+     * Starts connecting to the gateway in the background.
+     */
+    public void start() {
+        running = true;
+        thread = new Thread(this::runLoop, "gateway-worker");
+        thread.start();
+    }
+
+    /**
+     * Leaves the gateway gracefully: signals the gateway to take this worker off the ring, handles
+     * the updates already sent, then returns once the gateway has closed the connection (or after
+     * a timeout). Updates the gateway still had queued are re-routed to other workers.
+     */
+    public void stop() {
+        running = false;
+        var current = output;
+        if (current != null) {
+            try {
+                synchronized (current) {
+                    current.writeLong(Frames.LEAVING);
+                    current.flush();
+                }
+            } catch (IOException ignored) {
+                // Not connected; nothing to drain
+            }
+        }
+        try {
+            thread.join(DRAIN_TIMEOUT_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        thread.interrupt();
+    }
+
+    private void runLoop() {
+        var backoff = MIN_BACKOFF_MILLIS;
+        while (running) {
+            try (var connection = new Socket()) {
+                connection.setTcpNoDelay(true);
+                connection.connect(
+                        new InetSocketAddress(config.gatewayHost(), config.gatewayPort()),
+                        CONNECT_TIMEOUT_MILLIS);
+
+                var out =
+                        new DataOutputStream(
+                                new BufferedOutputStream(connection.getOutputStream(), 8 * 1024));
+                Frames.write(out, config.workerName().getBytes(StandardCharsets.UTF_8));
+                out.flush();
+                output = out;
+                log.info(
+                        "Registered with gateway {}:{} as {}",
+                        config.gatewayHost(),
+                        config.gatewayPort(),
+                        config.workerName());
+                backoff = MIN_BACKOFF_MILLIS;
+
+                var in =
+                        new DataInputStream(
+                                new BufferedInputStream(connection.getInputStream(), 64 * 1024));
+                // Keep reading after stop() until the gateway closes, so nothing sent is dropped
+                while (true) {
+                    var update = objectMapper.readValue(Frames.read(in), Update.class);
+                    try {
+                        updateConsumer.accept(update);
+                    } catch (RuntimeException e) {
+                        log.error("Failed to handle update {}", update.getUpdateId(), e);
+                    }
+                    synchronized (out) {
+                        out.writeLong(update.getUpdateId());
+                        // Coalesce the acknowledgements of a burst into one flush
+                        if (in.available() == 0) {
+                            out.flush();
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                if (!running) {
+                    return;
+                }
+                log.warn(
+                        "Gateway connection lost: {}; reconnecting in {} ms",
+                        e.getMessage(),
+                        backoff);
+                try {
+                    Thread.sleep(backoff);
+                } catch (InterruptedException interrupted) {
+                    return;
+                }
+                backoff = Math.min(backoff * 2, MAX_BACKOFF_MILLIS);
+            }
+        }
+    }
+}
@@ -0,0 +1,517 @@
+package com.home.bot.command;
+
+import com.home.bot.command.api.CommandHandler;
+import com.home.bot.common.TokenBucket;
+import com.home.bot.common.api.MessageSender;
+import com.home.config.BulkConfig;
+import com.home.model.MoneyParser;
+import com.home.model.ProductInfo;
+import com.home.stripe.LinkFailureMessages;
+import com.home.stripe.StripeLinkCreator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.telegram.telegrambots.bots.DefaultAbsSender;
+import org.telegram.telegrambots.meta.api.methods.GetFile;
+import org.telegram.telegrambots.meta.api.methods.send.SendDocument;
+import org.telegram.telegrambots.meta.api.objects.Document;
+import org.telegram.telegrambots.meta.api.objects.InputFile;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Serial;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Handles the /bulk command: creates a payment link for every row of a CSV file sent with the
+ * caption /bulk, and replies with a CSV of the results.
+ *
+ * <p>Each row holds price, currency, name and quantity, e.g. {@code 19.99,EUR,Blue mug,3}; an
+ * optional header row naming these columns is skipped. The file is read as a stream, and a job
+ * stops once more than the configured size has been read, whatever size Telegram reported for it.
+ * Results are written to a temporary file as links complete, so neither is held in memory. Link
+ * requests of a job are started at the configured rate with at most the configured number in
+ * flight, which keeps a large file within Stripe's rate limits and leaves room on the Stripe pool
+ * for interactive users.
+ * Jobs run on their own small pool, never on the chat's update lane, and the first reply is edited
+ * with progress while the job runs. Only the configured admin chats may use the command.
+ */
+public class BulkCommandHandler implements CommandHandler {
+
+    private static final Logger log = LoggerFactory.getLogger(BulkCommandHandler.class);
+
+    private static final LinkFailureMessages FAILURE_MESSAGES =
+            new LinkFailureMessages(
+                    "Bot busy; retry this row",
+                    "Payments temporarily unavailable; retry this row",
+                    "Timed out; retry this row",
+                    "Stripe error: %s");
+
+    private static final List<String> COLUMNS = List.of("price", "currency", "name", "quantity");
+    private static final String RESULT_HEADER = "row,price,currency,name,quantity,link,error";
+    private static final String NOT_ALLOWED =
+            "/bulk is only available to the bot's administrators.";
+
+    private final BulkConfig config;
+    private final StripeLinkCreator stripeLinkCreator;
+    private final MessageSender messageSender;
+    private final DefaultAbsSender files;
+    private final ThreadPoolExecutor jobs;
+
+    /**
+     * Constructs the handler for the /bulk command.
+     *
+     * @param config            concurrency, rate and size limits
+     * @param stripeLinkCreator Stripe payment link generator
+     * @param messageSender     message sender to reply to the user
+     * @param files             Telegram client used to download the upload and send the results
+     */
+    public BulkCommandHandler(
+            BulkConfig config,
+            StripeLinkCreator stripeLinkCreator,
+            MessageSender messageSender,
+            DefaultAbsSender files) {
+        this.config = config;
+        this.stripeLinkCreator = stripeLinkCreator;
+        this.messageSender = messageSender;
+        this.files = files;
+        var threadCount = new AtomicInteger();
+        this.jobs =
+                new ThreadPoolExecutor(
+                        config.jobs(),
+                        config.jobs(),
+                        0,
+                        TimeUnit.MILLISECONDS,
+                        new ArrayBlockingQueue<>(config.jobs()),
+                        runnable -> {
+                            var thread =
+                                    new Thread(runnable, "bulk-" + threadCount.incrementAndGet());
+                            thread.setDaemon(true);
+                            return thread;
+                        });
+    }
+
+    /**
+     * Returns the command this handler responds to.
+     *
+     * @return "bulk"
+     */
+    @Override
+    public String command() {
+        return "bulk";
+    }
+
+    /**
+     * Explains how to send a file, since /bulk on its own carries none, or refuses a chat that is
+     * not an admin.
+     *
+     * @param chatId the Telegram chat ID
+     * @param args   ignored
+     */
+    @Override
+    public void handle(Long chatId, String args) {
+        if (!config.admins().contains(chatId)) {
+            messageSender.send(chatId, NOT_ALLOWED);
+            return;
+        }
+        messageSender.send(
+                chatId,
+                "Send a CSV file with the caption /bulk. Each row: price,currency,name,quantity"
+                        + " (e.g. 19.99,EUR,Blue mug,3). Up to "
+                        + config.maxRows()
+                        + " rows per file.");
+    }
+
+    /**
+     * Queues a job for the uploaded file, or explains why it cannot be processed.
+     *
+     * @param chatId   the Telegram chat ID
+     * @param args     ignored
+     * @param document the uploaded CSV file
+     */
+    @Override
+    public void handle(Long chatId, String args, Document document) {
+        if (!config.admins().contains(chatId)) {
+            log.warn("Refused /bulk file from chat {}: not an admin", chatId);
+            messageSender.send(chatId, NOT_ALLOWED);
+            return;
+        }
+        if (document.getFileSize() != null && document.getFileSize() > config.maxFileBytes()) {
+            messageSender.send(chatId, tooLarge());
+            return;
+        }
+        try {
+            jobs.execute(() -> run(chatId, document));
+        } catch (RejectedExecutionException e) {
+            messageSender.send(
+                    chatId,
+                    "Other bulk files are being processed. Please try again in a few minutes.");
+        }
+    }
+
+    /**
+     * Processes one file from download to the results reply.
+     */
+    private void run(Long chatId, Document document) {
+        // Jobs have their own threads, so waiting for the message here holds up no chat
+        var progressId = messageSender.sendEditable(chatId, "Reading your file…").join();
+        Path results = null;
+        try {
+            results = Files.createTempFile("bulk-links-", ".csv");
+            var outcome = process(chatId, document, results, progressId);
+            var reply =
+                    SendDocument.builder()
+                            .chatId(chatId.toString())
+                            .document(new InputFile(results.toFile(), resultName(document)))
+                            .caption(outcome.summary())
+                            .build();
+            files.execute(reply);
+            messageSender.edit(chatId, progressId, "Done. " + outcome.summary());
+        } catch (FileTooLargeException e) {
+            // Telegram did not report the size, so the limit was only found while reading
+            log.warn("Bulk job for chat {} stopped: {}", chatId, e.getMessage());
+            messageSender.edit(chatId, progressId, tooLarge());
+        } catch (IOException | UncheckedIOException | TelegramApiException e) {
+            log.error("Bulk job for chat {} failed: {}", chatId, e.getMessage());
+            messageSender.edit(
+                    chatId,
+                    progressId,
+                    "Could not process the file. Please check it is a CSV and try again.");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            if (results != null) {
+                try {
+                    Files.deleteIfExists(results);
+                } catch (IOException e) {
+                    log.warn("Failed to delete {}: {}", results, e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Streams the rows of the upload into link requests and their results into the results file.
+     */
+    private Outcome process(Long chatId, Document document, Path results, Integer progressId)
+            throws IOException, TelegramApiException, InterruptedException {
+        var file = files.execute(GetFile.builder().fileId(document.getFileId()).build());
+        var inFlight = new Semaphore(config.concurrency());
+        var bucket = new TokenBucket(config.ratePerSecond(), 1, System.nanoTime());
+        var outcome = new Outcome();
+
+        try (var in =
+                        new BufferedReader(
+                                new InputStreamReader(
+                                        new LimitedInputStream(
+                                                files.downloadFileAsStream(file),
+                                                config.maxFileBytes()),
+                                        StandardCharsets.UTF_8));
+                var out = Files.newBufferedWriter(results, StandardCharsets.UTF_8)) {
+            out.write(RESULT_HEADER);
+            out.newLine();
+            try {
+                readRows(chatId, in, out, outcome, inFlight, bucket, progressId);
+            } finally {
+                // Wait for the last requests before closing the results file
+                inFlight.acquire(config.concurrency());
+            }
+        }
+        return outcome;
+    }
+
+    /**
+     * Starts a link request for every row read from the upload.
+     */
+    private void readRows(
+            Long chatId,
+            BufferedReader in,
+            BufferedWriter out,
+            Outcome outcome,
+            Semaphore inFlight,
+            TokenBucket bucket,
+            Integer progressId)
+            throws IOException, InterruptedException {
+        var progressNanos = config.progressInterval().toNanos();
+        var lastProgress = System.nanoTime();
+        String line;
+        var row = 0;
+        while ((line = in.readLine()) != null) {
+            row++;
+            if (row == 1 && line.startsWith("\uFEFF")) {
+                line = line.substring(1); // Byte order mark written by spreadsheet exports
+            }
+            if (line.isBlank() || row == 1 && isHeader(line)) {
+                continue;
+            }
+            if (outcome.rows >= config.maxRows()) {
+                outcome.skipped++;
+                continue;
+            }
+            outcome.rows++;
+
+            var fields = parseLine(line);
+            ProductInfo product;
+            try {
+                product = toProduct(fields);
+            } catch (IllegalArgumentException e) {
+                write(out, outcome, row, fields, null, e.getMessage());
+                continue;
+            }
+
+            // Pace requests and bound those in flight
+            var now = System.nanoTime();
+            var wait = bucket.nanosUntilAvailable(now);
+            if (wait > 0) {
+                TimeUnit.NANOSECONDS.sleep(wait);
+                now = System.nanoTime();
+            }
+            bucket.tryTake(now);
+            inFlight.acquire();
+            var rowNumber = row;
+            stripeLinkCreator
+                    .createStripeLinkAsync(chatId, product)
+                    .whenComplete(
+                            (url, failure) -> {
+                                try {
+                                    write(
+                                            out,
+                                            outcome,
+                                            rowNumber,
+                                            fields,
+                                            url,
+                                            failure == null
+                                                    ? null
+                                                    : FAILURE_MESSAGES.describe(failure));
+                                } finally {
+                                    inFlight.release();
+                                }
+                            });
+
+            if (now - lastProgress >= progressNanos) {
+                lastProgress = now;
+                messageSender.edit(
+                        chatId,
+                        progressId,
+                        "Working… " + outcome.rows + " rows read, " + outcome.summary());
+            }
+        }
+    }
+
+    /**
+     * Appends one result row; called from the job thread and from Stripe completions.
+     */
+    private static void write(
+            BufferedWriter out,
+            Outcome outcome,
+            int row,
+            List<String> fields,
+            String url,
+            String error) {
+        var line = new StringBuilder(128).append(row);
+        for (var i = 0; i < 4; i++) {
+            line.append(',').append(csvField(i < fields.size() ? fields.get(i) : ""));
+        }
+        line.append(',')
+                .append(csvField(url != null ? url : ""))
+                .append(',')
+                .append(csvField(error != null ? error : ""));
+        synchronized (outcome) {
+            if (error == null) {
+                outcome.created++;
+            } else {
+                outcome.failed++;
+            }
+            try {
+                out.write(line.toString());
+                out.newLine();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    private static ProductInfo toProduct(List<String> fields) {
+        if (fields.size() < 4) {
+            throw new IllegalArgumentException("Expected price,currency,name,quantity");
+        }
+        var price = MoneyParser.parse(fields.get(0), fields.get(1).trim());
+        if (price.minorUnits() <= 0) {
+            throw new IllegalArgumentException("Price must be a positive number");
+        }
+        var name = fields.get(2).trim();
+        if (name.isEmpty()) {
+            throw new IllegalArgumentException("Missing product name");
+        }
+        int quantity;
+        try {
+            quantity = Integer.parseInt(fields.get(3).trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Quantity must be a whole number");
+        }
+        if (quantity <= 0) {
+            throw new IllegalArgumentException("Quantity must be a positive number");
+        }
+        return new ProductInfo(price.minorUnits(), price.currency(), name, quantity);
+    }
+
+    /**
+     * Whether the first line names the columns, as in "Price, Currency, Name, Quantity".
+     */
+    private static boolean isHeader(String line) {
+        var fields = parseLine(line);
+        if (fields.size() != COLUMNS.size()) {
+            return false;
+        }
+        for (var i = 0; i < COLUMNS.size(); i++) {
+            if (!fields.get(i).trim().toLowerCase(Locale.ROOT).equals(COLUMNS.get(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Splits a CSV line into fields, honoring double-quoted fields with "" as an escaped quote.
+     * Records spanning several lines are not supported.
+     */
+    private static List<String> parseLine(String line) {
+        var fields = new ArrayList<String>(4);
+        var field = new StringBuilder();
+        var quoted = false;
+        for (var i = 0; i < line.length(); i++) {
+            var c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    private static String csvField(String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+    private String tooLarge() {
+        return "The file is too large. Please send at most "
+                + config.maxFileBytes() / 1024
+                + " KB.";
+    }
+
+    private static String resultName(Document document) {
+        var name = document.getFileName();
+        if (name == null || name.isBlank()) {
+            return "links.csv";
+        }
+        var dot = name.lastIndexOf('.');
+        return (dot > 0 ? name.substring(0, dot) : name) + "-links.csv";
+    }
+
+    /**
+     * Passes on at most a given number of bytes and fails once a stream holds more.
+     */
+    private static final class LimitedInputStream extends FilterInputStream {
+        private final long limit;
+        private long read;
+
+        private LimitedInputStream(InputStream in, long limit) {
+            super(in);
+            this.limit = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            var b = super.read();
+            if (b >= 0) {
+                count(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            // Ask for one byte past the limit, so a file of exactly the limit still passes
+            var n = super.read(buffer, offset, (int) Math.min(length, limit - read + 1));
+            if (n > 0) {
+                count(n);
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            var skipped = super.skip(Math.min(n, limit - read + 1));
+            count(skipped);
+            return skipped;
+        }
+
+        private void count(long n) throws FileTooLargeException {
+            read += n;
+            if (read > limit) {
+                throw new FileTooLargeException("File exceeds " + limit + " bytes");
+            }
+        }
+    }
+
+    private static final class FileTooLargeException extends IOException {
+        @Serial
+        private static final long serialVersionUID = 1L;
+
+        private FileTooLargeException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * Running totals of a job; guarded by its own monitor.
+     */
+    private static final class Outcome {
+        private int rows;
+        private int skipped;
+        private int created;
+        private int failed;
+
+        private synchronized String summary() {
+            return created
+                    + " links created, "
+                    + failed
+                    + " failed"
+                    + (skipped > 0 ? ", " + skipped + " rows over the limit skipped" : "")
+                    + ".";
+        }
+    }
+}
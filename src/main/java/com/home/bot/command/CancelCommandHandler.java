@@ -2,46 +2,46 @@ package com.home.bot.command;
 
 import com.home.bot.command.api.CommandHandler;
 import com.home.bot.common.api.MessageSender;
-import com.home.bot.session.SessionManager;
+import com.home.bot.session.api.SessionStore;
 
 /**
  * Handles the /cancel command, which resets the user's session state.
  */
 public class CancelCommandHandler implements CommandHandler {
 
-    private final SessionManager sessionManager;
+    private final SessionStore sessionStore;
     private final MessageSender messageSender;
 
     /**
      * Constructs a CancelCommandHandler with the required dependencies.
      *
-     * @param sessionManager the session manager to clear session data
+     * @param sessionStore   the session store to clear session data
      * @param messageSender  the message sender used to notify the user
      */
-    public CancelCommandHandler(SessionManager sessionManager, MessageSender messageSender) {
-        this.sessionManager = sessionManager;
+    public CancelCommandHandler(SessionStore sessionStore, MessageSender messageSender) {
+        this.sessionStore = sessionStore;
         this.messageSender = messageSender;
     }
 
     /**
-     * Checks if this handler is responsible for the given command.
+     * Returns the command this handler responds to.
      *
-     * @param command the command string
-     * @return true if the command is "/cancel", false otherwise
+     * @return "cancel"
      */
     @Override
-    public boolean canHandle(String command) {
-        return "/cancel".equalsIgnoreCase(command);
+    public String command() {
+        return "cancel";
     }
 
     /**
      * Handles the /cancel command by clearing the user session and sending a confirmation message.
      *
      * @param chatId the ID of the chat where the command was issued
+     * @param args   ignored
      */
     @Override
-    public void handle(Long chatId) {
-        sessionManager.clear(chatId);
+    public void handle(Long chatId, String args) {
+        sessionStore.clear(chatId);
         messageSender.send(chatId, "Cancelled.");
     }
 }
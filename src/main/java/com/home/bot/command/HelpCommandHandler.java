@@ -20,23 +20,23 @@ public class HelpCommandHandler implements CommandHandler {
     }
 
     /**
-     * Checks if this handler supports the given command.
+     * Returns the command this handler responds to.
      *
-     * @param command user input text
-     * @return true if the command is "/help"
+     * @return "help"
      */
     @Override
-    public boolean canHandle(String command) {
-        return "/help".equalsIgnoreCase(command);
+    public String command() {
+        return "help";
     }
 
     /**
      * Sends the help message with usage instructions.
      *
      * @param chatId Telegram chat ID to send the message to
+     * @param args   ignored
      */
     @Override
-    public void handle(Long chatId) {
+    public void handle(Long chatId, String args) {
         messageSender.send(
                 chatId,
                 """
@@ -46,6 +46,8 @@ public class HelpCommandHandler implements CommandHandler {
                         /start – Begin payment link creation
                         /cancel – Cancel current operation
                         /status – Check your current input progress
+                        /pay – Create a link in one message, e.g. `/pay 19.99 EUR "Blue mug" x3`
+                        /bulk – Create links for every row of a CSV file sent with this caption
                         /help – Show this help message
                         
                         💡 Input guidance:
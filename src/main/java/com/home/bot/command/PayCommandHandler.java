@@ -0,0 +1,88 @@
+package com.home.bot.command;
+
+import com.home.bot.command.api.CommandHandler;
+import com.home.bot.common.api.MessageSender;
+import com.home.model.ProductInfo;
+import com.home.model.ProductParser;
+import com.home.stripe.LinkFailureMessages;
+import com.home.stripe.StripeLinkCreator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Handles the /pay command, which creates a payment link from a single message, e.g.
+ * {@code /pay 19.99 EUR "Blue mug" x3}.
+ *
+ * <p>The arguments are read by {@link ProductParser}: price and currency, product name and an
+ * optional quantity. No session is created: the link is built from this one update, so the
+ * step-by-step /start flow of the same chat is left untouched.
+ */
+public class PayCommandHandler implements CommandHandler {
+
+    private static final Logger log = LoggerFactory.getLogger(PayCommandHandler.class);
+
+    private static final LinkFailureMessages FAILURE_MESSAGES =
+            LinkFailureMessages.retrying("send the command again");
+
+    private static final String USAGE =
+            "Usage: /pay <price> <currency> <name> [x<quantity>],"
+                    + " e.g. /pay 19.99 EUR \"Blue mug\" x3";
+
+    private final StripeLinkCreator stripeLinkCreator;
+    private final MessageSender messageSender;
+
+    /**
+     * Constructs the handler for the /pay command.
+     *
+     * @param stripeLinkCreator Stripe payment link generator
+     * @param messageSender     message sender to reply to the user
+     */
+    public PayCommandHandler(StripeLinkCreator stripeLinkCreator, MessageSender messageSender) {
+        this.stripeLinkCreator = stripeLinkCreator;
+        this.messageSender = messageSender;
+    }
+
+    /**
+     * Returns the command this handler responds to.
+     *
+     * @return "pay"
+     */
+    @Override
+    public String command() {
+        return "pay";
+    }
+
+    /**
+     * Parses the product from the arguments, replies with a placeholder and edits it into the
+     * payment link once Stripe responds. Invalid arguments are answered with what is wrong and
+     * the usage.
+     *
+     * @param chatId the Telegram chat ID
+     * @param args   the price, currency, name and optional quantity
+     */
+    @Override
+    public void handle(Long chatId, String args) {
+        ProductInfo info;
+        try {
+            info = ProductParser.parse(args);
+        } catch (IllegalArgumentException e) {
+            log.warn("Invalid /pay arguments '{}': {}", args, e.getMessage());
+            messageSender.send(chatId, e.getMessage() + ".\n" + USAGE);
+            return;
+        }
+
+        // Stripe is called while the placeholder waits its turn in the outbound queue
+        var reply =
+                stripeLinkCreator
+                        .createStripeLinkAsync(chatId, info)
+                        .handle(
+                                (url, failure) ->
+                                        failure == null
+                                                ? "Here is your payment link:\n" + url
+                                                : FAILURE_MESSAGES.describe(failure));
+        var placeholder = messageSender.sendEditable(chatId, "Generating your link…");
+        reply.thenAcceptBoth(
+                placeholder,
+                (text, placeholderId) -> messageSender.edit(chatId, placeholderId, text));
+    }
+}
@@ -2,62 +2,82 @@ package com.home.bot.command;
 
 import com.home.bot.command.api.CommandHandler;
 import com.home.bot.common.api.MessageSender;
-import com.home.bot.session.SessionManager;
-import com.home.model.ProductInfo;
+import com.home.bot.dispatch.CallbackData;
+import com.home.bot.session.api.SessionStore;
+import com.home.config.KeyboardConfig;
 import com.home.model.State;
-import com.home.model.TimedProductInfo;
-
-import java.time.Instant;
+import org.telegram.telegrambots.meta.api.objects.replykeyboard.InlineKeyboardMarkup;
 
 /**
  * Handles the /start command, which begins a new payment link session by initializing user session
- * state and prompting for the first input (price and currency).
+ * state and prompting for the first input (price and currency). The prompt offers buttons for
+ * common currencies, so the user can pick one and then type just the amount.
  */
 public class StartCommandHandler implements CommandHandler {
 
-    private final SessionManager sessionManager;
+    private final SessionStore sessionStore;
     private final MessageSender messageSender;
+    private final InlineKeyboardMarkup currencyKeyboard;
 
     /**
      * Constructs a StartCommandHandler with dependencies.
      *
-     * @param sessionManager session manager to store user state
+     * @param sessionStore   session store to store user state
      * @param messageSender  message sender to communicate with the user
+     * @param keyboardConfig currencies offered as buttons
      */
-    public StartCommandHandler(SessionManager sessionManager, MessageSender messageSender) {
-        this.sessionManager = sessionManager;
+    public StartCommandHandler(
+            SessionStore sessionStore, MessageSender messageSender, KeyboardConfig keyboardConfig) {
+        this.sessionStore = sessionStore;
         this.messageSender = messageSender;
+        this.currencyKeyboard =
+                CallbackData.keyboard(State.WAITING_FOR_PRICE, keyboardConfig.currencies());
     }
 
     /**
-     * Determines if this handler is responsible for a given command.
+     * Returns the command this handler responds to.
      *
-     * @param command the user input command
-     * @return true if the command is "/start"
+     * @return "start"
      */
     @Override
-    public boolean canHandle(String command) {
-        return "/start".equalsIgnoreCase(command);
+    public String command() {
+        return "start";
     }
 
     /**
      * Handles the /start command by setting up the initial state and prompting for price.
      *
      * @param chatId the Telegram chat ID
+     * @param args   ignored
      */
     @Override
-    public void handle(Long chatId) {
-        // Set user session state to expect price input
-        sessionManager.updateState(chatId, State.WAITING_FOR_PRICE);
-
-        // Initialize an empty product info with a timestamp
-        var initialInfo = new ProductInfo(0, null, null, 0);
-        sessionManager.updateInfo(chatId, new TimedProductInfo(initialInfo, Instant.now()));
+    public void handle(Long chatId, String args) {
+        // Start a fresh session that expects price input; refused only when the bot is at capacity
+        if (!sessionStore.start(chatId)) {
+            messageSender.send(
+                    chatId, "The bot is busy right now. Please try again in a few minutes.");
+            return;
+        }
 
         // Prompt user to enter price and currency
-        messageSender.send(
-                chatId,
-                "Please enter the price and currency in this format: 10.00 USD. "
-                        + "Supported currencies: https://docs.stripe.com/currencies");
+        var prompt =
+                "Please enter the price and currency in this format: 10.00 USD"
+                        + (currencyKeyboard != null ? ", or pick a currency below. " : ". ")
+                        + "Supported currencies: https://docs.stripe.com/currencies";
+        if (currencyKeyboard == null) {
+            messageSender.send(chatId, prompt);
+            return;
+        }
+        // Only presses on this message are accepted once it is delivered, unless the session has
+        // moved on by then
+        var session = sessionStore.get(chatId);
+        messageSender
+                .sendEditable(chatId, prompt, currencyKeyboard)
+                .thenAccept(
+                        promptId -> {
+                            if (promptId != null) {
+                                sessionStore.recordPrompt(chatId, session, promptId);
+                            }
+                        });
     }
 }
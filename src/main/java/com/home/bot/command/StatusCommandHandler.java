@@ -2,55 +2,57 @@ package com.home.bot.command;
 
 import com.home.bot.command.api.CommandHandler;
 import com.home.bot.common.api.MessageSender;
-import com.home.bot.session.SessionManager;
+import com.home.bot.session.api.SessionStore;
+import com.home.model.MoneyParser;
 
 /**
  * Handles the /status command to display the user's current input progress.
  */
 public class StatusCommandHandler implements CommandHandler {
 
-    private final SessionManager sessionManager;
+    private final SessionStore sessionStore;
     private final MessageSender messageSender;
 
     /**
      * Constructs a new StatusCommandHandler.
      *
-     * @param sessionManager the session manager to retrieve user state and input
+     * @param sessionStore   the session store to retrieve user state and input
      * @param messageSender  the message sender used to reply to the user
      */
-    public StatusCommandHandler(SessionManager sessionManager, MessageSender messageSender) {
-        this.sessionManager = sessionManager;
+    public StatusCommandHandler(SessionStore sessionStore, MessageSender messageSender) {
+        this.sessionStore = sessionStore;
         this.messageSender = messageSender;
     }
 
     /**
-     * Checks if this handler can process the given command.
+     * Returns the command this handler responds to.
      *
-     * @param command the command text
-     * @return true if this is a /status command
+     * @return "status"
      */
     @Override
-    public boolean canHandle(String command) {
-        return "/status".equalsIgnoreCase(command);
+    public String command() {
+        return "status";
     }
 
     /**
      * Handles the /status command by sending the current session input state back to the user.
      *
      * @param chatId the Telegram chat ID
+     * @param args   ignored
      */
     @Override
-    public void handle(Long chatId) {
-        var timedInfo = sessionManager.getInfo(chatId);
-        var state = sessionManager.getState(chatId);
+    public void handle(Long chatId, String args) {
+        var session = sessionStore.get(chatId);
 
-        if (timedInfo == null || state == null || sessionManager.isExpired(chatId)) {
+        if (session == null || sessionStore.isExpired(session)) {
             messageSender.send(chatId, "No active session. Send /start to begin.");
-            sessionManager.clear(chatId);
+            if (session != null) {
+                sessionStore.clear(chatId, session);
+            }
             return;
         }
 
-        var info = timedInfo.info();
+        var info = session.info();
 
         messageSender.send(
                 chatId,
@@ -64,8 +66,10 @@ public class StatusCommandHandler implements CommandHandler {
                                 Product: %s
                                 Quantity: %s
                                 """,
-                        state,
-                        info.price() > 0 ? (info.price() / 100.0) : "(not set)",
+                        session.state(),
+                        info.price() > 0
+                                ? MoneyParser.format(info.price(), info.currency())
+                                : "(not set)",
                         info.currency() != null ? info.currency() : "(not set)",
                         info.name() != null ? info.name() : "(not set)",
                         info.quantity() > 0 ? info.quantity() : "(not set)"));
@@ -1,5 +1,7 @@
 package com.home.bot.command.api;
 
+import org.telegram.telegrambots.meta.api.objects.Document;
+
 /**
  * Represents a handler for a specific bot command (e.g., /start, /help). Implementations of this
  * interface define how to check and respond to a command.
@@ -7,17 +9,31 @@ package com.home.bot.command.api;
 public interface CommandHandler {
 
     /**
-     * Determines whether this handler can process the given command text.
+     * Returns the command name this handler responds to, without the leading slash and in lower
+     * case (e.g. "start" for /start). Used as the dispatch key, so it must be unique among handlers.
      *
-     * @param command the command input string (e.g. "/start")
-     * @return true if the handler can process the command, false otherwise
+     * @return the normalized command name
      */
-    boolean canHandle(String command);
+    String command();
 
     /**
      * Executes the command logic for the specified chat.
      *
      * @param chatId the unique identifier of the chat where the command was invoked
+     * @param args   the trimmed text after the command name, e.g. "19.99 EUR" for "/pay 19.99 EUR";
+     *               empty if the command has no arguments
+     */
+    void handle(Long chatId, String args);
+
+    /**
+     * Executes the command sent as the caption of a file, e.g. a CSV sent with the caption /bulk.
+     * By default the file is ignored and the command runs as if typed.
+     *
+     * @param chatId   the unique identifier of the chat where the command was invoked
+     * @param args     the trimmed caption text after the command name
+     * @param document the attached file
      */
-    void handle(Long chatId);
+    default void handle(Long chatId, String args, Document document) {
+        handle(chatId, args);
+    }
 }
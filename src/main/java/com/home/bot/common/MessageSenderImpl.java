@@ -3,47 +3,205 @@ package com.home.bot.common;
 import com.home.bot.common.api.MessageSender;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.telegram.telegrambots.meta.api.methods.AnswerCallbackQuery;
 import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
-import org.telegram.telegrambots.meta.bots.AbsSender;
-import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
+import org.telegram.telegrambots.meta.api.methods.updatingmessages.EditMessageText;
+import org.telegram.telegrambots.meta.api.objects.Message;
+import org.telegram.telegrambots.meta.api.objects.replykeyboard.ReplyKeyboard;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 /**
- * Default implementation of {@link MessageSender} that uses the Telegram Bot API to send messages
- * to a specific chat.
+ * Default implementation of {@link MessageSender} that uses the Telegram Bot API to send and edit
+ * messages in a specific chat. Messages go through an {@link OutboundQueue}, so sends and edits
+ * return at once, are paced within Telegram's rate limits and are pipelined over the connection.
  */
 public class MessageSenderImpl implements MessageSender {
 
     private static final Logger log = LoggerFactory.getLogger(MessageSenderImpl.class);
 
     /**
-     * The Telegram bot sender instance.
+     * The rate-limited queue messages are sent through.
      */
-    private final AbsSender absSender;
+    private final OutboundQueue outboundQueue;
 
     /**
      * Constructs a new MessageSenderImpl.
      *
-     * @param absSender the underlying Telegram sender (e.g., your bot)
+     * @param outboundQueue the queue delivering messages to Telegram
      */
-    public MessageSenderImpl(AbsSender absSender) {
-        this.absSender = absSender;
+    public MessageSenderImpl(OutboundQueue outboundQueue) {
+        this.outboundQueue = outboundQueue;
     }
 
     /**
-     * Sends a plain text message to the specified Telegram chat.
+     * Queues a plain text message to the specified Telegram chat without waiting for delivery.
      *
      * @param chatId the ID of the chat to send the message to
      * @param text   the message content
      */
     @Override
     public void send(Long chatId, String text) {
-        try {
-            // Build and send the message
-            var message = SendMessage.builder().chatId(chatId.toString()).text(text).build();
+        send(chatId, text, null);
+    }
+
+    /**
+     * Queues a text message with a keyboard without waiting for delivery.
+     *
+     * @param chatId   the ID of the chat to send the message to
+     * @param text     the message content
+     * @param keyboard the keyboard to attach, may be null
+     */
+    @Override
+    public void send(Long chatId, String text, ReplyKeyboard keyboard) {
+        var message =
+                SendMessage.builder()
+                        .chatId(chatId.toString())
+                        .text(text)
+                        .replyMarkup(keyboard)
+                        .build();
+        outboundQueue
+                .submit(chatId, message)
+                .whenComplete(
+                        (sent, failure) -> {
+                            if (failure != null) {
+                                log.error(
+                                        "Failed to send message to {}: {}",
+                                        chatId,
+                                        failure.getMessage());
+                            }
+                        });
+    }
+
+    /**
+     * Answers a callback query at once; answers are not paced like messages.
+     *
+     * @param callbackQueryId the ID of the callback query
+     * @param text            a short notice for the user, may be null
+     */
+    @Override
+    public void answerCallback(String callbackQueryId, String text) {
+        var answer =
+                AnswerCallbackQuery.builder().callbackQueryId(callbackQueryId).text(text).build();
+        outboundQueue
+                .executeNow(answer)
+                .whenComplete(
+                        (answered, failure) -> {
+                            if (failure != null) {
+                                log.warn(
+                                        "Failed to answer callback query {}: {}",
+                                        callbackQueryId,
+                                        failure.getMessage());
+                            }
+                        });
+    }
+
+    /**
+     * Queues a plain text message to the specified Telegram chat.
+     *
+     * @param chatId the ID of the chat to send the message to
+     * @param text   the message content
+     * @return completes with the sent message's ID
+     */
+    @Override
+    public CompletableFuture<Integer> sendAsync(Long chatId, String text) {
+        return sendAsync(chatId, text, null);
+    }
+
+    /**
+     * Queues a plain text message whose ID is reported once it is delivered, so it can be edited
+     * later.
+     *
+     * @param chatId the ID of the chat to send the message to
+     * @param text   the message content
+     * @return completes with the sent message's ID, or with null if sending failed
+     */
+    @Override
+    public CompletableFuture<Integer> sendEditable(Long chatId, String text) {
+        return sendEditable(chatId, text, null);
+    }
 
-            absSender.execute(message);
-        } catch (TelegramApiException e) {
-            log.error("Failed to send message to {}: {}", chatId, e.getMessage());
+    /**
+     * Queues a text message with a keyboard whose ID is reported once it is delivered.
+     *
+     * @param chatId   the ID of the chat to send the message to
+     * @param text     the message content
+     * @param keyboard the keyboard to attach, may be null
+     * @return completes with the sent message's ID, or with null if sending failed
+     */
+    @Override
+    public CompletableFuture<Integer> sendEditable(
+            Long chatId, String text, ReplyKeyboard keyboard) {
+        return sendAsync(chatId, text, keyboard)
+                .exceptionally(
+                        failure -> {
+                            var cause =
+                                    failure instanceof CompletionException
+                                                    && failure.getCause() != null
+                                            ? failure.getCause()
+                                            : failure;
+                            log.error(
+                                    "Failed to send message to {}: {}", chatId, cause.getMessage());
+                            return null;
+                        });
+    }
+
+    private CompletableFuture<Integer> sendAsync(Long chatId, String text, ReplyKeyboard keyboard) {
+        // Build and queue the message
+        var message =
+                SendMessage.builder()
+                        .chatId(chatId.toString())
+                        .text(text)
+                        .replyMarkup(keyboard)
+                        .build();
+
+        return outboundQueue.submit(chatId, message).thenApply(Message::getMessageId);
+    }
+
+    /**
+     * Queues a replacement of the text of an earlier message without waiting for it to apply.
+     *
+     * @param chatId    the chat the message is in
+     * @param messageId the message to edit, may be null
+     * @param text      the new message content
+     */
+    @Override
+    public void edit(Long chatId, Integer messageId, String text) {
+        editAsync(chatId, messageId, text)
+                .whenComplete(
+                        (edited, failure) -> {
+                            if (failure != null) {
+                                log.error(
+                                        "Failed to edit message {} in {}: {}",
+                                        messageId,
+                                        chatId,
+                                        failure.getMessage());
+                            }
+                        });
+    }
+
+    /**
+     * Queues a replacement of the text of an earlier message. Falls back to sending a new message
+     * when there is no message to edit.
+     *
+     * @param chatId    the chat the message is in
+     * @param messageId the message to edit, may be null
+     * @param text      the new message content
+     * @return completes once the message shows the new text
+     */
+    @Override
+    public CompletableFuture<Void> editAsync(Long chatId, Integer messageId, String text) {
+        if (messageId == null) {
+            return sendAsync(chatId, text).thenApply(sentId -> null);
         }
+        var edit =
+                EditMessageText.builder()
+                        .chatId(chatId.toString())
+                        .messageId(messageId)
+                        .text(text)
+                        .build();
+
+        return outboundQueue.submit(chatId, edit).thenApply(edited -> null);
     }
 }
@@ -0,0 +1,424 @@
+package com.home.bot.common;
+
+import com.home.config.OutboundConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.telegram.telegrambots.meta.api.methods.BotApiMethod;
+import org.telegram.telegrambots.meta.bots.AbsSender;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiRequestException;
+
+import java.io.Serializable;
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Queue for requests to Telegram that paces them within the Bot API limits: roughly 30 messages a
+ * second overall and about one a second per chat.
+ *
+ * <p>Each chat has a lane with its own token bucket, and one global bucket covers all chats. A
+ * single dispatcher thread starts the next message of a ready lane once both buckets allow it.
+ * Requests are sent with {@link AbsSender#executeAsync}, so up to a configured window of them are
+ * in flight at once and throughput is bounded by that window rather than by one round trip per
+ * message. Lanes take turns, so a chat with a long backlog does not hold up the others. Each lane
+ * has at most one request in flight, which keeps a chat's messages in order. When
+ * Telegram still answers 429, the message goes back to the head of its lane and the lane pauses
+ * for the {@code retry_after} Telegram asked for. The global bucket pauses too only when another
+ * lane was throttled within the last second, since that points at the overall limit rather than
+ * one busy chat. The number of queued messages is capped; at the
+ * cap {@link #submit} blocks until messages drain, and idle lanes are dropped, so memory stays
+ * bounded under broadcast-sized bursts.
+ *
+ * <p>Every call is timed from start to response; totals are exposed for monitoring and each call
+ * is logged at debug level with its round trip and the time it waited in the queue.
+ */
+public class OutboundQueue {
+
+    private static final Logger log = LoggerFactory.getLogger(OutboundQueue.class);
+
+    private static final int TOO_MANY_REQUESTS = 429;
+    private static final long SWEEP_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private static final long IDLE_WAIT_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private static final long DRAIN_TIMEOUT_MILLIS = 5000;
+    private static final long GLOBAL_THROTTLE_WINDOW_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final AbsSender absSender;
+    private final OutboundConfig config;
+    private final Semaphore capacity;
+    private final Thread dispatcher;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+    private final Map<Long, Lane> lanes = new HashMap<>();
+    private final ArrayDeque<Lane> ready = new ArrayDeque<>();
+    private final PriorityQueue<Lane> waiting =
+            new PriorityQueue<>(Comparator.comparingLong(lane -> lane.readyAt));
+    private final TokenBucket global;
+    private long lastSweep;
+    private int inFlight;
+    private long lastThrottledChat;
+    private long lastThrottledAt;
+    private volatile boolean running = true;
+
+    private final AtomicLong sentCount = new AtomicLong();
+    private final AtomicLong throttledCount = new AtomicLong();
+    private final AtomicLong failedCount = new AtomicLong();
+    private final AtomicLong callCount = new AtomicLong();
+    private final AtomicLong totalCallNanos = new AtomicLong();
+    private final AtomicLong maxCallNanos = new AtomicLong();
+
+    /**
+     * Creates the queue and starts its dispatcher.
+     *
+     * @param absSender the Telegram client requests are executed with
+     * @param config    rate limits, capacity and in-flight window
+     */
+    public OutboundQueue(AbsSender absSender, OutboundConfig config) {
+        this.absSender = absSender;
+        this.config = config;
+        this.capacity = new Semaphore(config.queueCapacity());
+        var now = System.nanoTime();
+        // No global burst: sends are spaced evenly, so no one-second window exceeds the limit
+        this.global = new TokenBucket(config.globalPerSecond(), 1, now);
+        this.lastSweep = now;
+        this.lastThrottledAt = now - GLOBAL_THROTTLE_WINDOW_NANOS;
+        this.dispatcher = new Thread(this::dispatchLoop, "outbound-dispatcher");
+        dispatcher.setDaemon(true);
+        dispatcher.start();
+    }
+
+    /**
+     * Queues a request for the given chat. Blocks only while the queue is at capacity.
+     *
+     * @param chatId the chat the request targets; requests for one chat are sent in order
+     * @param method the request to execute
+     * @param <T>    the response type
+     * @return completes with Telegram's response, or exceptionally if the request failed
+     */
+    public <T extends Serializable> CompletableFuture<T> submit(long chatId, BotApiMethod<T> method) {
+        var future = new CompletableFuture<T>();
+        capacity.acquireUninterruptibly();
+        lock.lock();
+        try {
+            var lane = lanes.computeIfAbsent(chatId, this::newLane);
+            lane.pending.add(new Outgoing<>(method, future));
+            if (!lane.active) {
+                lane.active = true;
+                ready.add(lane);
+                changed.signal();
+            }
+        } finally {
+            lock.unlock();
+        }
+        return future;
+    }
+
+    /**
+     * Executes a request at once, bypassing the rate limits and the queue. Meant for calls that
+     * Telegram does not count as messages and that the user is actively waiting on, such as
+     * answering a callback query while the pressed button shows a spinner.
+     *
+     * @param method the request to execute
+     * @param <T>    the response type
+     * @return completes with Telegram's response, or exceptionally if the request failed
+     */
+    public <T extends Serializable> CompletableFuture<T> executeNow(BotApiMethod<T> method) {
+        try {
+            return absSender.executeAsync(method);
+        } catch (TelegramApiException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * Waits briefly for queued messages to go out, then stops the dispatcher.
+     */
+    public void close() {
+        var deadline = System.currentTimeMillis() + DRAIN_TIMEOUT_MILLIS;
+        while (queuedCount() > 0 && System.currentTimeMillis() < deadline) {
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        running = false;
+        dispatcher.interrupt();
+    }
+
+    /**
+     * Returns the number of messages accepted but not yet sent or given up on.
+     */
+    public int queuedCount() {
+        return config.queueCapacity() - capacity.availablePermits();
+    }
+
+    /**
+     * Returns the number of requests sent and not answered yet.
+     */
+    public int inFlightCount() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the number of requests Telegram accepted.
+     */
+    public long sentCount() {
+        return sentCount.get();
+    }
+
+    /**
+     * Returns the number of 429 answers received despite the pacing.
+     */
+    public long throttledCount() {
+        return throttledCount.get();
+    }
+
+    /**
+     * Returns the number of requests that failed for good.
+     */
+    public long failedCount() {
+        return failedCount.get();
+    }
+
+    /**
+     * Returns the mean round trip of a request in milliseconds, or 0 before the first one.
+     */
+    public double averageLatencyMillis() {
+        var count = callCount.get();
+        return count == 0 ? 0 : totalCallNanos.get() / 1e6 / count;
+    }
+
+    /**
+     * Returns the longest round trip of a request in milliseconds.
+     */
+    public double maxLatencyMillis() {
+        return maxCallNanos.get() / 1e6;
+    }
+
+    private Lane newLane(long chatId) {
+        return new Lane(
+                chatId,
+                new TokenBucket(config.chatPerMinute() / 60.0, config.chatBurst(), System.nanoTime()));
+    }
+
+    private void dispatchLoop() {
+        lock.lock();
+        try {
+            while (running) {
+                var now = System.nanoTime();
+                while (!waiting.isEmpty() && waiting.peek().readyAt <= now) {
+                    ready.add(waiting.poll());
+                }
+                if (now - lastSweep >= SWEEP_INTERVAL_NANOS) {
+                    lastSweep = now;
+                    lanes.values().removeIf(lane -> !lane.active && lane.bucket.isFull(now));
+                }
+
+                if (ready.isEmpty() || inFlight >= config.window()) {
+                    changed.awaitNanos(
+                            waiting.isEmpty() ? IDLE_WAIT_NANOS : waiting.peek().readyAt - now);
+                    continue;
+                }
+                var globalWait = global.nanosUntilAvailable(now);
+                if (globalWait > 0) {
+                    changed.awaitNanos(globalWait);
+                    continue;
+                }
+
+                var lane = ready.poll();
+                var laneWait = lane.bucket.nanosUntilAvailable(now);
+                if (laneWait > 0) {
+                    lane.readyAt = now + laneWait;
+                    waiting.add(lane);
+                    continue;
+                }
+                lane.bucket.tryTake(now);
+                global.tryTake(now);
+                var outgoing = lane.pending.poll();
+                inFlight++;
+                lock.unlock();
+                try {
+                    start(lane, outgoing);
+                } finally {
+                    lock.lock();
+                }
+            }
+        } catch (InterruptedException e) {
+            // Closed
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Sends one request without waiting for the response; {@link #complete} runs when it arrives.
+     */
+    private <T extends Serializable> void start(Lane lane, Outgoing<T> outgoing) {
+        var started = System.nanoTime();
+        CompletableFuture<T> call;
+        try {
+            call = absSender.executeAsync(outgoing.method);
+        } catch (TelegramApiException | RuntimeException e) {
+            call = CompletableFuture.failedFuture(e);
+        }
+        call.whenComplete((response, failure) -> complete(lane, outgoing, started, response, failure));
+    }
+
+    /**
+     * Records the call, settles the caller's future or schedules a retry, then makes the lane
+     * ready again if it has more.
+     */
+    private <T extends Serializable> void complete(
+            Lane lane, Outgoing<T> outgoing, long started, T response, Throwable failure) {
+        var finished = System.nanoTime();
+        var elapsed = finished - started;
+        callCount.incrementAndGet();
+        totalCallNanos.addAndGet(elapsed);
+        maxCallNanos.accumulateAndGet(elapsed, Math::max);
+        var cause =
+                failure instanceof CompletionException && failure.getCause() != null
+                        ? failure.getCause()
+                        : failure;
+        if (log.isDebugEnabled()) {
+            log.debug(
+                    "Telegram {} to chat {} -> {} in {} ms after {} ms queued",
+                    outgoing.method.getMethod(),
+                    lane.chatId,
+                    cause == null ? "ok" : cause.getClass().getSimpleName(),
+                    elapsed / 1_000_000,
+                    (started - outgoing.submittedAt) / 1_000_000);
+        }
+
+        if (cause == null) {
+            sentCount.incrementAndGet();
+            capacity.release();
+            outgoing.future.complete(response);
+        } else if (cause instanceof TelegramApiRequestException e
+                && isTooManyRequests(e)
+                && ++outgoing.attempts < config.maxAttempts()) {
+            throttledCount.incrementAndGet();
+            retryLater(lane, outgoing, retryAfterSeconds(e));
+            return;
+        } else {
+            fail(outgoing, cause);
+        }
+        finish(lane);
+    }
+
+    /**
+     * Puts a throttled message back at the head of its lane and pauses the lane for as long as
+     * Telegram asked; all sending pauses as well if another lane was throttled just before.
+     */
+    private void retryLater(Lane lane, Outgoing<?> outgoing, int retryAfterSeconds) {
+        var now = System.nanoTime();
+        var until = now + TimeUnit.SECONDS.toNanos(retryAfterSeconds);
+        lock.lock();
+        try {
+            var otherChat = lastThrottledChat;
+            var globalLimit =
+                    otherChat != lane.chatId
+                            && now - lastThrottledAt < GLOBAL_THROTTLE_WINDOW_NANOS;
+            lastThrottledChat = lane.chatId;
+            lastThrottledAt = now;
+            if (globalLimit) {
+                log.warn(
+                        "Telegram throttled chats {} and {}; pausing all sends for {} s",
+                        otherChat,
+                        lane.chatId,
+                        retryAfterSeconds);
+                global.pauseUntil(until);
+            } else {
+                log.warn(
+                        "Telegram throttled chat {}; pausing its sends for {} s",
+                        lane.chatId,
+                        retryAfterSeconds);
+            }
+            inFlight--;
+            lane.pending.addFirst(outgoing);
+            lane.bucket.pauseUntil(until);
+            lane.readyAt = until;
+            waiting.add(lane);
+            changed.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void finish(Lane lane) {
+        lock.lock();
+        try {
+            inFlight--;
+            if (lane.pending.isEmpty()) {
+                lane.active = false;
+            } else {
+                ready.add(lane);
+            }
+            changed.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void fail(Outgoing<?> outgoing, Throwable e) {
+        failedCount.incrementAndGet();
+        capacity.release();
+        outgoing.future.completeExceptionally(e);
+    }
+
+    private static boolean isTooManyRequests(TelegramApiRequestException e) {
+        return e.getErrorCode() != null && e.getErrorCode() == TOO_MANY_REQUESTS;
+    }
+
+    private static int retryAfterSeconds(TelegramApiRequestException e) {
+        var parameters = e.getParameters();
+        return parameters != null && parameters.getRetryAfter() != null
+                ? Math.max(1, parameters.getRetryAfter())
+                : 1;
+    }
+
+    /**
+     * One chat's pending messages and rate limit. Active while it is ready, waiting for its bucket
+     * or has a request in flight.
+     */
+    private static final class Lane {
+        private final long chatId;
+        private final TokenBucket bucket;
+        private final ArrayDeque<Outgoing<?>> pending = new ArrayDeque<>();
+        private boolean active;
+        private long readyAt;
+
+        private Lane(long chatId, TokenBucket bucket) {
+            this.chatId = chatId;
+            this.bucket = bucket;
+        }
+    }
+
+    private static final class Outgoing<T extends Serializable> {
+        private final BotApiMethod<T> method;
+        private final CompletableFuture<T> future;
+        private final long submittedAt = System.nanoTime();
+        private int attempts;
+
+        private Outgoing(BotApiMethod<T> method, CompletableFuture<T> future) {
+            this.method = method;
+            this.future = future;
+        }
+    }
+}
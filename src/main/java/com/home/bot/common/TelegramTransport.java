@@ -0,0 +1,240 @@
+package com.home.bot.common;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.home.config.TelegramTransportConfig;
+import org.apache.http.HttpHost;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.ssl.SSLContexts;
+import org.apache.http.util.EntityUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.telegram.telegrambots.meta.api.methods.BotApiMethod;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Serializable;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * HTTP client for Bot API methods with its own tuned connection pool.
+ *
+ * <p>The library's client allows only two connections to api.telegram.org and shares them between
+ * the long poll and every send, so a burst of replies queues behind an open getUpdates call. The
+ * bot keeps one transport for sending and one for polling instead. Connections are kept alive
+ * between calls and reused, idle ones are closed after the configured keep-alive, and an optional
+ * HTTP proxy is honored. The transport counts requests, newly opened connections and requests
+ * that found every pooled connection busy, which gives the reuse rate and pool saturation.
+ */
+public class TelegramTransport implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(TelegramTransport.class);
+
+    private static final int VALIDATE_AFTER_INACTIVITY_MILLIS = 2000;
+
+    private final String name;
+    private final String methodUrl;
+    private final PoolingHttpClientConnectionManager connectionManager;
+    private final CloseableHttpClient httpClient;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final AtomicLong requestCount = new AtomicLong();
+    private final AtomicLong connectionCount = new AtomicLong();
+    private final AtomicLong saturatedCount = new AtomicLong();
+
+    /**
+     * Creates a transport; connections are opened on demand.
+     *
+     * @param name           name used in log lines, e.g. "send"
+     * @param methodUrl      URL method names are appended to, including the bot token and a
+     *                       trailing slash
+     * @param maxConnections connections kept in the pool
+     * @param socketTimeout  time allowed between response packets
+     * @param config         keep-alive, connect timeout and proxy settings
+     */
+    public TelegramTransport(
+            String name,
+            String methodUrl,
+            int maxConnections,
+            Duration socketTimeout,
+            TelegramTransportConfig config) {
+        this.name = name;
+        this.methodUrl = methodUrl;
+
+        var registry =
+                RegistryBuilder.<ConnectionSocketFactory>create()
+                        .register("http", new CountingPlainSocketFactory())
+                        .register("https", new CountingSslSocketFactory())
+                        .build();
+        this.connectionManager = new PoolingHttpClientConnectionManager(registry);
+        connectionManager.setMaxTotal(maxConnections);
+        connectionManager.setDefaultMaxPerRoute(maxConnections);
+        connectionManager.setValidateAfterInactivity(VALIDATE_AFTER_INACTIVITY_MILLIS);
+
+        var keepAliveMillis = config.keepAlive().toMillis();
+        var requestConfig =
+                RequestConfig.custom()
+                        .setConnectTimeout((int) config.connectTimeout().toMillis())
+                        .setConnectionRequestTimeout((int) config.connectTimeout().toMillis())
+                        .setSocketTimeout((int) socketTimeout.toMillis())
+                        .build();
+        var builder =
+                HttpClients.custom()
+                        .setConnectionManager(connectionManager)
+                        .setDefaultRequestConfig(requestConfig)
+                        .setKeepAliveStrategy(
+                                (response, context) -> {
+                                    // Honor a shorter limit announced by the server
+                                    var announced =
+                                            DefaultConnectionKeepAliveStrategy.INSTANCE
+                                                    .getKeepAliveDuration(response, context);
+                                    return announced > 0
+                                            ? Math.min(announced, keepAliveMillis)
+                                            : keepAliveMillis;
+                                })
+                        .evictIdleConnections(keepAliveMillis, TimeUnit.MILLISECONDS)
+                        .evictExpiredConnections()
+                        .disableCookieManagement();
+        if (config.proxyHost() != null) {
+            builder.setProxy(new HttpHost(config.proxyHost(), config.proxyPort()));
+        }
+        this.httpClient = builder.build();
+    }
+
+    /**
+     * Calls a Bot API method and returns its result.
+     *
+     * @param method the method to call
+     * @param <T>    the response type
+     * @return Telegram's result
+     * @throws TelegramApiException if the call fails or Telegram answers with an error
+     */
+    public <T extends Serializable> T execute(BotApiMethod<T> method) throws TelegramApiException {
+        method.validate();
+        var post = new HttpPost(methodUrl + method.getMethod());
+        requestCount.incrementAndGet();
+        var pool = connectionManager.getTotalStats();
+        if (pool.getLeased() >= pool.getMax()) {
+            saturatedCount.incrementAndGet();
+        }
+        try {
+            post.setEntity(
+                    new StringEntity(
+                            objectMapper.writeValueAsString(method), ContentType.APPLICATION_JSON));
+            try (var response = httpClient.execute(post)) {
+                var body = EntityUtils.toString(response.getEntity(), StandardCharsets.UTF_8);
+                return method.deserializeResponse(body);
+            }
+        } catch (IOException e) {
+            throw new TelegramApiException("Unable to execute " + method.getMethod() + " method", e);
+        }
+    }
+
+    /**
+     * Returns the number of calls made.
+     */
+    public long requestCount() {
+        return requestCount.get();
+    }
+
+    /**
+     * Returns the number of connections opened.
+     */
+    public long connectionCount() {
+        return connectionCount.get();
+    }
+
+    /**
+     * Returns the share of calls served on an already open connection, or 0 before the first.
+     */
+    public double reuseRate() {
+        var requests = requestCount.get();
+        return requests == 0 ? 0 : Math.max(0, 1 - (double) connectionCount.get() / requests);
+    }
+
+    /**
+     * Returns the number of calls that found every pooled connection busy and had to wait.
+     */
+    public long saturatedCount() {
+        return saturatedCount.get();
+    }
+
+    /**
+     * Logs the request, reuse and saturation counters and the current pool occupancy.
+     */
+    public void logStats() {
+        var pool = connectionManager.getTotalStats();
+        log.info(
+                "Telegram {} transport: {} requests, {} connections opened ({}% reuse), {} saturated;"
+                        + " pool {}/{} leased, {} waiting",
+                name,
+                requestCount.get(),
+                connectionCount.get(),
+                Math.round(reuseRate() * 100),
+                saturatedCount.get(),
+                pool.getLeased(),
+                pool.getMax(),
+                pool.getPending());
+    }
+
+    @Override
+    public void close() {
+        try {
+            httpClient.close();
+        } catch (IOException e) {
+            log.warn("Failed to close Telegram {} transport: {}", name, e.getMessage());
+        }
+    }
+
+    private final class CountingPlainSocketFactory extends PlainConnectionSocketFactory {
+        @Override
+        public Socket connectSocket(
+                int connectTimeout,
+                Socket socket,
+                HttpHost host,
+                InetSocketAddress remoteAddress,
+                InetSocketAddress localAddress,
+                HttpContext context)
+                throws IOException {
+            connectionCount.incrementAndGet();
+            return super.connectSocket(
+                    connectTimeout, socket, host, remoteAddress, localAddress, context);
+        }
+    }
+
+    private final class CountingSslSocketFactory extends SSLConnectionSocketFactory {
+        private CountingSslSocketFactory() {
+            super(SSLContexts.createSystemDefault());
+        }
+
+        @Override
+        public Socket connectSocket(
+                int connectTimeout,
+                Socket socket,
+                HttpHost host,
+                InetSocketAddress remoteAddress,
+                InetSocketAddress localAddress,
+                HttpContext context)
+                throws IOException {
+            connectionCount.incrementAndGet();
+            return super.connectSocket(
+                    connectTimeout, socket, host, remoteAddress, localAddress, context);
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.home.bot.common;
+
+/**
+ * Token bucket rate limiter: allows bursts of up to {@code burst} operations and a sustained rate of
+ * {@code ratePerSecond}. Times are {@link System#nanoTime()} values passed in by the caller.
+ *
+ * <p>Not thread-safe; callers guard it with their own lock.
+ */
+public class TokenBucket {
+
+    private final double capacity;
+    private final double tokensPerNano;
+    private double tokens;
+    private long refilledAt;
+
+    /**
+     * Creates a full bucket.
+     *
+     * @param ratePerSecond sustained rate, tokens added per second
+     * @param burst         bucket size, at least 1
+     * @param now           current time in nanoseconds
+     */
+    public TokenBucket(double ratePerSecond, double burst, long now) {
+        this.capacity = Math.max(1, burst);
+        this.tokensPerNano = ratePerSecond / 1e9;
+        this.tokens = capacity;
+        this.refilledAt = now;
+    }
+
+    /**
+     * Takes a token if one is available.
+     *
+     * @param now current time in nanoseconds
+     * @return whether a token was taken
+     */
+    public boolean tryTake(long now) {
+        refill(now);
+        if (tokens < 1) {
+            return false;
+        }
+        tokens -= 1;
+        return true;
+    }
+
+    /**
+     * Returns how long until a token is available, or 0 if one is available now.
+     *
+     * @param now current time in nanoseconds
+     */
+    public long nanosUntilAvailable(long now) {
+        refill(now);
+        if (tokens >= 1) {
+            return 0;
+        }
+        return Math.max(0, refilledAt - now) + (long) Math.ceil((1 - tokens) / tokensPerNano);
+    }
+
+    /**
+     * Empties the bucket and stops refilling it until the given time, e.g. after the server asked
+     * to back off.
+     *
+     * @param until time in nanoseconds at which refilling resumes
+     */
+    public void pauseUntil(long until) {
+        tokens = 0;
+        refilledAt = Math.max(refilledAt, until);
+    }
+
+    /**
+     * Returns whether the bucket is full, i.e. forgetting it would not allow a larger burst.
+     *
+     * @param now current time in nanoseconds
+     */
+    public boolean isFull(long now) {
+        refill(now);
+        return tokens >= capacity;
+    }
+
+    private void refill(long now) {
+        if (now > refilledAt) {
+            tokens = Math.min(capacity, tokens + (now - refilledAt) * tokensPerNano);
+            refilledAt = now;
+        }
+    }
+}
@@ -1,10 +1,16 @@
 package com.home.bot.common.api;
 
+import org.telegram.telegrambots.meta.api.objects.replykeyboard.ReplyKeyboard;
+
+import java.util.concurrent.CompletableFuture;
+
 /**
- * Functional interface for sending plain text messages to a Telegram chat. Implementations handle
- * the actual delivery mechanism using Telegram Bot API.
+ * Sends and edits plain text messages in a Telegram chat. Implementations handle the actual
+ * delivery mechanism using Telegram Bot API.
+ *
+ * <p>{@link #send} and {@link #edit} return without waiting for delivery and report failures
+ * themselves; the {@code Async} variants let callers act on the outcome instead.
  */
-@FunctionalInterface
 public interface MessageSender {
 
     /**
@@ -14,4 +20,74 @@ public interface MessageSender {
      * @param text   the message content to send
      */
     void send(Long chatId, String text);
+
+    /**
+     * Sends a text message with buttons attached, e.g. an inline keyboard built with
+     * {@link com.home.bot.dispatch.CallbackData#keyboard}.
+     *
+     * @param chatId   the unique identifier of the target chat
+     * @param text     the message content to send
+     * @param keyboard the inline or reply keyboard to show, or null for none
+     */
+    void send(Long chatId, String text, ReplyKeyboard keyboard);
+
+    /**
+     * Answers an inline button press, which stops the button's loading indicator. Every callback
+     * query must be answered, even when nothing else is sent.
+     *
+     * @param callbackQueryId the ID of the callback query
+     * @param text            a short notice shown to the user, or null for none
+     */
+    void answerCallback(String callbackQueryId, String text);
+
+    /**
+     * Sends a text message and reports when Telegram has accepted it.
+     *
+     * @param chatId the unique identifier of the target chat
+     * @param text   the message content to send
+     * @return completes with the ID of the sent message, or exceptionally if it could not be sent
+     */
+    CompletableFuture<Integer> sendAsync(Long chatId, String text);
+
+    /**
+     * Sends a text message that will be edited later, e.g. a placeholder replaced by a result.
+     *
+     * @param chatId the unique identifier of the target chat
+     * @param text   the message content to send
+     * @return completes with the ID of the sent message, or with null if it could not be sent; never
+     *     exceptionally
+     */
+    CompletableFuture<Integer> sendEditable(Long chatId, String text);
+
+    /**
+     * Sends a text message with buttons attached and returns its ID, e.g. a prompt whose presses
+     * are only accepted while it is the session's current prompt.
+     *
+     * @param chatId   the unique identifier of the target chat
+     * @param text     the message content to send
+     * @param keyboard the inline or reply keyboard to show, or null for none
+     * @return completes with the ID of the sent message, or with null if it could not be sent;
+     *     never exceptionally
+     */
+    CompletableFuture<Integer> sendEditable(Long chatId, String text, ReplyKeyboard keyboard);
+
+    /**
+     * Replaces the text of a message sent earlier by the bot.
+     *
+     * @param chatId    the chat the message is in
+     * @param messageId the message to edit, as returned by {@link #sendEditable}
+     * @param text      the new message content
+     */
+    void edit(Long chatId, Integer messageId, String text);
+
+    /**
+     * Replaces the text of a message sent earlier by the bot and reports when Telegram has applied
+     * it.
+     *
+     * @param chatId    the chat the message is in
+     * @param messageId the message to edit, as returned by {@link #sendEditable}
+     * @param text      the new message content
+     * @return completes once edited, or exceptionally if the edit failed
+     */
+    CompletableFuture<Void> editAsync(Long chatId, Integer messageId, String text);
 }
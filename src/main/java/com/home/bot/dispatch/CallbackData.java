@@ -0,0 +1,93 @@
+package com.home.bot.dispatch;
+
+import com.home.model.State;
+import org.telegram.telegrambots.meta.api.objects.replykeyboard.InlineKeyboardMarkup;
+import org.telegram.telegrambots.meta.api.objects.replykeyboard.buttons.InlineKeyboardButton;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compact encoding of inline button {@code callback_data}: one character for the {@link State} the
+ * button answers, followed by the payload the state handler receives, e.g. "2" + "3" for quantity
+ * 3. Decoding the handler is a single array index with no string parsing, and the state doubles as
+ * a staleness check: a button pressed after the session moved on no longer matches.
+ *
+ * <p>Telegram limits {@code callback_data} to 64 bytes, so payloads are kept short.
+ */
+public final class CallbackData {
+
+    private static final State[] STATES = State.values();
+    private static final char FIRST = '0';
+    private static final int MAX_BYTES = 64;
+    private static final int BUTTONS_PER_ROW = 5;
+
+    private CallbackData() {
+    }
+
+    /**
+     * Encodes a button press for the given state.
+     *
+     * @param state   the state the button is offered in
+     * @param payload the input the button stands for, e.g. "eur" or "3"
+     * @return the callback data
+     * @throws IllegalArgumentException if the encoded data would exceed Telegram's limit
+     */
+    public static String encode(State state, String payload) {
+        var data = (char) (FIRST + state.ordinal()) + payload;
+        if (data.getBytes(StandardCharsets.UTF_8).length > MAX_BYTES) {
+            throw new IllegalArgumentException("Callback payload too long: " + payload);
+        }
+        return data;
+    }
+
+    /**
+     * Decodes the state a button press is for.
+     *
+     * @param data the callback data, may be null
+     * @return the state, or null if the data was not produced by {@link #encode}
+     */
+    public static State state(String data) {
+        if (data == null || data.isEmpty()) {
+            return null;
+        }
+        var index = data.charAt(0) - FIRST;
+        return index >= 0 && index < STATES.length ? STATES[index] : null;
+    }
+
+    /**
+     * Returns the payload of callback data produced by {@link #encode}.
+     */
+    public static String payload(String data) {
+        return data.substring(1);
+    }
+
+    /**
+     * Builds an inline keyboard with one button per option, labelled with the option and carrying
+     * it as payload, up to five buttons per row.
+     *
+     * @param state   the state the buttons are offered in
+     * @param options the button labels and payloads
+     * @return the keyboard, or null if there are no options
+     */
+    public static InlineKeyboardMarkup keyboard(State state, List<String> options) {
+        if (options.isEmpty()) {
+            return null;
+        }
+        var rows = new ArrayList<List<InlineKeyboardButton>>();
+        for (var start = 0; start < options.size(); start += BUTTONS_PER_ROW) {
+            var end = Math.min(options.size(), start + BUTTONS_PER_ROW);
+            var row = new ArrayList<InlineKeyboardButton>(end - start);
+            for (var option : options.subList(start, end)) {
+                row.add(
+                        InlineKeyboardButton.builder()
+                                .text(option)
+                                .callbackData(encode(state, option))
+                                .build());
+            }
+            rows.add(row);
+        }
+        return new InlineKeyboardMarkup(rows);
+    }
+}
@@ -0,0 +1,164 @@
+package com.home.bot.dispatch;
+
+import com.home.config.DispatchConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Executes work in per-chat serial lanes on top of a bounded worker pool.
+ *
+ * <p>Tasks submitted for the same chat run one at a time in submission order, while tasks for
+ * different chats run in parallel. A lane occupies at most one pool slot at a time and yields the
+ * slot after every task, so a chat with a long backlog cannot starve the others. The total number of
+ * accepted tasks is capped; when the cap is reached {@link #execute} blocks the caller (typically the
+ * update receiver), which pushes back on Telegram instead of growing the heap.
+ */
+public class ChatLaneExecutor {
+
+    private static final Logger log = LoggerFactory.getLogger(ChatLaneExecutor.class);
+
+    private final ExecutorService pool;
+    private final int queueCapacity;
+    private final Semaphore capacity;
+    private final Map<Long, Lane> lanes = new ConcurrentHashMap<>();
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    /**
+     * Creates an executor sized from the given configuration.
+     *
+     * @param config worker thread count and queue capacity
+     */
+    public ChatLaneExecutor(DispatchConfig config) {
+        this.queueCapacity = config.queueCapacity();
+        this.capacity = new Semaphore(queueCapacity);
+        this.pool =
+                new ThreadPoolExecutor(
+                        config.workerThreads(),
+                        config.workerThreads(),
+                        0L,
+                        TimeUnit.MILLISECONDS,
+                        new LinkedBlockingQueue<>(),
+                        new WorkerThreadFactory());
+    }
+
+    /**
+     * Submits a task to the lane of the given chat. Blocks while the executor is at capacity.
+     *
+     * @param chatId the chat whose ordering the task must respect
+     * @param task   the work to run
+     */
+    public void execute(long chatId, Runnable task) {
+        capacity.acquireUninterruptibly();
+        while (true) {
+            var lane = lanes.computeIfAbsent(chatId, Lane::new);
+            synchronized (lane) {
+                // A drained lane may be retired between lookup and lock; retry with a fresh one
+                if (lane.retired) {
+                    continue;
+                }
+                lane.tasks.add(task);
+                if (!lane.scheduled) {
+                    lane.scheduled = true;
+                    pool.execute(() -> runNext(lane));
+                }
+                return;
+            }
+        }
+    }
+
+    /**
+     * Returns the number of accepted tasks that have not finished yet.
+     */
+    public int pending() {
+        return queueCapacity - capacity.availablePermits();
+    }
+
+    /**
+     * Returns the number of tasks currently running on worker threads.
+     */
+    public int inFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * Stops accepting pool work and waits briefly for running tasks to finish.
+     */
+    public void shutdown() {
+        pool.shutdown();
+        try {
+            if (!pool.awaitTermination(10, TimeUnit.SECONDS)) {
+                pool.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Runs the head task of a lane, then either reschedules the lane or retires it when empty.
+     */
+    private void runNext(Lane lane) {
+        Runnable task;
+        synchronized (lane) {
+            task = lane.tasks.poll();
+        }
+
+        inFlight.incrementAndGet();
+        try {
+            task.run();
+        } catch (RuntimeException e) {
+            log.error("Update processing failed for chat {}: {}", lane.chatId, e.getMessage(), e);
+        } finally {
+            inFlight.decrementAndGet();
+            capacity.release();
+        }
+
+        synchronized (lane) {
+            if (lane.tasks.isEmpty()) {
+                lane.scheduled = false;
+                lane.retired = true;
+                lanes.remove(lane.chatId, lane);
+            } else {
+                pool.execute(() -> runNext(lane));
+            }
+        }
+    }
+
+    /**
+     * Ordered queue of pending tasks for a single chat.
+     */
+    private static final class Lane {
+        private final long chatId;
+        private final ArrayDeque<Runnable> tasks = new ArrayDeque<>(4);
+        private boolean scheduled;
+        private boolean retired;
+
+        private Lane(long chatId) {
+            this.chatId = chatId;
+        }
+    }
+
+    /**
+     * Names worker threads so they are recognizable in logs and thread dumps.
+     */
+    private static final class WorkerThreadFactory implements ThreadFactory {
+        private final AtomicInteger counter = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            return new Thread(runnable, "update-worker-" + counter.incrementAndGet());
+        }
+    }
+}
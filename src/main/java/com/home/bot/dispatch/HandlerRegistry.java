@@ -0,0 +1,156 @@
+package com.home.bot.dispatch;
+
+import com.home.bot.command.api.CommandHandler;
+import com.home.bot.state.api.StateInputHandler;
+import com.home.model.State;
+
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Dispatch index for command and state handlers, built once at wiring time.
+ *
+ * <p>Commands are looked up by their normalized name, so "/start", "/START", "/start@MyBot" and
+ * "/start foo" all resolve to the same handler with a single hash lookup; {@link #arguments}
+ * returns the text after the command for the handler. State handlers are kept in an
+ * {@link EnumMap}. Registering two handlers for the same key fails fast at startup.
+ */
+public class HandlerRegistry {
+
+    private final String botUsername;
+    // Open-addressed by case-insensitive name hash, so a lookup reads the message text in place
+    private final String[] commandNames;
+    private final CommandHandler[] commandHandlers;
+    private final int commandMask;
+    private final Map<State, StateInputHandler> stateHandlers = new EnumMap<>(State.class);
+
+    /**
+     * Builds the index from the given handlers.
+     *
+     * @param botUsername     the bot's username, accepted as an "@username" command suffix
+     * @param commandHandlers handlers for slash commands
+     * @param stateHandlers   handlers for stateful input
+     * @throws IllegalStateException if two handlers claim the same command or state
+     */
+    public HandlerRegistry(
+            String botUsername,
+            List<CommandHandler> commandHandlers,
+            List<StateInputHandler> stateHandlers) {
+        this.botUsername = botUsername;
+        var capacity = Integer.highestOneBit(Math.max(1, commandHandlers.size()) * 4);
+        this.commandNames = new String[capacity];
+        this.commandHandlers = new CommandHandler[capacity];
+        this.commandMask = capacity - 1;
+
+        for (var handler : commandHandlers) {
+            var key = handler.command().toLowerCase(Locale.ROOT);
+            var slot = slot(key, 0, key.length());
+            var previous = this.commandHandlers[slot];
+            this.commandNames[slot] = key;
+            this.commandHandlers[slot] = handler;
+            if (previous != null) {
+                throw new IllegalStateException(
+                        "Duplicate handlers for command /" + key + ": "
+                                + previous.getClass().getSimpleName() + ", "
+                                + handler.getClass().getSimpleName());
+            }
+        }
+
+        for (var handler : stateHandlers) {
+            var previous = this.stateHandlers.putIfAbsent(handler.state(), handler);
+            if (previous != null) {
+                throw new IllegalStateException(
+                        "Duplicate handlers for state " + handler.state() + ": "
+                                + previous.getClass().getSimpleName() + ", "
+                                + handler.getClass().getSimpleName());
+            }
+        }
+    }
+
+    /**
+     * Finds the handler for a command message.
+     *
+     * @param text the trimmed message text
+     * @return the matching handler, or null if the text is not a known command for this bot
+     */
+    public CommandHandler findCommand(String text) {
+        var nameEnd = commandNameEnd(text);
+        if (nameEnd < 0) {
+            return null;
+        }
+        return commandHandlers[slot(text, 1, nameEnd)];
+    }
+
+    /**
+     * Returns the argument tail of a command message, e.g. "19.99 EUR" for "/pay@MyBot 19.99 EUR".
+     *
+     * @param text the trimmed message text
+     * @return the text after the command token, trimmed; empty if there is none
+     */
+    public String arguments(String text) {
+        var tokenEnd = 1;
+        while (tokenEnd < text.length() && !Character.isWhitespace(text.charAt(tokenEnd))) {
+            tokenEnd++;
+        }
+        return text.substring(tokenEnd).trim();
+    }
+
+    /**
+     * Finds the handler for input in the given state.
+     *
+     * @param state the current session state, may be null
+     * @return the matching handler, or null if no session or no handler for the state
+     */
+    public StateInputHandler findStateHandler(State state) {
+        return state == null ? null : stateHandlers.get(state);
+    }
+
+    /**
+     * Returns the slot holding the command name in {@code text[from, to)}, compared ignoring case,
+     * or the empty slot where it would go.
+     */
+    private int slot(String text, int from, int to) {
+        var length = to - from;
+        var hash = 0;
+        for (var i = from; i < to; i++) {
+            hash = 31 * hash + Character.toLowerCase(text.charAt(i));
+        }
+        var slot = (hash ^ hash >>> 16) & commandMask;
+        while (commandNames[slot] != null
+                && (commandNames[slot].length() != length
+                        || !commandNames[slot].regionMatches(true, 0, text, from, length))) {
+            slot = (slot + 1) & commandMask;
+        }
+        return slot;
+    }
+
+    /**
+     * Returns the index just past the command name in a "/name[@bot] [args]" text, or -1 if the text
+     * is not a command or is addressed to a different bot.
+     */
+    private int commandNameEnd(String text) {
+        if (text.length() < 2 || text.charAt(0) != '/') {
+            return -1;
+        }
+
+        var tokenEnd = 1;
+        while (tokenEnd < text.length() && !Character.isWhitespace(text.charAt(tokenEnd))) {
+            tokenEnd++;
+        }
+
+        var at = text.indexOf('@', 1);
+        if (at < 0 || at >= tokenEnd) {
+            return tokenEnd;
+        }
+
+        // "/start@OtherBot" in a group chat is meant for someone else
+        var mentionLength = tokenEnd - at - 1;
+        if (mentionLength != botUsername.length()
+                || !text.regionMatches(true, at + 1, botUsername, 0, mentionLength)) {
+            return -1;
+        }
+        return at > 1 ? at : -1;
+    }
+}
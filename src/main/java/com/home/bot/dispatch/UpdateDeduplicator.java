@@ -0,0 +1,218 @@
+package com.home.bot.dispatch;
+
+import com.home.config.DedupConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Remembers recently seen update IDs so that an update delivered twice, e.g. a webhook retry or a
+ * batch Telegram sends again after a restart, is handled only once.
+ *
+ * <p>The IDs are kept as a ring bitmap covering the window below the highest ID seen: the bit of an
+ * ID is the ID masked by the window size. Checking an ID is a single bit test; moving the window
+ * forward clears the bits of the IDs it skips, one word at a time, so memory stays fixed at one
+ * bit per ID in the window. IDs are marked when they arrive, before they are handled, so an update
+ * that fails midway is not retried either: a lost reply is preferred to a second payment link.
+ *
+ * <p>Optionally the bitmap lives in a memory-mapped file, so marking an ID makes no system call
+ * and the window survives a process crash; a background task forces changes to disk at a fixed
+ * interval.
+ *
+ * <p>Telegram numbers updates sequentially but picks a random new start after a week without
+ * updates. An ID below the window is therefore taken as such a restart: the window is moved to it
+ * and the update is handled.
+ */
+public class UpdateDeduplicator {
+
+    private static final Logger log = LoggerFactory.getLogger(UpdateDeduplicator.class);
+
+    private static final int MAGIC = 0x55504431; // "UPD1"
+    private static final int HEADER_BYTES = 16;
+    private static final int HIGHEST_OFFSET = 8;
+
+    private final int window;
+    private final int mask;
+    private final ByteBuffer bitmap;
+    private final ScheduledExecutorService flusher;
+    private final AtomicLong duplicateCount = new AtomicLong();
+    private long highest;
+    private volatile boolean dirty;
+
+    /**
+     * Creates the window, restoring it from the configured file if there is one.
+     *
+     * @param config window size and optional file
+     * @throws UncheckedIOException if the file cannot be opened
+     */
+    public UpdateDeduplicator(DedupConfig config) {
+        this.window = config.window();
+        this.mask = window - 1;
+        var bytes = HEADER_BYTES + window / 8;
+
+        if (!config.persistent()) {
+            this.bitmap = ByteBuffer.allocate(bytes);
+            this.flusher = null;
+            reset(-1);
+            return;
+        }
+
+        try {
+            var file = Path.of(config.file());
+            if (file.getParent() != null) {
+                Files.createDirectories(file.getParent());
+            }
+            try (var channel =
+                         FileChannel.open(
+                                 file,
+                                 StandardOpenOption.CREATE,
+                                 StandardOpenOption.READ,
+                                 StandardOpenOption.WRITE)) {
+                if (channel.size() != bytes) {
+                    // Written with another window size; its bits cannot be reused
+                    channel.truncate(0);
+                }
+                this.bitmap = channel.map(FileChannel.MapMode.READ_WRITE, 0, bytes);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open update window " + config.file(), e);
+        }
+        if (bitmap.getInt(0) != MAGIC || bitmap.getInt(4) != window) {
+            reset(-1);
+        } else {
+            highest = bitmap.getLong(HIGHEST_OFFSET);
+        }
+
+        this.flusher =
+                Executors.newSingleThreadScheduledExecutor(
+                        r -> {
+                            var thread = new Thread(r, "update-window-flush");
+                            thread.setDaemon(true);
+                            return thread;
+                        });
+        flusher.scheduleWithFixedDelay(
+                this::flush, config.flushMillis(), config.flushMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Marks an update ID as seen.
+     *
+     * @param updateId the update's ID
+     * @return true if the ID was not seen before and the update should be handled
+     */
+    public synchronized boolean firstSeen(long updateId) {
+        if (highest < 0 || updateId > highest) {
+            advance(updateId);
+        } else if (updateId <= highest - window) {
+            log.warn(
+                    "Update {} is below the window ending at {}; assuming Telegram restarted its"
+                            + " IDs",
+                    updateId,
+                    highest);
+            reset(updateId);
+        } else if (isSet(updateId)) {
+            log.info(
+                    "Dropping duplicate update {} ({} dropped in total)",
+                    updateId,
+                    duplicateCount.incrementAndGet());
+            return false;
+        }
+        set(updateId);
+        dirty = true;
+        return true;
+    }
+
+    /**
+     * Returns the highest update ID seen, or -1 if none.
+     */
+    public synchronized long highest() {
+        return highest;
+    }
+
+    /**
+     * Returns the number of updates dropped as duplicates.
+     */
+    public long duplicateCount() {
+        return duplicateCount.get();
+    }
+
+    /**
+     * Forces outstanding changes to disk and stops the flusher.
+     */
+    public void close() {
+        if (flusher != null) {
+            flusher.shutdown();
+            flush();
+        }
+    }
+
+    /**
+     * Moves the window up to the given ID, clearing the bits of the IDs it passes.
+     */
+    private void advance(long updateId) {
+        if (highest < 0 || updateId - highest >= window) {
+            clearAll();
+        } else {
+            var next = highest + 1;
+            while (next <= updateId) {
+                var bit = (int) (next & mask);
+                var offset = bit & 63;
+                var count = (int) Math.min(64 - offset, updateId - next + 1);
+                var bits = count == 64 ? -1L : ((1L << count) - 1) << offset;
+                var index = wordIndex(bit);
+                bitmap.putLong(index, bitmap.getLong(index) & ~bits);
+                next += count;
+            }
+        }
+        highest = updateId;
+        bitmap.putLong(HIGHEST_OFFSET, highest);
+    }
+
+    private void reset(long updateId) {
+        bitmap.putInt(0, MAGIC).putInt(4, window);
+        clearAll();
+        highest = updateId;
+        bitmap.putLong(HIGHEST_OFFSET, highest);
+        dirty = true;
+    }
+
+    private void clearAll() {
+        for (var index = HEADER_BYTES; index < bitmap.capacity(); index += 8) {
+            bitmap.putLong(index, 0);
+        }
+    }
+
+    private boolean isSet(long updateId) {
+        var bit = (int) (updateId & mask);
+        return (bitmap.getLong(wordIndex(bit)) & (1L << (bit & 63))) != 0;
+    }
+
+    private void set(long updateId) {
+        var bit = (int) (updateId & mask);
+        var index = wordIndex(bit);
+        bitmap.putLong(index, bitmap.getLong(index) | 1L << (bit & 63));
+    }
+
+    private static int wordIndex(int bit) {
+        return HEADER_BYTES + (bit >>> 6) * 8;
+    }
+
+    private void flush() {
+        if (dirty && bitmap instanceof MappedByteBuffer mapped) {
+            dirty = false;
+            mapped.force();
+        }
+    }
+}
@@ -0,0 +1,330 @@
+package com.home.bot.inline;
+
+import com.home.bot.common.OutboundQueue;
+import com.home.config.InlineConfig;
+import com.home.model.MoneyParser;
+import com.home.model.ProductInfo;
+import com.home.model.ProductParser;
+import com.home.stripe.StripeLinkCreator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.telegram.telegrambots.meta.api.methods.AnswerInlineQuery;
+import org.telegram.telegrambots.meta.api.methods.updatingmessages.EditMessageText;
+import org.telegram.telegrambots.meta.api.objects.inlinequery.ChosenInlineQuery;
+import org.telegram.telegrambots.meta.api.objects.inlinequery.InlineQuery;
+import org.telegram.telegrambots.meta.api.objects.inlinequery.inputmessagecontent.InputTextMessageContent;
+import org.telegram.telegrambots.meta.api.objects.inlinequery.result.InlineQueryResultArticle;
+import org.telegram.telegrambots.meta.api.objects.inlinequery.result.InlineQueryResultsButton;
+import org.telegram.telegrambots.meta.api.objects.replykeyboard.InlineKeyboardMarkup;
+import org.telegram.telegrambots.meta.api.objects.replykeyboard.buttons.InlineKeyboardButton;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Answers inline queries such as "@bot 25 USD Consultation" typed in any chat, and creates the
+ * payment link once the user sends the offered result.
+ *
+ * <p>Telegram sends a new query on almost every keystroke. Each user's queries are debounced: a
+ * query is answered only after the user has paused for the configured time, and queries replaced
+ * by a newer one in the meantime are dropped unanswered. Parsed queries are cached by their
+ * normalized text, and answers are not personal, so Telegram may serve a repeated query from its
+ * own cache without asking again. Nothing is sent to Stripe while the user types: the answer only
+ * describes the product, and the link is created when the result is chosen, after which the sent
+ * message is edited to show it. Stripe links are reused per user through
+ * {@link StripeLinkCreator}'s own cache.
+ *
+ * <p>Chosen results are only reported with inline feedback enabled in BotFather and
+ * {@code chosen_inline_result} in the allowed updates.
+ */
+public class InlineQueryHandler {
+
+    private static final Logger log = LoggerFactory.getLogger(InlineQueryHandler.class);
+
+    private static final int MAX_BUTTON_TEXT = 64;
+    private static final String START_PARAMETER = "pay";
+    private static final InlineKeyboardMarkup PENDING_KEYBOARD =
+            new InlineKeyboardMarkup(
+                    List.of(
+                            List.of(
+                                    InlineKeyboardButton.builder()
+                                            .text("Creating link…")
+                                            .callbackData("-")
+                                            .build())));
+
+    private final InlineConfig config;
+    private final OutboundQueue outboundQueue;
+    private final StripeLinkCreator stripeLinkCreator;
+    private final ScheduledExecutorService debouncer;
+    private final Map<Long, InlineQuery> latest = new ConcurrentHashMap<>();
+    private final LinkedHashMap<String, Parsed> parsed;
+
+    private final AtomicLong answeredCount = new AtomicLong();
+    private final AtomicLong supersededCount = new AtomicLong();
+    private final AtomicLong cacheHitCount = new AtomicLong();
+
+    /**
+     * Creates the handler and its debounce thread.
+     *
+     * @param config            debounce and cache settings
+     * @param outboundQueue     queue answers and edits are sent through
+     * @param stripeLinkCreator Stripe payment link generator
+     */
+    public InlineQueryHandler(
+            InlineConfig config, OutboundQueue outboundQueue, StripeLinkCreator stripeLinkCreator) {
+        this.config = config;
+        this.outboundQueue = outboundQueue;
+        this.stripeLinkCreator = stripeLinkCreator;
+        this.debouncer =
+                Executors.newSingleThreadScheduledExecutor(
+                        runnable -> {
+                            var thread = new Thread(runnable, "inline-debounce");
+                            thread.setDaemon(true);
+                            return thread;
+                        });
+        var maxSize = config.cacheSize();
+        this.parsed =
+                new LinkedHashMap<>(16, 0.75f, true) {
+                    @Override
+                    protected boolean removeEldestEntry(Map.Entry<String, Parsed> eldest) {
+                        return size() > maxSize;
+                    }
+                };
+    }
+
+    /**
+     * Accepts a query and answers it once the user stops typing, unless a newer query of the same
+     * user replaces it first.
+     *
+     * @param query the inline query
+     */
+    public void onQuery(InlineQuery query) {
+        var userId = query.getFrom().getId();
+        if (query.getQuery().isBlank()) {
+            latest.remove(userId);
+            return;
+        }
+        if (latest.put(userId, query) != null) {
+            supersededCount.incrementAndGet();
+        }
+        debouncer.schedule(
+                () -> {
+                    // Only the user's latest query is answered
+                    if (latest.remove(userId, query)) {
+                        answer(query);
+                    }
+                },
+                config.debounce().toMillis(),
+                TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Creates the payment link for a result the user sent and edits it into the sent message.
+     *
+     * @param chosen the chosen result, with the query it was offered for
+     */
+    public void onChosen(ChosenInlineQuery chosen) {
+        var inlineMessageId = chosen.getInlineMessageId();
+        var product = parse(normalize(chosen.getQuery())).info();
+        if (inlineMessageId == null || product == null) {
+            return;
+        }
+        var userId = chosen.getFrom().getId();
+        stripeLinkCreator
+                .createStripeLinkAsync(userId, product)
+                .whenComplete(
+                        (url, failure) -> {
+                            var edit = EditMessageText.builder().inlineMessageId(inlineMessageId);
+                            if (failure == null) {
+                                edit.text(describe(product) + "\nPay here: " + url)
+                                        .replyMarkup(payKeyboard(product, url));
+                            } else {
+                                log.warn(
+                                        "Inline payment link for user {} failed: {}",
+                                        userId,
+                                        failure.getMessage());
+                                edit.text(
+                                        describe(product)
+                                                + "\nCould not create the payment link. Please try"
+                                                + " again later.");
+                            }
+                            outboundQueue
+                                    .submit(userId, edit.build())
+                                    .whenComplete(
+                                            (edited, editFailure) -> {
+                                                if (editFailure != null) {
+                                                    log.error(
+                                                            "Failed to edit inline message {}: {}",
+                                                            inlineMessageId,
+                                                            editFailure.getMessage());
+                                                }
+                                            });
+                        });
+    }
+
+    /**
+     * Returns the number of queries answered.
+     */
+    public long answeredCount() {
+        return answeredCount.get();
+    }
+
+    /**
+     * Returns the number of queries dropped because the same user typed on.
+     */
+    public long supersededCount() {
+        return supersededCount.get();
+    }
+
+    /**
+     * Returns the number of answered queries whose text was already parsed.
+     */
+    public long cacheHitCount() {
+        return cacheHitCount.get();
+    }
+
+    /**
+     * Stops the debounce thread; pending queries are dropped.
+     */
+    public void close() {
+        debouncer.shutdownNow();
+    }
+
+    private void answer(InlineQuery query) {
+        var key = normalize(query.getQuery());
+        var result = parse(key);
+        var answer =
+                AnswerInlineQuery.builder()
+                        .inlineQueryId(query.getId())
+                        .cacheTime((int) config.cacheTime().toSeconds())
+                        .isPersonal(false);
+        if (result.info() != null) {
+            answer.result(article(key, result.info()));
+        } else {
+            // No results; the button above the empty list says what is wrong
+            answer.results(List.of())
+                    .button(
+                            InlineQueryResultsButton.builder()
+                                    .text(truncate(result.error()))
+                                    .startParameter(START_PARAMETER)
+                                    .build());
+        }
+        log.debug(
+                "Answering inline query {} ({} answered, {} superseded, {} parse cache hits in"
+                        + " total)",
+                query.getId(),
+                answeredCount.incrementAndGet(),
+                supersededCount.get(),
+                cacheHitCount.get());
+        outboundQueue
+                .executeNow(answer.build())
+                .whenComplete(
+                        (answered, failure) -> {
+                            if (failure != null) {
+                                // Usually the query outlived Telegram's answer deadline
+                                log.debug(
+                                        "Failed to answer inline query {}: {}",
+                                        query.getId(),
+                                        failure.getMessage());
+                            }
+                        });
+    }
+
+    /**
+     * Parses normalized query text, from the cache when it was seen before.
+     */
+    private Parsed parse(String key) {
+        synchronized (parsed) {
+            var cached = parsed.get(key);
+            if (cached != null) {
+                cacheHitCount.incrementAndGet();
+                return cached;
+            }
+        }
+        Parsed result;
+        try {
+            result = new Parsed(ProductParser.parse(key), null);
+        } catch (IllegalArgumentException e) {
+            result = new Parsed(null, e.getMessage());
+        }
+        synchronized (parsed) {
+            parsed.put(key, result);
+        }
+        return result;
+    }
+
+    private static InlineQueryResultArticle article(String key, ProductInfo product) {
+        return InlineQueryResultArticle.builder()
+                .id(Integer.toUnsignedString(key.hashCode(), 36))
+                .title("Payment link: " + amount(product) + " – " + product.name())
+                .description("Quantity " + product.quantity() + ". The link is created when sent.")
+                .inputMessageContent(
+                        InputTextMessageContent.builder()
+                                .messageText(describe(product) + "\nCreating payment link…")
+                                .build())
+                // Telegram only reports an editable message for results with buttons
+                .replyMarkup(PENDING_KEYBOARD)
+                .build();
+    }
+
+    private static InlineKeyboardMarkup payKeyboard(ProductInfo product, String url) {
+        return new InlineKeyboardMarkup(
+                List.of(
+                        List.of(
+                                InlineKeyboardButton.builder()
+                                        .text("Pay " + amount(product))
+                                        .url(url)
+                                        .build())));
+    }
+
+    private static String describe(ProductInfo product) {
+        return product.name() + " – " + amount(product) + " × " + product.quantity();
+    }
+
+    private static String amount(ProductInfo product) {
+        return MoneyParser.format(product.price(), product.currency())
+                + " "
+                + product.currency().toUpperCase(Locale.ROOT);
+    }
+
+    /**
+     * Trims the query and collapses whitespace, so queries differing only in spacing share a cache
+     * entry.
+     */
+    private static String normalize(String query) {
+        var normalized = new StringBuilder(query.length());
+        var space = false;
+        for (var i = 0; i < query.length(); i++) {
+            var c = query.charAt(i);
+            if (Character.isWhitespace(c)) {
+                space = normalized.length() > 0;
+            } else {
+                if (space) {
+                    normalized.append(' ');
+                    space = false;
+                }
+                normalized.append(c);
+            }
+        }
+        return normalized.toString();
+    }
+
+    private static String truncate(String text) {
+        return text.length() <= MAX_BUTTON_TEXT
+                ? text
+                : text.substring(0, MAX_BUTTON_TEXT - 1) + "…";
+    }
+
+    /**
+     * A parsed query: the product, or the reason it could not be parsed.
+     */
+    private record Parsed(ProductInfo info, String error) {
+    }
+}
@@ -0,0 +1,194 @@
+package com.home.bot.receive;
+
+import com.home.config.PollingConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.telegram.telegrambots.meta.api.methods.updates.GetUpdates;
+import org.telegram.telegrambots.meta.api.objects.Update;
+import org.telegram.telegrambots.meta.bots.AbsSender;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.function.Consumer;
+
+/**
+ * Long-polling receiver that keeps the next getUpdates call in flight while the current batch is
+ * being handled.
+ *
+ * <p>A poller thread fetches batches and hands them over through a single-slot queue to a handler
+ * thread, so at most one batch is buffered between the two. Only the configured update types are
+ * requested. The offset of the last handled update is optionally persisted; on restart updates
+ * below it are skipped, so an update is never processed twice even if Telegram redelivers a batch
+ * that was handled but not yet confirmed.
+ */
+public class PollingReceiver {
+
+    private static final Logger log = LoggerFactory.getLogger(PollingReceiver.class);
+
+    private static final long MIN_BACKOFF_MILLIS = 500;
+    private static final long MAX_BACKOFF_MILLIS = 30_000;
+
+    private final AbsSender sender;
+    private final PollingConfig config;
+    private final List<String> allowedUpdates;
+    private final Consumer<Update> updateConsumer;
+    private final BlockingQueue<List<Update>> batches = new ArrayBlockingQueue<>(1);
+    private final Path offsetFile;
+
+    private volatile boolean running;
+    private volatile int handledOffset;
+    private Thread pollerThread;
+    private Thread handlerThread;
+
+    /**
+     * Creates a receiver that delivers updates to the given consumer.
+     *
+     * @param sender         the bot used to call getUpdates
+     * @param config         batch size, timeout and offset persistence settings
+     * @param allowedUpdates update types to request from Telegram
+     * @param updateConsumer receives each update, in update_id order
+     */
+    public PollingReceiver(
+            AbsSender sender,
+            PollingConfig config,
+            List<String> allowedUpdates,
+            Consumer<Update> updateConsumer) {
+        this.sender = sender;
+        this.config = config;
+        this.allowedUpdates = allowedUpdates;
+        this.updateConsumer = updateConsumer;
+        this.offsetFile = config.offsetFile() != null ? Path.of(config.offsetFile()) : null;
+    }
+
+    /**
+     * Restores the persisted offset and starts the poller and handler threads.
+     */
+    public void start() {
+        handledOffset = loadOffset();
+        running = true;
+
+        pollerThread = new Thread(this::pollLoop, "telegram-poller");
+        handlerThread = new Thread(this::handleLoop, "telegram-update-handler");
+        pollerThread.start();
+        handlerThread.start();
+        log.info(
+                "Polling started: offset={}, limit={}, timeout={}s, allowedUpdates={}",
+                handledOffset,
+                config.limit(),
+                config.timeoutSeconds(),
+                allowedUpdates);
+    }
+
+    /**
+     * Stops both threads. Batches fetched but not yet handled are dropped; Telegram redelivers them
+     * unless a later getUpdates already confirmed them.
+     */
+    public void stop() {
+        running = false;
+        pollerThread.interrupt();
+        handlerThread.interrupt();
+    }
+
+    private void pollLoop() {
+        var offset = handledOffset;
+        var backoff = MIN_BACKOFF_MILLIS;
+
+        while (running) {
+            try {
+                var request =
+                        GetUpdates.builder()
+                                .offset(offset)
+                                .limit(config.limit())
+                                .timeout(config.timeoutSeconds())
+                                .allowedUpdates(allowedUpdates)
+                                .build();
+                List<Update> updates = sender.execute(request);
+                backoff = MIN_BACKOFF_MILLIS;
+                if (updates.isEmpty()) {
+                    continue;
+                }
+
+                // Advance before handing over so the next call confirms this batch while it is handled
+                offset = updates.get(updates.size() - 1).getUpdateId() + 1;
+                batches.put(updates);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (TelegramApiException e) {
+                log.warn("getUpdates failed, retrying in {} ms: {}", backoff, e.getMessage());
+                if (!sleep(backoff)) {
+                    return;
+                }
+                backoff = Math.min(backoff * 2, MAX_BACKOFF_MILLIS);
+            }
+        }
+    }
+
+    private void handleLoop() {
+        while (running) {
+            List<Update> batch;
+            try {
+                batch = batches.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+
+            for (var update : batch) {
+                // Already handled before a restart
+                if (update.getUpdateId() < handledOffset) {
+                    continue;
+                }
+                try {
+                    updateConsumer.accept(update);
+                } catch (RuntimeException e) {
+                    log.error("Failed to handle update {}: {}", update.getUpdateId(), e.getMessage(), e);
+                }
+                handledOffset = update.getUpdateId() + 1;
+            }
+            saveOffset(handledOffset);
+        }
+    }
+
+    private int loadOffset() {
+        if (offsetFile == null || !Files.exists(offsetFile)) {
+            return 0;
+        }
+        try {
+            return Integer.parseInt(Files.readString(offsetFile, StandardCharsets.US_ASCII).trim());
+        } catch (IOException | NumberFormatException e) {
+            log.warn("Ignoring unreadable offset file {}: {}", offsetFile, e.getMessage());
+            return 0;
+        }
+    }
+
+    private void saveOffset(int offset) {
+        if (offsetFile == null) {
+            return;
+        }
+        try {
+            var tmp = offsetFile.resolveSibling(offsetFile.getFileName() + ".tmp");
+            Files.writeString(tmp, Integer.toString(offset), StandardCharsets.US_ASCII);
+            Files.move(tmp, offsetFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warn("Failed to persist polling offset {}: {}", offset, e.getMessage());
+        }
+    }
+
+    private static boolean sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.home.bot.receive;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.home.config.WebhookConfig;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.telegram.telegrambots.meta.api.objects.Update;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+/**
+ * Lightweight embedded HTTP endpoint that accepts Telegram update POSTs.
+ *
+ * <p>Each request is authenticated with the secret token Telegram echoes in the
+ * X-Telegram-Bot-Api-Secret-Token header, deserialized into an {@link Update} and handed to the same
+ * consumer the polling receiver uses. Processing happens on the per-chat lanes, so the request
+ * thread only parses and enqueues before acknowledging.
+ */
+public class WebhookServer {
+
+    private static final Logger log = LoggerFactory.getLogger(WebhookServer.class);
+
+    private static final String SECRET_HEADER = "X-Telegram-Bot-Api-Secret-Token";
+
+    private final WebhookConfig config;
+    private final Consumer<Update> updateConsumer;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final byte[] expectedSecret;
+
+    private HttpServer server;
+    private ExecutorService requestExecutor;
+
+    /**
+     * Creates a webhook server that delivers updates to the given consumer.
+     *
+     * @param config         listener port, path and secret token
+     * @param updateConsumer receives each accepted update
+     */
+    public WebhookServer(WebhookConfig config, Consumer<Update> updateConsumer) {
+        this.config = config;
+        this.updateConsumer = updateConsumer;
+        this.expectedSecret = config.secretToken().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Binds the listener and starts accepting updates.
+     *
+     * @throws IOException if the port cannot be bound
+     */
+    public void start() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(config.port()), 64);
+        requestExecutor = Executors.newFixedThreadPool(2, r -> new Thread(r, "webhook-http"));
+        server.setExecutor(requestExecutor);
+        server.createContext(config.path(), this::handle);
+        server.start();
+        log.info("Webhook listener started on port {} at {}", config.port(), config.path());
+    }
+
+    /**
+     * Stops the listener, giving in-progress requests a moment to complete.
+     */
+    public void stop() {
+        if (server != null) {
+            server.stop(1);
+            requestExecutor.shutdown();
+        }
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+
+            var secret = exchange.getRequestHeaders().getFirst(SECRET_HEADER);
+            if (secret == null
+                    || !MessageDigest.isEqual(expectedSecret, secret.getBytes(StandardCharsets.UTF_8))) {
+                log.warn("Rejected webhook request from {}: bad secret token", exchange.getRemoteAddress());
+                exchange.sendResponseHeaders(401, -1);
+                return;
+            }
+
+            Update update;
+            try (var body = exchange.getRequestBody()) {
+                update = objectMapper.readValue(body, Update.class);
+            } catch (IOException e) {
+                log.warn("Rejected malformed webhook update: {}", e.getMessage());
+                exchange.sendResponseHeaders(400, -1);
+                return;
+            }
+
+            updateConsumer.accept(update);
+            exchange.sendResponseHeaders(200, -1);
+        } catch (RuntimeException e) {
+            log.error("Failed to process webhook update: {}", e.getMessage(), e);
+            exchange.sendResponseHeaders(500, -1);
+        } finally {
+            exchange.close();
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.home.bot.session;
+
+/**
+ * Count-min sketch of how often chats touch their session, used as a TinyLFU admission filter.
+ *
+ * <p>Each chat ID maps to four 4-bit counters packed sixteen to a {@code long}; its estimated
+ * frequency is the smallest of them. After a sample period all counters are halved, so the sketch
+ * favors recent activity and its memory stays fixed regardless of traffic.
+ */
+final class FrequencySketch {
+
+    private static final long[] SEEDS = {
+            0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L
+    };
+    private static final long RESET_MASK = 0x7777777777777777L;
+
+    private final long[] table;
+    private final int tableMask;
+    private final int samplePeriod;
+    private int additions;
+
+    /**
+     * Creates a sketch sized for the given number of tracked entries.
+     */
+    FrequencySketch(int expectedEntries) {
+        // About eight counters per entry per row keeps collisions between chats rare
+        var size = Integer.highestOneBit(Math.max(expectedEntries / 2, 8) - 1) << 1;
+        this.table = new long[size];
+        this.tableMask = size - 1;
+        this.samplePeriod = Math.max(expectedEntries, 8) * 10;
+    }
+
+    /**
+     * Records one access of the chat.
+     */
+    synchronized void increment(long chatId) {
+        var added = false;
+        for (var i = 0; i < SEEDS.length; i++) {
+            var hash = hash(chatId, i);
+            var index = (int) (hash >>> 4) & tableMask;
+            var shift = (int) (hash & 15) << 2;
+            if (((table[index] >>> shift) & 15) < 15) {
+                table[index] += 1L << shift;
+                added = true;
+            }
+        }
+        if (added && ++additions >= samplePeriod) {
+            reset();
+        }
+    }
+
+    /**
+     * Returns the estimated recent access count of the chat (0-15).
+     */
+    synchronized int frequency(long chatId) {
+        var frequency = 15;
+        for (var i = 0; i < SEEDS.length; i++) {
+            var hash = hash(chatId, i);
+            var index = (int) (hash >>> 4) & tableMask;
+            var shift = (int) (hash & 15) << 2;
+            frequency = Math.min(frequency, (int) ((table[index] >>> shift) & 15));
+        }
+        return frequency;
+    }
+
+    /**
+     * Halves every counter (ages the sketch).
+     */
+    private void reset() {
+        for (var i = 0; i < table.length; i++) {
+            table[i] = (table[i] >>> 1) & RESET_MASK;
+        }
+        additions /= 2;
+    }
+
+    private static long hash(long key, int depth) {
+        var hash = (key + SEEDS[depth]) * SEEDS[depth];
+        return hash ^ (hash >>> 29);
+    }
+}
@@ -0,0 +1,315 @@
+package com.home.bot.session;
+
+import com.home.bot.session.api.SessionStore;
+import com.home.config.JournalConfig;
+import com.home.config.SessionConfig;
+import com.home.model.ChatSession;
+import com.home.model.ProductInfo;
+import com.home.model.State;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongConsumer;
+
+/**
+ * In-process {@link SessionStore}. Each chat has a single {@link ChatSession} entry holding the step the user
+ * is in, their partial input (e.g., product details) and when it was last touched, so state and
+ * input can never get out of sync.
+ *
+ * <p>Sessions expire once they have been idle for the configured TTL. Expiry is checked lazily on
+ * access and actively by {@link #expireDue}, which a {@link SessionReaper} calls on every tick so
+ * abandoned sessions do not stay in memory.
+ *
+ * <p>The number of sessions is capped. When a new chat starts a session at the cap, the least
+ * recently touched of a small random sample is considered for eviction. It is only evicted if it
+ * has been idle for a while or the newcomer has been more active recently (TinyLFU admission);
+ * otherwise the newcomer is turned away. A flood of one-off /start messages therefore cannot push
+ * out users who are in the middle of a flow.
+ *
+ * <p>Optionally every mutation is written to a {@link SessionJournal}, so unfinished flows survive
+ * restarts. {@link #recover} must be called once at startup, before the bot receives updates.
+ */
+public class InMemorySessionStore implements SessionStore {
+
+    private static final ProductInfo EMPTY_INFO = new ProductInfo(0, null, null, 0);
+    private static final long WHEEL_TICK_MILLIS = 1000;
+    private static final int WHEEL_SIZE = 4096;
+    private static final int EVICTION_SAMPLE_SIZE = 8;
+
+    private final SessionTable sessions = new SessionTable();
+    private final long ttlMillis;
+    private final TimingWheel expiryWheel;
+    private final AtomicLong expiredCount = new AtomicLong();
+    private final int maxSessions;
+    private final long idleEvictMillis;
+    private final FrequencySketch admissionSketch;
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongAdder evictionCount = new LongAdder();
+    private final LongAdder rejectionCount = new LongAdder();
+    private final SessionJournal journal;
+
+    /**
+     * Creates an in-memory session store.
+     *
+     * @param config        session TTL and capacity settings
+     * @param journalConfig persistence settings; sessions stay in memory only if disabled
+     */
+    public InMemorySessionStore(SessionConfig config, JournalConfig journalConfig) {
+        this.ttlMillis = config.ttl().toMillis();
+        this.maxSessions = config.maxSessions();
+        // Flows idle for a quarter of the TTL are considered abandoned and may always be evicted
+        this.idleEvictMillis = ttlMillis / 4;
+        this.admissionSketch = new FrequencySketch(maxSessions);
+        this.expiryWheel = new TimingWheel(WHEEL_TICK_MILLIS, WHEEL_SIZE, System.currentTimeMillis());
+        this.journal = journalConfig.enabled() ? new SessionJournal(journalConfig) : null;
+    }
+
+    /**
+     * Restores sessions from the journal and starts journaling further changes. Does nothing if
+     * persistence is disabled.
+     *
+     * @return the number of restored sessions
+     */
+    @Override
+    public int recover() {
+        if (journal == null) {
+            return 0;
+        }
+        var restored =
+                journal.replay(
+                        (chatId, session) -> {
+                            sessions.put(chatId, session);
+                            expiryWheel.schedule(chatId, session.touchedAt() + ttlMillis);
+                        });
+        sessions.setMutationLog(journal);
+        return restored;
+    }
+
+    /**
+     * Forces journaled changes to disk. Called on shutdown.
+     */
+    @Override
+    public void close() {
+        if (journal != null) {
+            journal.close();
+        }
+    }
+
+    /**
+     * Retrieves the current session snapshot for the chat.
+     *
+     * @param chatId Telegram chat ID
+     * @return the session, or null if no session is stored
+     */
+    @Override
+    public ChatSession get(long chatId) {
+        var session = sessions.get(chatId);
+        (session != null ? hitCount : missCount).increment();
+        return session;
+    }
+
+    /**
+     * Starts a fresh session waiting for price input, replacing any existing one.
+     *
+     * @param chatId Telegram chat ID
+     * @return false if the session limit is reached and the chat was not admitted
+     */
+    @Override
+    public boolean start(long chatId) {
+        admissionSketch.increment(chatId);
+        var now = System.currentTimeMillis();
+        var session = new ChatSession(State.WAITING_FOR_PRICE, EMPTY_INFO, now);
+
+        // Chats that already hold a session keep their slot
+        if (sessions.get(chatId) == null && sessions.size() >= maxSessions && !makeRoom(chatId, now)) {
+            rejectionCount.increment();
+            return false;
+        }
+
+        var previous = sessions.put(chatId, session);
+        // An existing session already has a wheel entry, which re-checks the latest touch time
+        if (previous == null) {
+            expiryWheel.schedule(chatId, now + ttlMillis);
+        }
+        return true;
+    }
+
+    /**
+     * Atomically moves the session to a new state with new input, provided it has not changed since
+     * {@code expected} was read.
+     *
+     * @param chatId   Telegram chat ID
+     * @param expected the snapshot the transition is based on
+     * @param state    the next state
+     * @param info     the product data to store
+     * @return true if the transition happened, false if the session was changed or cleared meanwhile
+     */
+    @Override
+    public boolean transition(long chatId, ChatSession expected, State state, ProductInfo info) {
+        admissionSketch.increment(chatId);
+        return sessions.compareAndSet(
+                chatId, expected, new ChatSession(state, info, System.currentTimeMillis()));
+    }
+
+    /**
+     * Records the message whose inline buttons answer the session's current step, provided the
+     * session has not changed since {@code expected} was read.
+     *
+     * @param chatId   Telegram chat ID
+     * @param expected the snapshot the prompt was sent for
+     * @param promptId the prompt's message ID, or 0 to accept no more presses
+     * @return true if the prompt was recorded, false if the session changed or was cleared meanwhile
+     */
+    @Override
+    public boolean recordPrompt(long chatId, ChatSession expected, int promptId) {
+        if (expected == null) {
+            return false;
+        }
+        var session =
+                new ChatSession(
+                        expected.state(), expected.info(), System.currentTimeMillis(), promptId);
+        return sessions.compareAndSet(chatId, expected, session);
+    }
+
+    /**
+     * Clears the session for the given chat ID.
+     *
+     * @param chatId Telegram chat ID
+     */
+    @Override
+    public void clear(long chatId) {
+        sessions.remove(chatId);
+    }
+
+    /**
+     * Clears the session only if it is still the given snapshot, so a completion that races with a
+     * new /start does not wipe the new session.
+     *
+     * @param chatId   Telegram chat ID
+     * @param expected the snapshot to remove
+     * @return true if the session was removed
+     */
+    @Override
+    public boolean clear(long chatId, ChatSession expected) {
+        return sessions.compareAndSet(chatId, expected, null);
+    }
+
+    /**
+     * Determines whether a session has expired based on when it was last touched.
+     *
+     * @param session the session snapshot, may be null
+     * @return true if the session exists and has been idle longer than the TTL
+     */
+    @Override
+    public boolean isExpired(ChatSession session) {
+        return session != null && System.currentTimeMillis() - session.touchedAt() > ttlMillis;
+    }
+
+    /**
+     * Evicts every session whose TTL has passed by now. Sessions touched since they were scheduled
+     * are rescheduled to their new deadline instead.
+     *
+     * @param onExpired called with the chat ID of each evicted session
+     * @return the number of evicted sessions
+     */
+    public int expireDue(LongConsumer onExpired) {
+        var now = System.currentTimeMillis();
+        var evicted = new int[1];
+        expiryWheel.advance(
+                now,
+                chatId -> {
+                    var session = sessions.get(chatId);
+                    if (session == null) {
+                        return;
+                    }
+                    var deadline = session.touchedAt() + ttlMillis;
+                    if (deadline > now) {
+                        expiryWheel.schedule(chatId, deadline);
+                    } else if (sessions.compareAndSet(chatId, session, null)) {
+                        evicted[0]++;
+                        onExpired.accept(chatId);
+                    } else {
+                        // Changed between read and eviction; check again on the next tick
+                        expiryWheel.schedule(chatId, now);
+                    }
+                });
+        expiredCount.addAndGet(evicted[0]);
+        return evicted[0];
+    }
+
+    /**
+     * Returns the total number of sessions evicted by {@link #expireDue}.
+     */
+    public long expiredCount() {
+        return expiredCount.get();
+    }
+
+    /**
+     * Returns the resolution of active expiry, i.e. how often {@link #expireDue} should run.
+     */
+    public long expiryTickMillis() {
+        return WHEEL_TICK_MILLIS;
+    }
+
+    /**
+     * Returns the number of stored sessions.
+     */
+    public int size() {
+        return sessions.size();
+    }
+
+    /**
+     * Returns how many lookups found a session.
+     */
+    public long hitCount() {
+        return hitCount.sum();
+    }
+
+    /**
+     * Returns how many lookups found no session.
+     */
+    public long missCount() {
+        return missCount.sum();
+    }
+
+    /**
+     * Returns how many sessions were evicted to make room for new ones.
+     */
+    public long evictionCount() {
+        return evictionCount.sum();
+    }
+
+    /**
+     * Returns how many new sessions were refused because the limit was reached.
+     */
+    public long rejectionCount() {
+        return rejectionCount.sum();
+    }
+
+    /**
+     * Tries to evict one session in favor of the candidate chat.
+     *
+     * @return true if a session was evicted
+     */
+    private boolean makeRoom(long candidateChatId, long now) {
+        var victim = sessions.sampleLeastRecent(EVICTION_SAMPLE_SIZE);
+        if (victim == null) {
+            return true;
+        }
+
+        var idle = now - victim.session().touchedAt() >= idleEvictMillis;
+        if (!idle
+                && admissionSketch.frequency(candidateChatId)
+                <= admissionSketch.frequency(victim.chatId())) {
+            return false;
+        }
+
+        if (sessions.compareAndSet(victim.chatId(), victim.session(), null)) {
+            evictionCount.increment();
+            return true;
+        }
+        // The victim was touched or removed concurrently; it is no longer the best choice
+        return false;
+    }
+}
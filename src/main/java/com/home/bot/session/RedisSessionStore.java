@@ -0,0 +1,389 @@
+package com.home.bot.session;
+
+import com.home.bot.session.api.SessionStore;
+import com.home.config.RedisConfig;
+import com.home.config.SessionConfig;
+import com.home.model.ChatSession;
+import com.home.model.ProductInfo;
+import com.home.model.State;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * {@link SessionStore} kept in a shared Redis-protocol server, so several bot workers can serve the
+ * same chats.
+ *
+ * <p>Sessions are stored under one key per chat with a server-side TTL, so abandoned flows expire
+ * without a reaper. Conditional updates run as a Lua script that compares the stored value with
+ * the expected snapshot, which makes them atomic across workers. Reads are served from a bounded
+ * near-cache; every write publishes the chat ID on an invalidation channel, and each worker drops
+ * the entry when another worker changes it, so repeat reads do not go over the wire.
+ *
+ * <p>An invalidation can overtake the reply it invalidates: a worker reads the old value, another
+ * worker writes and publishes, and the invalidation arrives before the old value is cached. Each
+ * invalidation therefore bumps an epoch of the chat's stripe, and a value is only cached if the
+ * epoch read before the command is still current afterwards. Cached entries also expire after a
+ * short TTL, bounding the damage of an invalidation lost in any other way.
+ */
+public class RedisSessionStore implements SessionStore {
+
+    private static final Logger log = LoggerFactory.getLogger(RedisSessionStore.class);
+
+    private static final String KEY_PREFIX = "tgbot:session:";
+    private static final String INVALIDATION_CHANNEL = "tgbot:session:invalidate";
+    private static final ProductInfo EMPTY_INFO = new ProductInfo(0, null, null, 0);
+    private static final State[] STATES = State.values();
+    private static final int EPOCH_STRIPES = 1024;
+    private static final long EXPIRY_TICK_MILLIS = 1000;
+
+    /**
+     * KEYS[1] session key; ARGV: expected value ("" for absent), new value ("" to delete), TTL
+     * millis, channel, invalidation message.
+     */
+    private static final String COMPARE_AND_SET_SCRIPT =
+            "local current = redis.call('GET', KEYS[1]) or ''\n"
+                    + "if current ~= ARGV[1] then return 0 end\n"
+                    + "if ARGV[2] == '' then redis.call('DEL', KEYS[1])\n"
+                    + "else redis.call('SET', KEYS[1], ARGV[2], 'PX', ARGV[3]) end\n"
+                    + "redis.call('PUBLISH', ARGV[4], ARGV[5])\n"
+                    + "return 1";
+
+    private final RedisConfig config;
+    private final long ttlMillis;
+    private final String instanceId = UUID.randomUUID().toString();
+    private final BlockingQueue<PooledSlot> pool;
+    private final SessionTable nearCache = new SessionTable();
+    // Invalidations seen per chat stripe, and full near-cache clears
+    private final AtomicLongArray epochs = new AtomicLongArray(EPOCH_STRIPES);
+    private final AtomicLong clearEpoch = new AtomicLong();
+    private final TimingWheel nearCacheExpiry;
+    private final ScheduledExecutorService expirySweeper;
+    private final Thread subscriber;
+    private volatile boolean running = true;
+
+    /**
+     * Connects the command pool and starts listening for invalidations.
+     *
+     * @param sessionConfig session TTL settings
+     * @param config        server address, pool and near-cache sizes
+     * @throws UncheckedIOException if the server cannot be reached
+     */
+    public RedisSessionStore(SessionConfig sessionConfig, RedisConfig config) {
+        this.config = config;
+        this.ttlMillis = sessionConfig.ttl().toMillis();
+        this.pool = new ArrayBlockingQueue<>(config.poolSize());
+        try {
+            for (var i = 0; i < config.poolSize(); i++) {
+                pool.add(new PooledSlot(connect()));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to connect to session store", e);
+        }
+
+        var ttlTicks = (int) Math.max(1, config.nearCacheTtl().toMillis() / EXPIRY_TICK_MILLIS);
+        this.nearCacheExpiry =
+                new TimingWheel(EXPIRY_TICK_MILLIS, 2 * ttlTicks, System.currentTimeMillis());
+        this.expirySweeper =
+                Executors.newSingleThreadScheduledExecutor(
+                        r -> {
+                            var thread = new Thread(r, "session-near-cache-expiry");
+                            thread.setDaemon(true);
+                            return thread;
+                        });
+        expirySweeper.scheduleWithFixedDelay(
+                () -> nearCacheExpiry.advance(System.currentTimeMillis(), nearCache::remove),
+                EXPIRY_TICK_MILLIS,
+                EXPIRY_TICK_MILLIS,
+                TimeUnit.MILLISECONDS);
+
+        this.subscriber = new Thread(this::listenForInvalidations, "session-invalidation");
+        subscriber.setDaemon(true);
+        subscriber.start();
+    }
+
+    @Override
+    public ChatSession get(long chatId) {
+        var cached = nearCache.get(chatId);
+        if (cached != null) {
+            return cached;
+        }
+        var epoch = epoch(chatId);
+        var session = decode(execute("GET", KEY_PREFIX + chatId));
+        if (session != null) {
+            cache(chatId, session, epoch);
+        }
+        return session;
+    }
+
+    @Override
+    public boolean start(long chatId) {
+        var session = new ChatSession(State.WAITING_FOR_PRICE, EMPTY_INFO, System.currentTimeMillis());
+        var epoch = epoch(chatId);
+        execute("SET", KEY_PREFIX + chatId, encode(session), "PX", Long.toString(ttlMillis));
+        execute("PUBLISH", INVALIDATION_CHANNEL, invalidation(chatId));
+        cache(chatId, session, epoch);
+        return true;
+    }
+
+    @Override
+    public boolean transition(long chatId, ChatSession expected, State state, ProductInfo info) {
+        var session = new ChatSession(state, info, System.currentTimeMillis());
+        var epoch = epoch(chatId);
+        if (!compareAndSet(chatId, expected, session)) {
+            nearCache.remove(chatId);
+            return false;
+        }
+        cache(chatId, session, epoch);
+        return true;
+    }
+
+    @Override
+    public boolean recordPrompt(long chatId, ChatSession expected, int promptId) {
+        if (expected == null) {
+            return false;
+        }
+        var session =
+                new ChatSession(
+                        expected.state(), expected.info(), System.currentTimeMillis(), promptId);
+        var epoch = epoch(chatId);
+        if (!compareAndSet(chatId, expected, session)) {
+            nearCache.remove(chatId);
+            return false;
+        }
+        cache(chatId, session, epoch);
+        return true;
+    }
+
+    @Override
+    public void clear(long chatId) {
+        nearCache.remove(chatId);
+        execute("DEL", KEY_PREFIX + chatId);
+        execute("PUBLISH", INVALIDATION_CHANNEL, invalidation(chatId));
+    }
+
+    @Override
+    public boolean clear(long chatId, ChatSession expected) {
+        nearCache.remove(chatId);
+        return compareAndSet(chatId, expected, null);
+    }
+
+    @Override
+    public boolean isExpired(ChatSession session) {
+        return session != null && System.currentTimeMillis() - session.touchedAt() > ttlMillis;
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        subscriber.interrupt();
+        expirySweeper.shutdownNow();
+        PooledSlot slot;
+        while ((slot = pool.poll()) != null) {
+            if (slot.connection != null) {
+                slot.connection.close();
+            }
+        }
+    }
+
+    private boolean compareAndSet(long chatId, ChatSession expected, ChatSession update) {
+        var reply =
+                execute(
+                        "EVAL",
+                        COMPARE_AND_SET_SCRIPT,
+                        "1",
+                        KEY_PREFIX + chatId,
+                        expected != null ? encode(expected) : "",
+                        update != null ? encode(update) : "",
+                        Long.toString(ttlMillis),
+                        INVALIDATION_CHANNEL,
+                        invalidation(chatId));
+        return Long.valueOf(1).equals(reply);
+    }
+
+    /**
+     * Runs a command on a pooled slot, reconnecting the slot if its connection broke earlier.
+     */
+    private Object execute(String... command) {
+        PooledSlot slot;
+        try {
+            slot = pool.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a session store connection", e);
+        }
+
+        try {
+            if (slot.connection == null) {
+                slot.connection = connect();
+            }
+            return slot.connection.command(command);
+        } catch (IOException e) {
+            if (slot.connection != null) {
+                slot.connection.close();
+                slot.connection = null;
+            }
+            throw new UncheckedIOException("Session store command " + command[0] + " failed", e);
+        } finally {
+            pool.add(slot);
+        }
+    }
+
+    private RespConnection connect() throws IOException {
+        return new RespConnection(config.host(), config.port(), config.password());
+    }
+
+    /**
+     * Subscribes to the invalidation channel and drops near-cache entries changed by other workers.
+     * After a connection loss the whole near-cache is dropped, since invalidations may have been
+     * missed.
+     */
+    private void listenForInvalidations() {
+        while (running) {
+            try (var connection = connect()) {
+                connection.setReadTimeout(0);
+                connection.command("SUBSCRIBE", INVALIDATION_CHANNEL);
+                clearNearCache();
+                while (running) {
+                    var message = RespConnection.asList(connection.readReply());
+                    if (message.size() == 3 && "message".equals(message.get(0))) {
+                        onInvalidation((String) message.get(2));
+                    }
+                }
+            } catch (IOException e) {
+                if (!running) {
+                    return;
+                }
+                log.warn("Session invalidation subscription lost: {}", e.getMessage());
+                clearNearCache();
+                try {
+                    Thread.sleep(1000);
+                } catch (InterruptedException interrupted) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private void onInvalidation(String message) {
+        var separator = message.lastIndexOf(':');
+        if (separator < 0 || message.substring(0, separator).equals(instanceId)) {
+            return;
+        }
+        var chatId = Long.parseLong(message.substring(separator + 1));
+        // Bump first, so a read in flight either sees the new epoch or is cached before the removal
+        epochs.incrementAndGet(stripe(chatId));
+        nearCache.remove(chatId);
+    }
+
+    private void clearNearCache() {
+        clearEpoch.incrementAndGet();
+        nearCache.clear();
+    }
+
+    /**
+     * Returns a value that changes whenever the chat's near-cache entry is invalidated.
+     */
+    private long epoch(long chatId) {
+        return epochs.get(stripe(chatId)) + clearEpoch.get();
+    }
+
+    private static int stripe(long chatId) {
+        var hash = Long.hashCode(chatId);
+        return (hash ^ hash >>> 16) & (EPOCH_STRIPES - 1);
+    }
+
+    private String invalidation(long chatId) {
+        return instanceId + ":" + chatId;
+    }
+
+    /**
+     * Caches a value read or written by a command that started at the given epoch, unless the chat
+     * was invalidated meanwhile.
+     */
+    private void cache(long chatId, ChatSession session, long epoch) {
+        if (config.nearCacheSize() == 0 || epoch(chatId) != epoch) {
+            return;
+        }
+        if (nearCache.size() >= config.nearCacheSize()) {
+            var victim = nearCache.sampleLeastRecent(8);
+            if (victim != null) {
+                nearCache.compareAndSet(victim.chatId(), victim.session(), null);
+            }
+        }
+        nearCache.put(chatId, session);
+        // An invalidation between the check and the put would have found nothing to remove
+        if (epoch(chatId) != epoch) {
+            nearCache.compareAndSet(chatId, session, null);
+            return;
+        }
+        nearCacheExpiry.schedule(
+                chatId, System.currentTimeMillis() + config.nearCacheTtl().toMillis());
+    }
+
+    /**
+     * Encodes a session as "state|price|quantity|touchedAt|currency|name". The state is followed by
+     * ":promptId" when a prompt is recorded. Currency is empty when unset and the name, which may
+     * contain '|', is last and omitted when unset.
+     */
+    private static String encode(ChatSession session) {
+        var info = session.info();
+        var value = new StringBuilder(64).append(session.state().ordinal());
+        if (session.promptId() != 0) {
+            value.append(':').append(session.promptId());
+        }
+        value.append('|')
+                .append(info.price())
+                .append('|')
+                .append(info.quantity())
+                .append('|')
+                .append(session.touchedAt())
+                .append('|')
+                .append(info.currency() != null ? info.currency() : "");
+        if (info.name() != null) {
+            value.append('|').append(info.name());
+        }
+        return value.toString();
+    }
+
+    private static ChatSession decode(Object reply) {
+        if (reply == null) {
+            return null;
+        }
+        var fields = ((String) reply).split("\\|", 6);
+        var info =
+                new ProductInfo(
+                        Long.parseLong(fields[1]),
+                        fields[4].isEmpty() ? null : fields[4],
+                        fields.length > 5 ? fields[5] : null,
+                        Integer.parseInt(fields[2]));
+        var state = fields[0];
+        var colon = state.indexOf(':');
+        return new ChatSession(
+                STATES[Integer.parseInt(colon < 0 ? state : state.substring(0, colon))],
+                info,
+                Long.parseLong(fields[3]),
+                colon < 0 ? 0 : Integer.parseInt(state.substring(colon + 1)));
+    }
+
+    /**
+     * Pool entry; holds no connection after a failure until the next command reconnects it.
+     */
+    private static final class PooledSlot {
+        private RespConnection connection;
+
+        private PooledSlot(RespConnection connection) {
+            this.connection = connection;
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package com.home.bot.session;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Minimal blocking client for the Redis serialization protocol (RESP2), enough for the handful of
+ * commands the shared session store needs. Not thread-safe; callers pool connections.
+ */
+final class RespConnection implements Closeable {
+
+    private static final int TIMEOUT_MILLIS = 5000;
+
+    private final Socket socket;
+    private final InputStream in;
+    private final OutputStream out;
+
+    /**
+     * Connects and authenticates.
+     *
+     * @param password AUTH password, or null
+     * @throws IOException if the connection or authentication fails
+     */
+    RespConnection(String host, int port, String password) throws IOException {
+        socket = new Socket();
+        socket.setTcpNoDelay(true);
+        socket.connect(new InetSocketAddress(host, port), TIMEOUT_MILLIS);
+        socket.setSoTimeout(TIMEOUT_MILLIS);
+        in = new BufferedInputStream(socket.getInputStream(), 8192);
+        out = new BufferedOutputStream(socket.getOutputStream(), 8192);
+        if (password != null) {
+            command("AUTH", password);
+        }
+    }
+
+    /**
+     * Sends a command and reads its reply.
+     *
+     * @return a String, Long, List of replies, or null for a nil reply
+     * @throws IOException if the connection fails or the server replies with an error
+     */
+    Object command(String... args) throws IOException {
+        send(args);
+        return readReply();
+    }
+
+    /**
+     * Sends a command without reading the reply (used for SUBSCRIBE).
+     */
+    void send(String... args) throws IOException {
+        writeLine("*" + args.length);
+        for (var arg : args) {
+            var bytes = arg.getBytes(StandardCharsets.UTF_8);
+            writeLine("$" + bytes.length);
+            out.write(bytes);
+            out.write('\r');
+            out.write('\n');
+        }
+        out.flush();
+    }
+
+    /**
+     * Reads one reply, blocking up to the read timeout.
+     */
+    Object readReply() throws IOException {
+        var type = in.read();
+        var line = readLine();
+        switch (type) {
+            case '+':
+                return line;
+            case '-':
+                throw new IOException("Redis error: " + line);
+            case ':':
+                return Long.parseLong(line);
+            case '$': {
+                var length = Integer.parseInt(line);
+                if (length < 0) {
+                    return null;
+                }
+                var bytes = in.readNBytes(length);
+                in.readNBytes(2);
+                return new String(bytes, StandardCharsets.UTF_8);
+            }
+            case '*': {
+                var count = Integer.parseInt(line);
+                if (count < 0) {
+                    return null;
+                }
+                var items = new ArrayList<>(count);
+                for (var i = 0; i < count; i++) {
+                    items.add(readReply());
+                }
+                return items;
+            }
+            case -1:
+                throw new IOException("Redis connection closed");
+            default:
+                throw new IOException("Unexpected Redis reply type: " + (char) type);
+        }
+    }
+
+    /**
+     * Sets the read timeout; 0 blocks indefinitely (used by the subscriber).
+     */
+    void setReadTimeout(int millis) throws IOException {
+        socket.setSoTimeout(millis);
+    }
+
+    @Override
+    public void close() {
+        try {
+            socket.close();
+        } catch (IOException ignored) {
+            // Nothing useful to do when closing a broken connection
+        }
+    }
+
+    private void writeLine(String line) throws IOException {
+        out.write(line.getBytes(StandardCharsets.US_ASCII));
+        out.write('\r');
+        out.write('\n');
+    }
+
+    private String readLine() throws IOException {
+        var line = new StringBuilder();
+        int c;
+        while ((c = in.read()) != '\r') {
+            if (c == -1) {
+                throw new IOException("Redis connection closed");
+            }
+            line.append((char) c);
+        }
+        in.read(); // '\n'
+        return line.toString();
+    }
+
+    @SuppressWarnings("unchecked")
+    static List<Object> asList(Object reply) {
+        return (List<Object>) reply;
+    }
+}
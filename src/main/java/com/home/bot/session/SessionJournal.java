@@ -0,0 +1,524 @@
+package com.home.bot.session;
+
+import com.home.config.JournalConfig;
+import com.home.model.ChatSession;
+import com.home.model.ProductInfo;
+import com.home.model.State;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32C;
+
+/**
+ * Crash-safe, append-only journal of session mutations backed by two memory-mapped segment files,
+ * with a snapshot that full segments are compacted into.
+ *
+ * <p>Appending copies a small checksummed record into the active segment; no system call is made
+ * on the message path. A background task forces dirty pages to disk at a fixed interval, so all
+ * writes of that interval share one sync (group commit). A process crash loses nothing because the
+ * pages live in the OS page cache; a power loss loses at most one flush interval. A torn record at
+ * the tail fails its checksum and ends replay of that segment.
+ *
+ * <p>Each segment starts with a generation number. When the active segment fills up, appends move
+ * to the other, pre-allocated segment under the next generation, and the full one is compacted on
+ * the flusher thread: the snapshot and the segment are folded into a new snapshot recording the
+ * generation it covers, which atomically replaces the old one, and the segment is zeroed for reuse.
+ * Only if a segment fills before the other one has been compacted does an append wait, and only
+ * for a bounded time. If compaction failed, the append that next needs the other segment compacts
+ * it itself; should that fail too, the append throws and the mutation is refused rather than its
+ * records lost. Compaction reads only the files, never the live table, so it cannot deadlock with
+ * callers holding table locks.
+ */
+final class SessionJournal implements SessionTable.MutationLog {
+
+    private static final Logger log = LoggerFactory.getLogger(SessionJournal.class);
+
+    private static final byte OP_PUT = 1;
+    private static final byte OP_REMOVE = 2;
+    private static final int SNAPSHOT_MAGIC = 0x53534e32; // "SSN2"
+    private static final int SEGMENT_HEADER_BYTES = 8;
+    private static final int RECORD_HEADER_BYTES = 8;
+    private static final int MIN_SEGMENT_BYTES = 64 * 1024;
+    private static final long SWITCH_WAIT_MILLIS = 10_000;
+    private static final State[] STATES = State.values();
+
+    private final Path snapshotFile;
+    private final MappedByteBuffer[] segments = new MappedByteBuffer[2];
+    private final CRC32C crc = new CRC32C();
+    private final ScheduledExecutorService flusher;
+    private ByteBuffer scratch = ByteBuffer.allocate(256);
+    private volatile MappedByteBuffer journal;
+    private long generation;
+    // Guarded by this; false while the inactive segment still awaits compaction
+    private boolean spareReady = true;
+    // Guarded by this; the inactive segment if its compaction failed, so it still holds records
+    private MappedByteBuffer uncompacted;
+    private long uncompactedGeneration;
+    private volatile boolean dirty;
+
+    /**
+     * Opens (or creates) the journal in the configured directory and starts the flusher.
+     *
+     * @param config directory, segment size and flush interval
+     * @throws IllegalArgumentException if the segment size is below 64 KB
+     * @throws UncheckedIOException     if the files cannot be opened
+     */
+    SessionJournal(JournalConfig config) {
+        if (config.journalBytes() < MIN_SEGMENT_BYTES) {
+            throw new IllegalArgumentException(
+                    "Session journal size must be at least " + MIN_SEGMENT_BYTES + " bytes");
+        }
+        try {
+            var directory = Files.createDirectories(Path.of(config.directory()));
+            this.snapshotFile = directory.resolve("sessions.snapshot");
+            for (var i = 0; i < segments.length; i++) {
+                try (var channel =
+                             FileChannel.open(
+                                     directory.resolve("sessions.journal." + i),
+                                     StandardOpenOption.CREATE,
+                                     StandardOpenOption.READ,
+                                     StandardOpenOption.WRITE)) {
+                    segments[i] =
+                            channel.map(FileChannel.MapMode.READ_WRITE, 0, config.journalBytes());
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open session journal", e);
+        }
+        this.journal = segments[0];
+
+        this.flusher =
+                Executors.newSingleThreadScheduledExecutor(
+                        r -> {
+                            var thread = new Thread(r, "session-journal-flush");
+                            thread.setDaemon(true);
+                            return thread;
+                        });
+        flusher.scheduleWithFixedDelay(
+                this::flush, config.flushMillis(), config.flushMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Replays the snapshot and then the segments it does not cover, oldest first, positioning the
+     * newest segment for further appends. Must be called once, before any mutation is logged.
+     *
+     * @param sink receives every recovered session
+     * @return the number of recovered sessions
+     */
+    synchronized int replay(SessionSink sink) {
+        var sessions = new HashMap<Long, ChatSession>();
+        var covered = readSnapshot(sessions);
+
+        // Segments the snapshot already covers are leftovers of an interrupted compaction
+        var live = new ArrayList<MappedByteBuffer>(2);
+        for (var segment : segments) {
+            var segmentGeneration = segment.getLong(0);
+            if (segmentGeneration > covered) {
+                live.add(segment);
+            } else if (segmentGeneration != 0) {
+                clear(segment);
+            }
+        }
+        live.sort(Comparator.comparingLong(segment -> segment.getLong(0)));
+        for (var segment : live) {
+            readSegment(segment, sessions);
+        }
+
+        if (live.isEmpty()) {
+            generation = covered + 1;
+            journal = segments[0];
+            journal.putLong(0, generation);
+            journal.position(SEGMENT_HEADER_BYTES);
+        } else {
+            journal = live.get(live.size() - 1);
+            generation = journal.getLong(0);
+            if (live.size() > 1) {
+                // The older segment was full but not yet compacted
+                var sealed = live.get(0);
+                spareReady = false;
+                flusher.execute(() -> compact(sealed, sealed.getLong(0)));
+            }
+        }
+        sessions.forEach(sink::accept);
+        return sessions.size();
+    }
+
+    @Override
+    public synchronized void put(long chatId, ChatSession session) {
+        scratch.clear();
+        scratch = ensureCapacity(scratch, 64 + utf8Length(session.info()));
+        scratch.put(OP_PUT).putLong(chatId);
+        writeSession(session);
+        append();
+    }
+
+    @Override
+    public synchronized void remove(long chatId) {
+        scratch.clear();
+        scratch.put(OP_REMOVE).putLong(chatId);
+        append();
+    }
+
+    /**
+     * Forces outstanding writes to disk and stops the flusher.
+     */
+    void close() {
+        flusher.shutdown();
+        try {
+            // Let a running compaction finish so its segment is not replayed needlessly
+            flusher.awaitTermination(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+    }
+
+    private void append() {
+        var length = scratch.position();
+        // Keep room for the record and a zero length word that marks the end of the segment
+        var needed = RECORD_HEADER_BYTES + length + 4;
+        if (needed > journal.capacity() - SEGMENT_HEADER_BYTES) {
+            // Would not fit even an empty segment; dropping the session beats replaying a stale one
+            log.warn(
+                    "Session record of {} bytes exceeds the journal size; not persisting it",
+                    length);
+            var chatId = scratch.getLong(1);
+            scratch.clear();
+            scratch.put(OP_REMOVE).putLong(chatId);
+            length = scratch.position();
+            needed = RECORD_HEADER_BYTES + length + 4;
+        }
+        if (journal.remaining() < needed) {
+            switchSegment();
+        }
+        crc.reset();
+        crc.update(scratch.array(), 0, length);
+        journal.putInt(length).putInt((int) crc.getValue()).put(scratch.array(), 0, length);
+        dirty = true;
+    }
+
+    private void flush() {
+        if (dirty) {
+            dirty = false;
+            journal.force();
+        }
+    }
+
+    /**
+     * Moves appends to the spare segment under the next generation and hands the full segment to
+     * the flusher thread for compaction. Waits only if the spare is still being compacted, and
+     * compacts the spare here first if that failed on the flusher.
+     *
+     * @throws UncheckedIOException if the spare cannot be made free in time; the record is then not
+     *                              logged and the caller's mutation fails
+     */
+    private void switchSegment() {
+        var deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(SWITCH_WAIT_MILLIS);
+        var interrupted = false;
+        try {
+            while (!spareReady) {
+                var remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                if (remaining <= 0) {
+                    throw new UncheckedIOException(
+                            new IOException("Session journal compaction did not finish in time"));
+                }
+                try {
+                    wait(remaining);
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (uncompacted != null) {
+            // Throws again if the disk is still failing, leaving the spare for the next attempt
+            compactSegment(uncompacted, uncompactedGeneration);
+            uncompacted = null;
+        }
+
+        var sealed = journal;
+        var sealedGeneration = generation;
+        var spare = sealed == segments[0] ? segments[1] : segments[0];
+        generation++;
+        spare.putLong(0, generation);
+        spare.position(SEGMENT_HEADER_BYTES);
+        journal = spare;
+        spareReady = false;
+        flusher.execute(() -> compact(sealed, sealedGeneration));
+    }
+
+    /**
+     * Compacts a full segment on the flusher thread and marks the spare ready, also on failure: the
+     * segment then keeps its records and the next switch compacts it before reusing it.
+     */
+    private void compact(MappedByteBuffer sealed, long sealedGeneration) {
+        MappedByteBuffer failed = null;
+        try {
+            compactSegment(sealed, sealedGeneration);
+        } catch (RuntimeException e) {
+            log.error("Failed to compact session journal: {}", e.getMessage(), e);
+            failed = sealed;
+        }
+        synchronized (this) {
+            uncompacted = failed;
+            uncompactedGeneration = sealedGeneration;
+            spareReady = true;
+            notifyAll();
+        }
+    }
+
+    /**
+     * Folds the snapshot and a full segment into a new snapshot, then zeroes the segment so it can
+     * become the spare again. Reads only the files, so it may run on any thread.
+     */
+    private void compactSegment(MappedByteBuffer sealed, long sealedGeneration) {
+        var started = System.nanoTime();
+        var sessions = new HashMap<Long, ChatSession>();
+        sealed.force();
+        readSnapshot(sessions);
+        readSegment(sealed, sessions);
+        writeSnapshot(sessions, sealedGeneration);
+        clear(sealed);
+        log.info(
+                "Compacted session journal into snapshot of {} sessions in {} ms",
+                sessions.size(),
+                (System.nanoTime() - started) / 1_000_000);
+    }
+
+    private static void clear(MappedByteBuffer segment) {
+        var zeros = new byte[8192];
+        segment.clear();
+        while (segment.hasRemaining()) {
+            segment.put(zeros, 0, Math.min(zeros.length, segment.remaining()));
+        }
+        segment.clear();
+        segment.force();
+    }
+
+    /**
+     * Reads the snapshot into the map.
+     *
+     * @return the newest segment generation the snapshot covers, 0 if there is no snapshot
+     */
+    private long readSnapshot(Map<Long, ChatSession> sessions) {
+        if (!Files.exists(snapshotFile)) {
+            return 0;
+        }
+        try (var in =
+                     new DataInputStream(
+                             new BufferedInputStream(Files.newInputStream(snapshotFile), 1 << 16))) {
+            if (in.readInt() != SNAPSHOT_MAGIC) {
+                throw new IOException("Not a session snapshot: " + snapshotFile);
+            }
+            var covered = in.readLong();
+            var count = in.readInt();
+            for (var i = 0; i < count; i++) {
+                var chatId = in.readLong();
+                var touchedAt = in.readLong();
+                var state = STATES[in.readByte()];
+                var price = in.readLong();
+                var quantity = in.readInt();
+                var currency = readString(in);
+                var name = readString(in);
+                var promptId = in.readInt();
+                var info = new ProductInfo(price, currency, name, quantity);
+                sessions.put(chatId, new ChatSession(state, info, touchedAt, promptId));
+            }
+            return covered;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read session snapshot", e);
+        }
+    }
+
+    /**
+     * Applies valid records of a segment in order, leaving the segment positioned after the last
+     * one.
+     */
+    private void readSegment(MappedByteBuffer segment, Map<Long, ChatSession> sessions) {
+        var view = segment.duplicate();
+        view.clear();
+        view.position(SEGMENT_HEADER_BYTES);
+        var body = new byte[256];
+        var crc = new CRC32C();
+        while (view.remaining() >= RECORD_HEADER_BYTES) {
+            var start = view.position();
+            var length = view.getInt();
+            var checksum = view.getInt();
+            if (length <= 0 || length > view.remaining()) {
+                view.position(start);
+                break;
+            }
+            if (body.length < length) {
+                body = new byte[length];
+            }
+            view.get(body, 0, length);
+            crc.reset();
+            crc.update(body, 0, length);
+            if ((int) crc.getValue() != checksum) {
+                // Torn write at the tail; everything after it is discarded
+                log.warn("Discarding torn session journal record at offset {}", start);
+                view.position(start);
+                break;
+            }
+
+            var record = ByteBuffer.wrap(body, 0, length);
+            var op = record.get();
+            var chatId = record.getLong();
+            if (op == OP_PUT) {
+                sessions.put(chatId, readSession(record));
+            } else {
+                sessions.remove(chatId);
+            }
+        }
+
+        // Clear any torn tail so later appends are not followed by stale bytes
+        var end = view.position();
+        for (var i = end; i < Math.min(end + 64 * 1024, view.limit()); i++) {
+            view.put(i, (byte) 0);
+        }
+        segment.position(end);
+    }
+
+    private void writeSnapshot(Map<Long, ChatSession> sessions, long covered) {
+        var tmp = snapshotFile.resolveSibling(snapshotFile.getFileName() + ".tmp");
+        try (var channel =
+                     FileChannel.open(
+                             tmp,
+                             StandardOpenOption.CREATE,
+                             StandardOpenOption.WRITE,
+                             StandardOpenOption.TRUNCATE_EXISTING)) {
+            var out =
+                    new DataOutputStream(
+                            new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16));
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeLong(covered);
+            out.writeInt(sessions.size());
+            for (var entry : sessions.entrySet()) {
+                var session = entry.getValue();
+                var info = session.info();
+                out.writeLong(entry.getKey());
+                out.writeLong(session.touchedAt());
+                out.writeByte(session.state().ordinal());
+                out.writeLong(info.price());
+                out.writeInt(info.quantity());
+                writeString(out, info.currency());
+                writeString(out, info.name());
+                out.writeInt(session.promptId());
+            }
+            out.flush();
+            channel.force(true);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write session snapshot", e);
+        }
+
+        try {
+            Files.move(
+                    tmp, snapshotFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to replace session snapshot", e);
+        }
+    }
+
+    private void writeSession(ChatSession session) {
+        var info = session.info();
+        scratch.putLong(session.touchedAt())
+                .put((byte) session.state().ordinal())
+                .putLong(info.price())
+                .putInt(info.quantity());
+        putString(info.currency());
+        putString(info.name());
+        scratch.putInt(session.promptId());
+    }
+
+    private static ChatSession readSession(ByteBuffer record) {
+        var touchedAt = record.getLong();
+        var state = STATES[record.get()];
+        var price = record.getLong();
+        var quantity = record.getInt();
+        var currency = getString(record);
+        var name = getString(record);
+        var promptId = record.getInt();
+        return new ChatSession(
+                state, new ProductInfo(price, currency, name, quantity), touchedAt, promptId);
+    }
+
+    private void putString(String value) {
+        if (value == null) {
+            scratch.putInt(-1);
+            return;
+        }
+        var bytes = value.getBytes(StandardCharsets.UTF_8);
+        scratch.putInt(bytes.length).put(bytes);
+    }
+
+    private static String getString(ByteBuffer record) {
+        var length = record.getInt();
+        if (length < 0) {
+            return null;
+        }
+        var value = new String(record.array(), record.position(), length, StandardCharsets.UTF_8);
+        record.position(record.position() + length);
+        return value;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        var bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        var length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        return new String(in.readNBytes(length), StandardCharsets.UTF_8);
+    }
+
+    private static int utf8Length(ProductInfo info) {
+        // Upper bound: at most three bytes per UTF-16 char
+        return 3 * ((info.currency() != null ? info.currency().length() : 0)
+                + (info.name() != null ? info.name().length() : 0));
+    }
+
+    private static ByteBuffer ensureCapacity(ByteBuffer buffer, int capacity) {
+        return buffer.capacity() >= capacity ? buffer : ByteBuffer.allocate(capacity);
+    }
+
+    /**
+     * Receives recovered sessions.
+     */
+    @FunctionalInterface
+    interface SessionSink {
+        void accept(long chatId, ChatSession session);
+    }
+}
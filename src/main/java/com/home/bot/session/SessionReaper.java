@@ -0,0 +1,75 @@
+package com.home.bot.session;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongConsumer;
+
+/**
+ * Background task that evicts expired sessions once per expiry tick, so memory is bounded by active
+ * users rather than by every chat that ever talked to the bot.
+ */
+public class SessionReaper {
+
+    private static final Logger log = LoggerFactory.getLogger(SessionReaper.class);
+
+    private final InMemorySessionStore sessionStore;
+    private final LongConsumer onExpired;
+    private final ScheduledExecutorService scheduler =
+            Executors.newSingleThreadScheduledExecutor(
+                    r -> {
+                        var thread = new Thread(r, "session-reaper");
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+
+    /**
+     * Creates a reaper.
+     *
+     * @param sessionStore the sessions to expire
+     * @param onExpired    called with the chat ID of each evicted session (e.g. to notify the user)
+     */
+    public SessionReaper(InMemorySessionStore sessionStore, LongConsumer onExpired) {
+        this.sessionStore = sessionStore;
+        this.onExpired = onExpired;
+    }
+
+    /**
+     * Starts periodic eviction.
+     */
+    public void start() {
+        var tick = sessionStore.expiryTickMillis();
+        scheduler.scheduleWithFixedDelay(this::sweep, tick, tick, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops periodic eviction.
+     */
+    public void stop() {
+        scheduler.shutdownNow();
+    }
+
+    private void sweep() {
+        try {
+            var evicted = sessionStore.expireDue(onExpired);
+            if (evicted > 0) {
+                log.debug(
+                        "Expired {} sessions ({} active, {} expired, {} evicted, {} rejected in total; "
+                                + "{} hits, {} misses)",
+                        evicted,
+                        sessionStore.size(),
+                        sessionStore.expiredCount(),
+                        sessionStore.evictionCount(),
+                        sessionStore.rejectionCount(),
+                        sessionStore.hitCount(),
+                        sessionStore.missCount());
+            }
+        } catch (RuntimeException e) {
+            // An exception would cancel the schedule; log and keep sweeping
+            log.error("Session expiry sweep failed: {}", e.getMessage(), e);
+        }
+    }
+}
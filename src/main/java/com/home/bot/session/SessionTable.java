@@ -0,0 +1,316 @@
+package com.home.bot.session;
+
+import com.home.model.ChatSession;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Hash table of chat sessions keyed by primitive chat ID.
+ *
+ * <p>The table is split into lock-striped segments, each an open-addressing array pair with linear
+ * probing and backward-shift deletion, so lookups never box the key and an entry costs two array
+ * slots instead of a map node. Every operation on a key is atomic with respect to that key.
+ *
+ * <p>Mutations are reported to a {@link MutationLog} while the stripe lock is held, so the log sees
+ * the changes of any one chat in the order they were applied.
+ */
+final class SessionTable {
+
+    /**
+     * Receives every mutation of the table, e.g. to persist it.
+     */
+    interface MutationLog {
+        MutationLog NONE =
+                new MutationLog() {
+                    @Override
+                    public void put(long chatId, ChatSession session) {
+                    }
+
+                    @Override
+                    public void remove(long chatId) {
+                    }
+                };
+
+        void put(long chatId, ChatSession session);
+
+        void remove(long chatId);
+    }
+
+    private static final int STRIPE_COUNT = 16;
+    private static final int MIN_CAPACITY = 16;
+
+    private final Stripe[] stripes = new Stripe[STRIPE_COUNT];
+    private volatile MutationLog mutationLog = MutationLog.NONE;
+
+    SessionTable() {
+        for (var i = 0; i < STRIPE_COUNT; i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+
+    /**
+     * Sets the log that receives all subsequent mutations.
+     */
+    void setMutationLog(MutationLog mutationLog) {
+        this.mutationLog = mutationLog;
+    }
+
+    /**
+     * Returns the session of a chat, or null if there is none.
+     */
+    ChatSession get(long chatId) {
+        var hash = hash(chatId);
+        return stripeFor(hash).get(chatId, hash);
+    }
+
+    /**
+     * Stores a session, replacing any existing one.
+     *
+     * @return the previous session, or null
+     */
+    ChatSession put(long chatId, ChatSession session) {
+        var hash = hash(chatId);
+        return stripeFor(hash).put(chatId, hash, session);
+    }
+
+    /**
+     * Removes the session of a chat.
+     *
+     * @return the removed session, or null
+     */
+    ChatSession remove(long chatId) {
+        var hash = hash(chatId);
+        return stripeFor(hash).remove(chatId, hash);
+    }
+
+    /**
+     * Atomically replaces the session of a chat if it is still the given snapshot.
+     *
+     * @param expected the snapshot that must be current (compared by identity); null for absent
+     * @param update   the new session; null to remove
+     * @return true if the replacement happened
+     */
+    boolean compareAndSet(long chatId, ChatSession expected, ChatSession update) {
+        var hash = hash(chatId);
+        return stripeFor(hash).compareAndSet(chatId, hash, expected, update);
+    }
+
+    /**
+     * Returns the number of stored sessions.
+     */
+    int size() {
+        var size = 0;
+        for (var stripe : stripes) {
+            size += stripe.size();
+        }
+        return size;
+    }
+
+    /**
+     * Drops every entry without notifying the mutation log; meant for tables used as caches.
+     */
+    void clear() {
+        for (var stripe : stripes) {
+            stripe.clear();
+        }
+    }
+
+    /**
+     * Samples up to {@code sampleSize} sessions from a random stripe and returns the least recently
+     * touched one, an approximation of the global LRU entry that needs no access-order list.
+     *
+     * @return the sampled victim, or null if the table is empty
+     */
+    Entry sampleLeastRecent(int sampleSize) {
+        var random = ThreadLocalRandom.current();
+        var first = random.nextInt(STRIPE_COUNT);
+        for (var i = 0; i < STRIPE_COUNT; i++) {
+            var victim = stripes[(first + i) % STRIPE_COUNT].sampleLeastRecent(sampleSize, random);
+            if (victim != null) {
+                return victim;
+            }
+        }
+        return null;
+    }
+
+    private Stripe stripeFor(int hash) {
+        return stripes[hash >>> 28];
+    }
+
+    /**
+     * Mixes the chat ID (fmix64 finalizer) so sequential and negative group IDs spread evenly.
+     */
+    private static int hash(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return (int) key;
+    }
+
+    /**
+     * A chat ID together with its session snapshot.
+     */
+    record Entry(long chatId, ChatSession session) {
+    }
+
+    /**
+     * One lock-protected open-addressing segment. A slot is occupied when its value is non-null.
+     */
+    private final class Stripe {
+        private long[] keys = new long[MIN_CAPACITY];
+        private ChatSession[] values = new ChatSession[MIN_CAPACITY];
+        private int size;
+
+        synchronized ChatSession get(long key, int hash) {
+            var index = indexOf(key, hash);
+            return index >= 0 ? values[index] : null;
+        }
+
+        synchronized ChatSession put(long key, int hash, ChatSession value) {
+            var index = indexOf(key, hash);
+            mutationLog.put(key, value);
+            if (index >= 0) {
+                var previous = values[index];
+                values[index] = value;
+                return previous;
+            }
+            insertAt(-index - 1, key, value);
+            return null;
+        }
+
+        synchronized ChatSession remove(long key, int hash) {
+            var index = indexOf(key, hash);
+            if (index < 0) {
+                return null;
+            }
+            var previous = values[index];
+            mutationLog.remove(key);
+            deleteAt(index);
+            return previous;
+        }
+
+        synchronized boolean compareAndSet(
+                long key, int hash, ChatSession expected, ChatSession update) {
+            var index = indexOf(key, hash);
+            var current = index >= 0 ? values[index] : null;
+            if (current != expected) {
+                return false;
+            }
+            if (update == null) {
+                if (index >= 0) {
+                    mutationLog.remove(key);
+                    deleteAt(index);
+                }
+            } else if (index >= 0) {
+                mutationLog.put(key, update);
+                values[index] = update;
+            } else {
+                mutationLog.put(key, update);
+                insertAt(-index - 1, key, update);
+            }
+            return true;
+        }
+
+        synchronized int size() {
+            return size;
+        }
+
+        synchronized void clear() {
+            keys = new long[MIN_CAPACITY];
+            values = new ChatSession[MIN_CAPACITY];
+            size = 0;
+        }
+
+        synchronized Entry sampleLeastRecent(int sampleSize, ThreadLocalRandom random) {
+            if (size == 0) {
+                return null;
+            }
+            var mask = keys.length - 1;
+            var index = random.nextInt(keys.length);
+            var victim = -1;
+            for (int seen = 0, scanned = 0; seen < sampleSize && scanned < keys.length; scanned++) {
+                if (values[index] != null) {
+                    if (victim < 0 || values[index].touchedAt() < values[victim].touchedAt()) {
+                        victim = index;
+                    }
+                    seen++;
+                }
+                index = (index + 1) & mask;
+            }
+            return new Entry(keys[victim], values[victim]);
+        }
+
+        /**
+         * Returns the slot holding the key, or {@code -(insertionSlot + 1)} if it is absent.
+         */
+        private int indexOf(long key, int hash) {
+            var mask = keys.length - 1;
+            var index = hash & mask;
+            while (values[index] != null) {
+                if (keys[index] == key) {
+                    return index;
+                }
+                index = (index + 1) & mask;
+            }
+            return -index - 1;
+        }
+
+        private void insertAt(int index, long key, ChatSession value) {
+            keys[index] = key;
+            values[index] = value;
+            // Keep the load factor at or below 3/4 so probe sequences stay short
+            if (++size * 4 > keys.length * 3) {
+                resize(keys.length * 2);
+            }
+        }
+
+        /**
+         * Removes the slot and shifts later entries of the same probe run back, so no tombstones
+         * are needed.
+         */
+        private void deleteAt(int index) {
+            var mask = keys.length - 1;
+            var next = index;
+            while (true) {
+                next = (next + 1) & mask;
+                if (values[next] == null) {
+                    break;
+                }
+                var home = hash(keys[next]) & mask;
+                var inRange = index <= next ? (index < home && home <= next) : (index < home || home <= next);
+                if (!inRange) {
+                    keys[index] = keys[next];
+                    values[index] = values[next];
+                    index = next;
+                }
+            }
+            keys[index] = 0;
+            values[index] = null;
+
+            // Give memory back once most sessions are gone
+            if (--size * 8 < keys.length && keys.length > MIN_CAPACITY) {
+                resize(keys.length / 2);
+            }
+        }
+
+        private void resize(int capacity) {
+            var oldKeys = keys;
+            var oldValues = values;
+            keys = new long[capacity];
+            values = new ChatSession[capacity];
+            var mask = capacity - 1;
+            for (var i = 0; i < oldKeys.length; i++) {
+                if (oldValues[i] != null) {
+                    var index = hash(oldKeys[i]) & mask;
+                    while (values[index] != null) {
+                        index = (index + 1) & mask;
+                    }
+                    keys[index] = oldKeys[i];
+                    values[index] = oldValues[i];
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.home.bot.session;
+
+import java.util.Arrays;
+import java.util.function.LongConsumer;
+
+/**
+ * Hashed timing wheel of chat ID deadlines.
+ *
+ * <p>A deadline is filed into the bucket of its tick; advancing the wheel visits only the buckets of
+ * elapsed ticks, so the cost per tick is independent of how many sessions exist. Deadlines further
+ * away than one revolution share a bucket with nearer ones and simply stay put until their own
+ * revolution comes round. Buckets are primitive arrays, so scheduling does not allocate per entry.
+ */
+final class TimingWheel {
+
+    private final long tickMillis;
+    private final Bucket[] buckets;
+    private final int mask;
+    private long currentTick;
+
+    /**
+     * Creates a wheel.
+     *
+     * @param tickMillis resolution of the wheel
+     * @param wheelSize  number of buckets, rounded up to a power of two
+     * @param nowMillis  the current time
+     */
+    TimingWheel(long tickMillis, int wheelSize, long nowMillis) {
+        var size = Integer.highestOneBit(Math.max(wheelSize - 1, 1)) << 1;
+        this.tickMillis = tickMillis;
+        this.buckets = new Bucket[size];
+        this.mask = size - 1;
+        this.currentTick = nowMillis / tickMillis;
+        for (var i = 0; i < size; i++) {
+            buckets[i] = new Bucket();
+        }
+    }
+
+    /**
+     * Schedules a chat to be reported once the deadline has passed.
+     */
+    synchronized void schedule(long chatId, long deadlineMillis) {
+        // File under the first tick at or after the deadline, so an entry is due whenever its bucket
+        // is visited in its own revolution; overdue deadlines go into the next tick
+        var tick = Math.max((deadlineMillis + tickMillis - 1) / tickMillis, currentTick + 1);
+        buckets[(int) (tick & mask)].add(chatId, deadlineMillis);
+    }
+
+    /**
+     * Advances the wheel to the given time and reports every chat whose deadline has passed. The
+     * consumer runs outside the wheel lock and may schedule again.
+     *
+     * @return the number of reported chats
+     */
+    int advance(long nowMillis, LongConsumer due) {
+        long[] dueIds;
+        int dueCount;
+        synchronized (this) {
+            var targetTick = nowMillis / tickMillis;
+            // After a long stall one full revolution is enough to visit every bucket
+            var ticks = Math.min(targetTick - currentTick, buckets.length);
+            var collector = new Bucket();
+            for (var i = 1; i <= ticks; i++) {
+                buckets[(int) ((currentTick + i) & mask)].drainDue(nowMillis, collector);
+            }
+            currentTick = Math.max(currentTick, targetTick);
+            dueIds = collector.ids;
+            dueCount = collector.size;
+        }
+
+        for (var i = 0; i < dueCount; i++) {
+            due.accept(dueIds[i]);
+        }
+        return dueCount;
+    }
+
+    /**
+     * Growable list of (chat ID, deadline) pairs.
+     */
+    private static final class Bucket {
+        private long[] ids = new long[0];
+        private long[] deadlines = new long[0];
+        private int size;
+
+        void add(long chatId, long deadline) {
+            if (size == ids.length) {
+                var capacity = Math.max(4, size * 2);
+                ids = Arrays.copyOf(ids, capacity);
+                deadlines = Arrays.copyOf(deadlines, capacity);
+            }
+            ids[size] = chatId;
+            deadlines[size] = deadline;
+            size++;
+        }
+
+        /**
+         * Moves entries due at {@code now} into the target and compacts the remaining ones.
+         */
+        void drainDue(long now, Bucket target) {
+            var kept = 0;
+            for (var i = 0; i < size; i++) {
+                if (deadlines[i] <= now) {
+                    target.add(ids[i], deadlines[i]);
+                } else {
+                    ids[kept] = ids[i];
+                    deadlines[kept] = deadlines[i];
+                    kept++;
+                }
+            }
+            size = kept;
+            // Release the arrays of buckets that emptied after a burst
+            if (kept == 0 && ids.length > 64) {
+                ids = new long[0];
+                deadlines = new long[0];
+            }
+        }
+    }
+}
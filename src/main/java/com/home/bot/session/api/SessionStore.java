@@ -0,0 +1,94 @@
+package com.home.bot.session.api;
+
+import com.home.model.ChatSession;
+import com.home.model.ProductInfo;
+import com.home.model.State;
+
+/**
+ * Storage for per-chat payment flow sessions. Implementations decide where sessions live (process
+ * memory, a shared networked store) and must make every transition atomic per chat.
+ *
+ * <p>Conditional operations take the snapshot a decision was based on and only apply if the stored
+ * session still equals it.
+ */
+public interface SessionStore {
+
+    /**
+     * Retrieves the current session snapshot for the chat.
+     *
+     * @param chatId Telegram chat ID
+     * @return the session, or null if no session is stored
+     */
+    ChatSession get(long chatId);
+
+    /**
+     * Starts a fresh session waiting for price input, replacing any existing one.
+     *
+     * @param chatId Telegram chat ID
+     * @return false if the store is at capacity and the chat was not admitted
+     */
+    boolean start(long chatId);
+
+    /**
+     * Atomically moves the session to a new state with new input, provided it has not changed since
+     * {@code expected} was read.
+     *
+     * @param chatId   Telegram chat ID
+     * @param expected the snapshot the transition is based on
+     * @param state    the next state
+     * @param info     the product data to store
+     * @return true if the transition happened, false if the session was changed or cleared meanwhile
+     */
+    boolean transition(long chatId, ChatSession expected, State state, ProductInfo info);
+
+    /**
+     * Records the message whose inline buttons answer the session's current step, provided the
+     * session has not changed since {@code expected} was read. Presses on any other message are
+     * stale.
+     *
+     * @param chatId   Telegram chat ID
+     * @param expected the snapshot the prompt was sent for
+     * @param promptId the prompt's message ID, or 0 to accept no more presses
+     * @return true if the prompt was recorded, false if the session changed or was cleared meanwhile
+     */
+    boolean recordPrompt(long chatId, ChatSession expected, int promptId);
+
+    /**
+     * Clears the session for the given chat ID.
+     *
+     * @param chatId Telegram chat ID
+     */
+    void clear(long chatId);
+
+    /**
+     * Clears the session only if it is still the given snapshot.
+     *
+     * @param chatId   Telegram chat ID
+     * @param expected the snapshot to remove
+     * @return true if the session was removed
+     */
+    boolean clear(long chatId, ChatSession expected);
+
+    /**
+     * Determines whether a session has expired based on when it was last touched.
+     *
+     * @param session the session snapshot, may be null
+     * @return true if the session exists and has been idle longer than the TTL
+     */
+    boolean isExpired(ChatSession session);
+
+    /**
+     * Restores persisted sessions. Called once at startup, before updates are received.
+     *
+     * @return the number of restored sessions
+     */
+    default int recover() {
+        return 0;
+    }
+
+    /**
+     * Releases resources and flushes pending writes. Called on shutdown.
+     */
+    default void close() {
+    }
+}
@@ -1,71 +1,84 @@
 package com.home.bot.state;
 
 import com.home.bot.common.api.MessageSender;
-import com.home.bot.session.SessionManager;
+import com.home.bot.dispatch.CallbackData;
+import com.home.bot.session.api.SessionStore;
 import com.home.bot.state.api.StateInputHandler;
+import com.home.config.KeyboardConfig;
+import com.home.model.ChatSession;
 import com.home.model.ProductInfo;
 import com.home.model.State;
-import com.home.model.TimedProductInfo;
-
-import java.time.Instant;
+import org.telegram.telegrambots.meta.api.objects.replykeyboard.InlineKeyboardMarkup;
 
 /**
  * Handles user input when the bot expects the product name. Once the name is received, it
- * transitions the session to wait for quantity.
+ * transitions the session to wait for quantity, offering common quantities as buttons.
  */
 public class NameInputHandler implements StateInputHandler {
 
-    private final SessionManager sessionManager;
+    private final SessionStore sessionStore;
     private final MessageSender messageSender;
+    private final InlineKeyboardMarkup quantityKeyboard;
 
     /**
      * Constructs a handler for processing product name input.
      *
-     * @param sessionManager manages session state and product info
+     * @param sessionStore   manages session state and product info
      * @param messageSender  sends responses to the user
+     * @param keyboardConfig quantities offered as buttons
      */
-    public NameInputHandler(SessionManager sessionManager, MessageSender messageSender) {
-        this.sessionManager = sessionManager;
+    public NameInputHandler(
+            SessionStore sessionStore, MessageSender messageSender, KeyboardConfig keyboardConfig) {
+        this.sessionStore = sessionStore;
         this.messageSender = messageSender;
+        this.quantityKeyboard =
+                CallbackData.keyboard(State.WAITING_FOR_QUANTITY, keyboardConfig.quantities());
     }
 
     /**
-     * Checks if this handler is responsible for the current state.
+     * Returns the state this handler processes input for.
      *
-     * @param state current session state
-     * @return true if state is WAITING_FOR_NAME
+     * @return WAITING_FOR_NAME
      */
     @Override
-    public boolean canHandle(State state) {
-        return state == State.WAITING_FOR_NAME;
+    public State state() {
+        return State.WAITING_FOR_NAME;
     }
 
     /**
      * Handles the user input assumed to be a product name. Updates the session with the product name
      * and prompts for quantity.
      *
-     * @param chatId Telegram chat ID of the user
-     * @param text   product name provided by the user
+     * @param chatId  Telegram chat ID of the user
+     * @param session current session snapshot
+     * @param text    product name provided by the user
      */
     @Override
-    public void handle(Long chatId, String text) {
-        var timedInfo = sessionManager.getInfo(chatId);
+    public void handle(Long chatId, ChatSession session, String text) {
+        // Create updated ProductInfo with name included
+        ProductInfo previous = session.info();
+        ProductInfo updated = new ProductInfo(previous.price(), previous.currency(), text, 0);
 
-        // Defensive check in case of missing session state
-        if (timedInfo == null) {
+        // Store the new info and advance session state in one step
+        if (!sessionStore.transition(chatId, session, State.WAITING_FOR_QUANTITY, updated)) {
             messageSender.send(chatId, "Something went wrong. Please start again with /start.");
-            sessionManager.clear(chatId);
             return;
         }
 
-        // Create updated ProductInfo with name included
-        ProductInfo previous = timedInfo.info();
-        ProductInfo updated = new ProductInfo(previous.price(), previous.currency(), text, 0);
-
-        // Store the new info and advance session state
-        sessionManager.updateInfo(chatId, new TimedProductInfo(updated, Instant.now()));
-        sessionManager.updateState(chatId, State.WAITING_FOR_QUANTITY);
-
-        messageSender.send(chatId, "Enter quantity:");
+        if (quantityKeyboard == null) {
+            messageSender.send(chatId, "Enter quantity:");
+            return;
+        }
+        // Only presses on this message are accepted once it is delivered, unless the session has
+        // moved on by then
+        var prompted = sessionStore.get(chatId);
+        messageSender
+                .sendEditable(chatId, "Enter quantity:", quantityKeyboard)
+                .thenAccept(
+                        promptId -> {
+                            if (promptId != null) {
+                                sessionStore.recordPrompt(chatId, prompted, promptId);
+                            }
+                        });
     }
 }
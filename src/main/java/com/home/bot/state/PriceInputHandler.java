@@ -1,15 +1,17 @@
 package com.home.bot.state;
 
 import com.home.bot.common.api.MessageSender;
-import com.home.bot.session.SessionManager;
+import com.home.bot.session.api.SessionStore;
 import com.home.bot.state.api.StateInputHandler;
+import com.home.model.ChatSession;
+import com.home.model.Money;
+import com.home.model.MoneyParser;
 import com.home.model.ProductInfo;
 import com.home.model.State;
-import com.home.model.TimedProductInfo;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.time.Instant;
+import java.util.Locale;
 
 /**
  * Handles user input when the bot is expecting the price and currency. Validates the format, stores
@@ -19,67 +21,101 @@ public class PriceInputHandler implements StateInputHandler {
 
     private static final Logger log = LoggerFactory.getLogger(PriceInputHandler.class);
 
-    private final SessionManager sessionManager;
+    private final SessionStore sessionStore;
     private final MessageSender messageSender;
 
     /**
      * Constructs the handler for price input.
      *
-     * @param sessionManager handles session state
+     * @param sessionStore   handles session state
      * @param messageSender  sends messages to users
      */
-    public PriceInputHandler(SessionManager sessionManager, MessageSender messageSender) {
-        this.sessionManager = sessionManager;
+    public PriceInputHandler(SessionStore sessionStore, MessageSender messageSender) {
+        this.sessionStore = sessionStore;
         this.messageSender = messageSender;
     }
 
     /**
-     * Returns true if this handler can process the given state.
+     * Returns the state this handler processes input for.
      *
-     * @param state current user state
-     * @return true if state is WAITING_FOR_PRICE
+     * @return WAITING_FOR_PRICE
      */
     @Override
-    public boolean canHandle(State state) {
-        return state == State.WAITING_FOR_PRICE;
+    public State state() {
+        return State.WAITING_FOR_PRICE;
     }
 
     /**
-     * Processes input assumed to be price and currency (e.g., "10.00 USD"). On success, updates
-     * session and asks for product name. On error, notifies the user of format issues.
+     * Processes input assumed to be price and currency (e.g., "10.00 USD"). The amount is parsed
+     * exactly into the currency's minor units, so "500 JPY" is 500 and "19.99 EUR" is 1999. On
+     * success, updates session and asks for product name. On error, tells the user what is wrong.
      *
-     * @param chatId user's chat ID
-     * @param text   user input text
+     * @param chatId  user's chat ID
+     * @param session current session snapshot
+     * @param text    user input text
      */
     @Override
-    public void handle(Long chatId, String text) {
-        var parts = text.trim().split(" ");
-        if (parts.length != 2) {
+    public void handle(Long chatId, ChatSession session, String text) {
+        Money price;
+        try {
+            // A currency picked with a button lets the user type just the amount
+            var picked = session.info() != null ? session.info().currency() : null;
+            price = MoneyParser.parse(text, picked);
+        } catch (NumberFormatException e) {
+            log.warn("Invalid price input '{}': {}", text, e.getMessage());
             messageSender.send(
                     chatId,
-                    "Invalid format. Please enter the price and currency in this format: 10.00 USD. Supported currencies: https://docs.stripe.com/currencies");
+                    e.getMessage()
+                            + ". Please enter the price and currency in this format: 10.00 USD."
+                            + " Supported currencies: https://docs.stripe.com/currencies");
+            return;
+        }
+        if (price.minorUnits() <= 0) {
+            messageSender.send(chatId, "Price must be a positive number.");
             return;
         }
 
-        try {
-            var price = Double.parseDouble(parts[0]);
-            if (price <= 0) {
-                messageSender.send(chatId, "Price must be a positive number.");
-                return;
-            }
-
-            var priceInCents = (long) (price * 100);
-            var currency = parts[1].toLowerCase();
+        // Update session with price and currency, reset other fields
+        var info = new ProductInfo(price.minorUnits(), price.currency(), null, 0);
+        if (!sessionStore.transition(chatId, session, State.WAITING_FOR_NAME, info)) {
+            messageSender.send(chatId, "Something went wrong. Please start again with /start.");
+            return;
+        }
 
-            // Update session with price and currency, reset other fields
-            var info = new ProductInfo(priceInCents, currency, null, 0);
-            sessionManager.updateInfo(chatId, new TimedProductInfo(info, Instant.now()));
-            sessionManager.updateState(chatId, State.WAITING_FOR_NAME);
+        messageSender.send(chatId, "Enter product name:");
+    }
 
-            messageSender.send(chatId, "Enter product name:");
-        } catch (NumberFormatException e) {
-            log.warn("Invalid price input '{}': {}", text, e.getMessage());
-            messageSender.send(chatId, "Invalid price format.");
+    /**
+     * Remembers a currency picked with a button and turns the prompt into a request for the amount
+     * alone, which also removes the buttons.
+     *
+     * @param chatId    user's chat ID
+     * @param messageId the prompt the button belongs to
+     * @param session   current session snapshot
+     * @param payload   the picked currency code
+     */
+    @Override
+    public void handleCallback(Long chatId, Integer messageId, ChatSession session, String payload) {
+        var decimals = MoneyParser.decimals(payload);
+        if (decimals < 0) {
+            messageSender.send(
+                    chatId, "Unsupported currency. Please enter the price, e.g. 10.00 USD.");
+            return;
+        }
+        var currency = payload.toLowerCase(Locale.ROOT);
+        var info = new ProductInfo(0, currency, null, 0);
+        if (!sessionStore.transition(chatId, session, State.WAITING_FOR_PRICE, info)) {
+            messageSender.send(chatId, "Something went wrong. Please start again with /start.");
+            return;
         }
+        var example = "10" + (decimals > 0 ? "." + "0".repeat(decimals) : "");
+        messageSender.edit(
+                chatId,
+                messageId,
+                "Enter the price in "
+                        + payload.toUpperCase(Locale.ROOT)
+                        + ", e.g. "
+                        + example
+                        + ":");
     }
 }
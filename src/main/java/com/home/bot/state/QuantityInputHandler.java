@@ -1,76 +1,103 @@
 package com.home.bot.state;
 
 import com.home.bot.common.api.MessageSender;
-import com.home.bot.session.SessionManager;
+import com.home.bot.session.api.SessionStore;
 import com.home.bot.state.api.StateInputHandler;
+import com.home.model.ChatSession;
 import com.home.model.ProductInfo;
 import com.home.model.State;
+import com.home.stripe.LinkFailureMessages;
 import com.home.stripe.StripeLinkCreator;
-import com.stripe.exception.StripeException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
  * Handles input when the bot is waiting for the user to enter the product quantity. After receiving
- * a valid quantity, it creates a Stripe payment link and ends the session.
+ * a valid quantity, it replies with a placeholder, creates the Stripe payment link in the background
+ * and edits the placeholder into the link, ending the session.
  */
 public class QuantityInputHandler implements StateInputHandler {
 
     private static final Logger log = LoggerFactory.getLogger(QuantityInputHandler.class);
 
-    private final SessionManager sessionManager;
+    private static final LinkFailureMessages FAILURE_MESSAGES =
+            LinkFailureMessages.retrying("send the quantity again");
+
+    private final SessionStore sessionStore;
     private final StripeLinkCreator stripeLinkCreator;
     private final MessageSender messageSender;
 
     /**
      * Constructs a handler for the quantity input step.
      *
-     * @param sessionManager    session state tracker
+     * @param sessionStore      session state tracker
      * @param stripeLinkCreator Stripe payment link generator
      * @param messageSender     message sender to reply to the user
      */
     public QuantityInputHandler(
-            SessionManager sessionManager,
+            SessionStore sessionStore,
             StripeLinkCreator stripeLinkCreator,
             MessageSender messageSender) {
-        this.sessionManager = sessionManager;
+        this.sessionStore = sessionStore;
         this.stripeLinkCreator = stripeLinkCreator;
         this.messageSender = messageSender;
     }
 
     @Override
-    public boolean canHandle(State state) {
-        return state == State.WAITING_FOR_QUANTITY;
+    public State state() {
+        return State.WAITING_FOR_QUANTITY;
     }
 
+    /**
+     * Handles a quantity button like typed input, after taking the buttons off the prompt and
+     * retiring it, so a second press cannot request another link.
+     */
     @Override
-    public void handle(Long chatId, String text) {
-        var timedInfo = sessionManager.getInfo(chatId);
-        if (timedInfo == null) {
+    public void handleCallback(Long chatId, Integer messageId, ChatSession session, String payload) {
+        if (!sessionStore.recordPrompt(chatId, session, 0)) {
             messageSender.send(chatId, "Something went wrong. Please start again with /start.");
-            sessionManager.clear(chatId);
             return;
         }
+        messageSender.edit(chatId, messageId, "Quantity: " + payload);
+        handle(chatId, sessionStore.get(chatId), payload);
+    }
 
-        var old = timedInfo.info();
+    @Override
+    public void handle(Long chatId, ChatSession session, String text) {
+        var old = session.info();
 
+        int quantity;
         try {
-            // Parse quantity input
-            var quantity = Integer.parseInt(text);
-            var completed = new ProductInfo(old.price(), old.currency(), old.name(), quantity);
-
-            // Create Stripe link and send to user
-            var url = stripeLinkCreator.createStripeLink(completed);
-            messageSender.send(chatId, "Here is your payment link:\n" + url);
-
-            // End session after successful completion
-            sessionManager.clear(chatId);
+            quantity = Integer.parseInt(text);
         } catch (NumberFormatException e) {
             log.warn("Invalid quantity input '{}': {}", text, e.getMessage());
             messageSender.send(chatId, "Invalid quantity format.");
-        } catch (StripeException e) {
-            log.error("Stripe error: {}", e.getMessage());
-            messageSender.send(chatId, "Failed to generate Stripe payment link. Please try again later.");
+            return;
         }
+        if (quantity <= 0) {
+            messageSender.send(chatId, "Quantity must be a positive number.");
+            return;
+        }
+        var completed = new ProductInfo(old.price(), old.currency(), old.name(), quantity);
+
+        // Answer at once and fill in the link when Stripe responds, off the update thread; Stripe
+        // is called while the placeholder waits its turn in the outbound queue
+        var reply =
+                stripeLinkCreator
+                        .createStripeLinkAsync(chatId, completed)
+                        .handle(
+                                (url, failure) -> {
+                                    if (failure != null) {
+                                        // The session is kept, so the user can simply send it again
+                                        return FAILURE_MESSAGES.describe(failure);
+                                    }
+                                    // End session after successful completion
+                                    sessionStore.clear(chatId, session);
+                                    return "Here is your payment link:\n" + url;
+                                });
+        var placeholder = messageSender.sendEditable(chatId, "Generating your link\u2026");
+        reply.thenAcceptBoth(
+                placeholder,
+                (result, placeholderId) -> messageSender.edit(chatId, placeholderId, result));
     }
 }
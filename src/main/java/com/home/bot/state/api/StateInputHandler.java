@@ -1,5 +1,6 @@
 package com.home.bot.state.api;
 
+import com.home.model.ChatSession;
 import com.home.model.State;
 
 /**
@@ -11,18 +12,33 @@ import com.home.model.State;
 public interface StateInputHandler {
 
     /**
-     * Determines if this handler supports the provided state.
+     * Returns the session state this handler processes input for. Used as the dispatch key, so it
+     * must be unique among handlers.
      *
-     * @param state the current session state
-     * @return true if this handler can process input for the given state
+     * @return the handled state
      */
-    boolean canHandle(State state);
+    State state();
 
     /**
      * Processes user input for the associated state.
      *
-     * @param chatId the ID of the Telegram chat
-     * @param text   the user input to handle
+     * @param chatId  the ID of the Telegram chat
+     * @param session the session snapshot the input was dispatched on; transitions are applied
+     *                only if the session is still this snapshot
+     * @param text    the user input to handle
      */
-    void handle(Long chatId, String text);
+    void handle(Long chatId, ChatSession session, String text);
+
+    /**
+     * Processes an inline button press offered in the associated state. By default the button's
+     * payload is handled as if the user had typed it.
+     *
+     * @param chatId    the ID of the Telegram chat
+     * @param messageId the message the pressed button belongs to
+     * @param session   the session snapshot the press was dispatched on
+     * @param payload   the payload encoded in the button's callback data
+     */
+    default void handleCallback(Long chatId, Integer messageId, ChatSession session, String payload) {
+        handle(chatId, session, payload);
+    }
 }
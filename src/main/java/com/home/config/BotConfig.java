@@ -2,13 +2,16 @@ package com.home.config;
 
 import com.home.config.loader.Config;
 
+import java.util.List;
+
 /**
  * Configuration for the Telegram bot.
  *
- * @param token    the bot token used to authenticate with Telegram
- * @param username the bot's username
+ * @param token          the bot token used to authenticate with Telegram
+ * @param username       the bot's username
+ * @param allowedUpdates update types requested from Telegram; everything else is never sent
  */
-public record BotConfig(String token, String username) {
+public record BotConfig(String token, String username, List<String> allowedUpdates) {
 
     /**
      * Loads the bot configuration from environment variables or config.properties.
@@ -18,6 +21,10 @@ public record BotConfig(String token, String username) {
     public static BotConfig load() {
         var token = Config.getRequired("bot.token");
         var username = Config.getRequired("bot.username");
-        return new BotConfig(token, username);
+        var allowedUpdates =
+                Config.getList(
+                        "bot.allowed-updates",
+                        List.of("message", "callback_query", "inline_query", "chosen_inline_result"));
+        return new BotConfig(token, username, allowedUpdates);
     }
 }
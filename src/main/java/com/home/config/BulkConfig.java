@@ -0,0 +1,76 @@
+package com.home.config;
+
+import com.home.config.loader.Config;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Configuration for /bulk, which creates payment links for every row of an uploaded CSV file.
+ *
+ * @param admins           chats allowed to use /bulk; none if empty
+ * @param concurrency      link requests of one job in flight at once
+ * @param ratePerSecond    link requests a job starts per second, across its rows
+ * @param maxRows          rows accepted per file; further rows are reported as skipped
+ * @param maxFileBytes     largest file accepted
+ * @param jobs             files processed at once across all chats
+ * @param progressInterval minimum time between progress updates of a job
+ */
+public record BulkConfig(
+        Set<Long> admins,
+        int concurrency,
+        double ratePerSecond,
+        int maxRows,
+        long maxFileBytes,
+        int jobs,
+        Duration progressInterval) {
+
+    /**
+     * Loads the bulk configuration from environment variables or config.properties. All jobs
+     * together must keep fewer link requests in flight than there are Stripe threads, so
+     * interactive users always have a thread left.
+     *
+     * @param stripeThreads threads making Stripe calls, shared with interactive users
+     * @return a new BulkConfig instance with loaded values
+     */
+    public static BulkConfig load(int stripeThreads) {
+        Set<Long> admins;
+        try {
+            admins =
+                    Config.getList("bot.bulk.admins", List.of()).stream()
+                            .map(Long::parseLong)
+                            .collect(Collectors.toUnmodifiableSet());
+        } catch (NumberFormatException e) {
+            throw new IllegalStateException("bot.bulk.admins must be chat IDs: " + e.getMessage());
+        }
+        var concurrency = Config.getInt("bot.bulk.concurrency", 2);
+        var ratePerSecond = Config.getInt("bot.bulk.rate-per-second", 10);
+        var maxRows = Config.getInt("bot.bulk.max-rows", 1000);
+        var maxFileKb = Config.getInt("bot.bulk.max-file-kb", 1024);
+        var jobs = Config.getInt("bot.bulk.jobs", 1);
+        var progressSeconds = Config.getInt("bot.bulk.progress-seconds", 3);
+        if (concurrency < 1 || ratePerSecond < 1 || maxRows < 1 || maxFileKb < 1 || jobs < 1) {
+            throw new IllegalStateException(
+                    "bot.bulk.concurrency, rate-per-second, max-rows, max-file-kb and jobs must be"
+                            + " positive");
+        }
+        // Without admins no job ever runs, so the limit only matters once /bulk is enabled
+        if (!admins.isEmpty() && (long) jobs * concurrency >= stripeThreads) {
+            throw new IllegalStateException(
+                    "bot.bulk.jobs times bot.bulk.concurrency must be below"
+                            + " payments.stripe.threads ("
+                            + stripeThreads
+                            + ")");
+        }
+        return new BulkConfig(
+                admins,
+                concurrency,
+                ratePerSecond,
+                maxRows,
+                maxFileKb * 1024L,
+                jobs,
+                Duration.ofSeconds(Math.max(1, progressSeconds)));
+    }
+}
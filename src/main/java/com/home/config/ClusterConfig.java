@@ -0,0 +1,91 @@
+package com.home.config;
+
+import com.home.config.loader.Config;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Locale;
+
+/**
+ * Configuration for splitting update receiving from update handling across processes.
+ *
+ * @param role                the part this process plays
+ * @param gatewayHost         host the gateway listens on and workers connect to
+ * @param gatewayPort         port of the gateway's worker listener
+ * @param virtualNodes        ring positions per worker; more positions spread chats more evenly
+ * @param workerQueueCapacity updates buffered per worker before the gateway stops receiving
+ * @param workerName          name a worker registers under; a restarted worker with the same name
+ *                            gets the same chats back
+ */
+public record ClusterConfig(
+        Role role,
+        String gatewayHost,
+        int gatewayPort,
+        int virtualNodes,
+        int workerQueueCapacity,
+        String workerName) {
+
+    /**
+     * The part a process plays in a gateway/worker deployment.
+     */
+    public enum Role {
+        /**
+         * Receives and handles updates in one process.
+         */
+        STANDALONE,
+        /**
+         * Receives updates from Telegram and forwards them to workers by chat.
+         */
+        GATEWAY,
+        /**
+         * Handles updates forwarded by the gateway.
+         */
+        WORKER
+    }
+
+    /**
+     * Loads the cluster configuration from environment variables or config.properties.
+     *
+     * @return a new ClusterConfig instance with loaded values
+     * @throws IllegalStateException if the role is unknown or a size is not positive
+     */
+    public static ClusterConfig load() {
+        var roleValue = Config.get("cluster.role");
+        Role role;
+        try {
+            role =
+                    roleValue == null || roleValue.isBlank()
+                            ? Role.STANDALONE
+                            : Role.valueOf(roleValue.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalStateException("Unknown cluster.role: " + roleValue, e);
+        }
+
+        var gatewayHost = Config.get("cluster.gateway.host");
+        var gatewayPort = Config.getInt("cluster.gateway.port", 7070);
+        var virtualNodes = Config.getInt("cluster.virtual-nodes", 128);
+        var workerQueueCapacity = Config.getInt("cluster.worker-queue-capacity", 1000);
+        var workerName = Config.get("cluster.worker-name");
+        if (virtualNodes < 1 || workerQueueCapacity < 1) {
+            throw new IllegalStateException(
+                    "cluster.virtual-nodes and cluster.worker-queue-capacity must be positive");
+        }
+        return new ClusterConfig(
+                role,
+                gatewayHost == null || gatewayHost.isBlank() ? "localhost" : gatewayHost,
+                gatewayPort,
+                virtualNodes,
+                workerQueueCapacity,
+                workerName == null || workerName.isBlank() ? defaultWorkerName() : workerName);
+    }
+
+    private static String defaultWorkerName() {
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            host = "worker";
+        }
+        return host + "-" + ProcessHandle.current().pid();
+    }
+}
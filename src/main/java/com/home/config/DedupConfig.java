@@ -0,0 +1,41 @@
+package com.home.config;
+
+import com.home.config.loader.Config;
+
+/**
+ * Configuration for dropping updates that reach the bot more than once.
+ *
+ * @param window      number of update IDs below the highest seen one that are remembered; a power
+ *                    of two of at least 64
+ * @param file        file the window is kept in across restarts, or null to keep it in memory
+ * @param flushMillis interval at which changes to the file are forced to disk
+ */
+public record DedupConfig(int window, String file, long flushMillis) {
+
+    /**
+     * Loads the deduplication configuration from environment variables or config.properties.
+     *
+     * @return a new DedupConfig instance with loaded values
+     */
+    public static DedupConfig load() {
+        var window = Config.getInt("bot.dedup.window", 65_536);
+        var file = Config.get("bot.dedup.file");
+        var flushMillis = Config.getInt("bot.dedup.flush-millis", 200);
+        if (window < 64 || window > 1 << 24) {
+            throw new IllegalStateException("bot.dedup.window must be between 64 and 16777216");
+        }
+        if (flushMillis < 1) {
+            throw new IllegalStateException("bot.dedup.flush-millis must be positive");
+        }
+        // Round up so a bit's position is the update ID masked by window - 1
+        var rounded = Integer.bitCount(window) == 1 ? window : Integer.highestOneBit(window) << 1;
+        return new DedupConfig(rounded, file == null || file.isBlank() ? null : file, flushMillis);
+    }
+
+    /**
+     * Returns whether the window should be persisted.
+     */
+    public boolean persistent() {
+        return file != null;
+    }
+}
@@ -0,0 +1,27 @@
+package com.home.config;
+
+import com.home.config.loader.Config;
+
+/**
+ * Configuration for the update execution engine.
+ *
+ * @param workerThreads maximum number of updates processed in parallel (in-flight)
+ * @param queueCapacity maximum number of accepted updates waiting for or undergoing processing
+ */
+public record DispatchConfig(int workerThreads, int queueCapacity) {
+
+    /**
+     * Loads the dispatch configuration from environment variables or config.properties.
+     *
+     * @return a new DispatchConfig instance with loaded values
+     */
+    public static DispatchConfig load() {
+        var workerThreads = Config.getInt("bot.dispatch.worker-threads", 8);
+        var queueCapacity = Config.getInt("bot.dispatch.queue-capacity", 1000);
+        if (workerThreads < 1 || queueCapacity < 1) {
+            throw new IllegalStateException(
+                    "bot.dispatch.worker-threads and bot.dispatch.queue-capacity must be positive");
+        }
+        return new DispatchConfig(workerThreads, queueCapacity);
+    }
+}
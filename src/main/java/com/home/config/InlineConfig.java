@@ -0,0 +1,36 @@
+package com.home.config;
+
+import com.home.config.loader.Config;
+
+import java.time.Duration;
+
+/**
+ * Configuration for inline mode ("@bot 25 USD Consultation" in any chat).
+ *
+ * @param debounce  quiet time after a keystroke before a user's latest query is answered; queries
+ *                  superseded within it are never answered
+ * @param cacheSize parsed queries kept, keyed by normalized query text
+ * @param cacheTime time Telegram may serve an answer from its own cache for the same query
+ */
+public record InlineConfig(Duration debounce, int cacheSize, Duration cacheTime) {
+
+    /**
+     * Loads the inline mode configuration from environment variables or config.properties.
+     *
+     * @return a new InlineConfig instance with loaded values
+     */
+    public static InlineConfig load() {
+        var debounceMillis = Config.getInt("bot.inline.debounce-millis", 400);
+        var cacheSize = Config.getInt("bot.inline.cache-size", 10_000);
+        var cacheTimeSeconds = Config.getInt("bot.inline.cache-time-seconds", 300);
+        if (debounceMillis < 0 || cacheSize < 0 || cacheTimeSeconds < 0) {
+            throw new IllegalStateException(
+                    "bot.inline.debounce-millis, cache-size and cache-time-seconds must not be"
+                            + " negative");
+        }
+        return new InlineConfig(
+                Duration.ofMillis(debounceMillis),
+                cacheSize,
+                Duration.ofSeconds(cacheTimeSeconds));
+    }
+}
@@ -0,0 +1,41 @@
+package com.home.config;
+
+import com.home.config.loader.Config;
+
+/**
+ * Configuration for the persistent session journal.
+ *
+ * @param directory    directory holding the journal and snapshot files, or null to keep sessions
+ *                     in memory only
+ * @param journalBytes size of each of the two memory-mapped journal segments; filling one
+ *                     switches to the other and compacts the full one in the background
+ * @param flushMillis  interval at which journal writes are forced to disk (group commit)
+ */
+public record JournalConfig(String directory, int journalBytes, long flushMillis) {
+
+    /**
+     * Loads the journal configuration from environment variables or config.properties.
+     *
+     * @return a new JournalConfig instance with loaded values
+     */
+    public static JournalConfig load() {
+        var directory = Config.get("session.journal.dir");
+        var journalMegabytes = Config.getInt("session.journal.size-mb", 8);
+        var flushMillis = Config.getInt("session.journal.flush-millis", 200);
+        if (journalMegabytes < 1 || flushMillis < 1) {
+            throw new IllegalStateException(
+                    "session.journal.size-mb and session.journal.flush-millis must be positive");
+        }
+        return new JournalConfig(
+                directory == null || directory.isBlank() ? null : directory,
+                journalMegabytes * 1024 * 1024,
+                flushMillis);
+    }
+
+    /**
+     * Returns whether sessions should be persisted.
+     */
+    public boolean enabled() {
+        return directory != null;
+    }
+}
@@ -0,0 +1,48 @@
+package com.home.config;
+
+import com.home.config.loader.Config;
+import com.home.model.MoneyParser;
+
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Configuration for the inline buttons offered during the payment flow. Setting a list to "none"
+ * shows no buttons for that step.
+ *
+ * @param currencies currency codes offered with the price prompt
+ * @param quantities quantities offered with the quantity prompt
+ */
+public record KeyboardConfig(List<String> currencies, List<String> quantities) {
+
+    /**
+     * Loads the keyboard configuration from environment variables or config.properties.
+     *
+     * @return a new KeyboardConfig instance with loaded values
+     */
+    public static KeyboardConfig load() {
+        var currencies =
+                options(Config.getList("bot.keyboard.currencies", List.of("USD", "EUR", "GBP")));
+        var quantities =
+                options(Config.getList("bot.keyboard.quantities", List.of("1", "2", "3", "5", "10")));
+        for (var currency : currencies) {
+            if (MoneyParser.exponent(currency) < 0) {
+                throw new IllegalStateException(
+                        "bot.keyboard.currencies contains unknown currency " + currency);
+            }
+        }
+        for (var quantity : quantities) {
+            if (!quantity.matches("[1-9][0-9]{0,5}")) {
+                throw new IllegalStateException(
+                        "bot.keyboard.quantities must be positive whole numbers: " + quantity);
+            }
+        }
+        return new KeyboardConfig(
+                currencies.stream().map(currency -> currency.toUpperCase(Locale.ROOT)).toList(),
+                List.copyOf(quantities));
+    }
+
+    private static List<String> options(List<String> values) {
+        return values.size() == 1 && values.get(0).equalsIgnoreCase("none") ? List.of() : values;
+    }
+}
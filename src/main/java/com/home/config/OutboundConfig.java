@@ -0,0 +1,46 @@
+package com.home.config;
+
+import com.home.config.loader.Config;
+
+/**
+ * Configuration for the outbound message queue.
+ *
+ * @param globalPerSecond messages per second sent across all chats
+ * @param chatPerMinute   sustained messages per minute sent to a single chat
+ * @param chatBurst       messages a chat may receive back to back before its rate applies
+ * @param queueCapacity   messages waiting to be sent before senders are blocked
+ * @param window          requests to Telegram in flight at once
+ * @param maxAttempts     attempts per message when Telegram answers 429 Too Many Requests
+ */
+public record OutboundConfig(
+        int globalPerSecond,
+        int chatPerMinute,
+        int chatBurst,
+        int queueCapacity,
+        int window,
+        int maxAttempts) {
+
+    /**
+     * Loads the outbound queue configuration from environment variables or config.properties.
+     *
+     * @return a new OutboundConfig instance with loaded values
+     */
+    public static OutboundConfig load() {
+        var globalPerSecond = Config.getInt("bot.outbound.global-per-second", 30);
+        var chatPerMinute = Config.getInt("bot.outbound.chat-per-minute", 60);
+        var chatBurst = Config.getInt("bot.outbound.chat-burst", 3);
+        var queueCapacity = Config.getInt("bot.outbound.queue-capacity", 10_000);
+        var window = Config.getInt("bot.outbound.window", 16);
+        var maxAttempts = Config.getInt("bot.outbound.max-attempts", 3);
+        if (globalPerSecond < 1 || chatPerMinute < 1 || chatBurst < 1) {
+            throw new IllegalStateException(
+                    "bot.outbound.global-per-second, chat-per-minute and chat-burst must be positive");
+        }
+        if (queueCapacity < 1 || window < 1 || maxAttempts < 1) {
+            throw new IllegalStateException(
+                    "bot.outbound.queue-capacity, window and max-attempts must be positive");
+        }
+        return new OutboundConfig(
+                globalPerSecond, chatPerMinute, chatBurst, queueCapacity, window, maxAttempts);
+    }
+}
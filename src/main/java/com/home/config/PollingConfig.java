@@ -0,0 +1,33 @@
+package com.home.config;
+
+import com.home.config.loader.Config;
+
+/**
+ * Configuration for the long-polling receiver.
+ *
+ * @param limit          maximum number of updates fetched per getUpdates call (1-100)
+ * @param timeoutSeconds long-poll timeout of a getUpdates call; must stay below
+ *                       {@code bot.transport.poll-socket-timeout-seconds} (90 by default)
+ * @param offsetFile     file the last handled offset is persisted to, or null to keep it in memory
+ */
+public record PollingConfig(int limit, int timeoutSeconds, String offsetFile) {
+
+    /**
+     * Loads the polling configuration from environment variables or config.properties.
+     *
+     * @return a new PollingConfig instance with loaded values
+     */
+    public static PollingConfig load() {
+        var limit = Config.getInt("bot.polling.limit", 100);
+        var timeoutSeconds = Config.getInt("bot.polling.timeout", 50);
+        var offsetFile = Config.get("bot.polling.offset-file");
+        if (limit < 1 || limit > 100) {
+            throw new IllegalStateException("bot.polling.limit must be between 1 and 100");
+        }
+        if (timeoutSeconds < 0) {
+            throw new IllegalStateException("bot.polling.timeout must not be negative");
+        }
+        return new PollingConfig(
+                limit, timeoutSeconds, offsetFile == null || offsetFile.isBlank() ? null : offsetFile);
+    }
+}
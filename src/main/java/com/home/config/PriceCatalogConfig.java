@@ -0,0 +1,34 @@
+package com.home.config;
+
+import com.home.config.loader.Config;
+
+/**
+ * Configuration for the local index of reusable Stripe Prices.
+ *
+ * @param file    file the index is persisted to and loaded from at startup, or null to keep it in
+ *                memory only
+ * @param maxSize maximum number of indexed prices; 0 sends price data inline with every link
+ */
+public record PriceCatalogConfig(String file, int maxSize) {
+
+    /**
+     * Loads the catalog configuration from environment variables or config.properties.
+     *
+     * @return a new PriceCatalogConfig instance with loaded values
+     */
+    public static PriceCatalogConfig load() {
+        var file = Config.get("payments.stripe.catalog.file");
+        var maxSize = Config.getInt("payments.stripe.catalog.size", 10_000);
+        if (maxSize < 0) {
+            throw new IllegalStateException("payments.stripe.catalog.size must not be negative");
+        }
+        return new PriceCatalogConfig(file == null || file.isBlank() ? null : file, maxSize);
+    }
+
+    /**
+     * Returns whether links should reference catalog prices instead of inline price data.
+     */
+    public boolean enabled() {
+        return maxSize > 0;
+    }
+}
@@ -0,0 +1,37 @@
+package com.home.config;
+
+import com.home.config.loader.Config;
+
+import java.util.Locale;
+
+/**
+ * How the bot receives updates from Telegram.
+ */
+public enum ReceiveMode {
+    /**
+     * The bot repeatedly calls getUpdates.
+     */
+    POLLING,
+    /**
+     * Telegram pushes updates to an embedded HTTP endpoint.
+     */
+    WEBHOOK;
+
+    /**
+     * Loads the receive mode from environment variables or config.properties.
+     *
+     * @return the configured mode, {@link #POLLING} if not set
+     * @throws IllegalStateException if the value is not a known mode
+     */
+    public static ReceiveMode load() {
+        var value = Config.get("bot.receive-mode");
+        if (value == null || value.isBlank()) {
+            return POLLING;
+        }
+        try {
+            return valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalStateException("Unknown bot.receive-mode: " + value, e);
+        }
+    }
+}
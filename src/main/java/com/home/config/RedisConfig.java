@@ -0,0 +1,62 @@
+package com.home.config;
+
+import com.home.config.loader.Config;
+
+import java.time.Duration;
+
+/**
+ * Configuration for the shared Redis-protocol session store used when several bot workers serve
+ * the same chats.
+ *
+ * @param host          server host, or null to keep sessions in the local process
+ * @param port          server port
+ * @param password      AUTH password, or null if the server needs none
+ * @param poolSize      number of pooled command connections
+ * @param nearCacheSize maximum number of sessions cached locally between invalidations
+ * @param nearCacheTtl  time after which a locally cached session is dropped even without an
+ *                      invalidation, bounding how long a missed one can leave it stale
+ */
+public record RedisConfig(
+        String host,
+        int port,
+        String password,
+        int poolSize,
+        int nearCacheSize,
+        Duration nearCacheTtl) {
+
+    /**
+     * Loads the shared store configuration from environment variables or config.properties.
+     *
+     * @return a new RedisConfig instance with loaded values
+     */
+    public static RedisConfig load() {
+        var host = Config.get("session.redis.host");
+        var port = Config.getInt("session.redis.port", 6379);
+        var password = Config.get("session.redis.password");
+        var poolSize = Config.getInt("session.redis.pool-size", 4);
+        var nearCacheSize = Config.getInt("session.redis.near-cache-size", 10_000);
+        var nearCacheTtlSeconds = Config.getInt("session.redis.near-cache-ttl-seconds", 30);
+        if (poolSize < 1 || nearCacheSize < 0) {
+            throw new IllegalStateException(
+                    "session.redis.pool-size must be positive and near-cache-size not negative");
+        }
+        if (nearCacheTtlSeconds < 1) {
+            throw new IllegalStateException(
+                    "session.redis.near-cache-ttl-seconds must be positive");
+        }
+        return new RedisConfig(
+                host == null || host.isBlank() ? null : host,
+                port,
+                password == null || password.isBlank() ? null : password,
+                poolSize,
+                nearCacheSize,
+                Duration.ofSeconds(nearCacheTtlSeconds));
+    }
+
+    /**
+     * Returns whether sessions should be kept in the shared store.
+     */
+    public boolean enabled() {
+        return host != null;
+    }
+}
@@ -0,0 +1,31 @@
+package com.home.config;
+
+import com.home.config.loader.Config;
+
+import java.time.Duration;
+
+/**
+ * Configuration for user sessions.
+ *
+ * @param ttl            idle time after which a session expires
+ * @param notifyOnExpiry whether users are told when their session lapses
+ * @param maxSessions    upper bound on concurrently stored sessions
+ */
+public record SessionConfig(Duration ttl, boolean notifyOnExpiry, int maxSessions) {
+
+    /**
+     * Loads the session configuration from environment variables or config.properties.
+     *
+     * @return a new SessionConfig instance with loaded values
+     */
+    public static SessionConfig load() {
+        var ttlSeconds = Config.getInt("session.ttl-seconds", 3600);
+        var notifyOnExpiry = Config.getBoolean("session.expiry.notify", true);
+        var maxSessions = Config.getInt("session.max-count", 50_000);
+        if (ttlSeconds < 1 || maxSessions < 1) {
+            throw new IllegalStateException(
+                    "session.ttl-seconds and session.max-count must be positive");
+        }
+        return new SessionConfig(Duration.ofSeconds(ttlSeconds), notifyOnExpiry, maxSessions);
+    }
+}
@@ -2,24 +2,75 @@ package com.home.config;
 
 import com.home.config.loader.Config;
 
+import java.time.Duration;
+
 /**
  * Configuration for Stripe payments.
  *
- * @param secretKey  the Stripe secret API key
- * @param successUrl the URL to redirect to after a successful payment
- * @param cancelUrl  the URL to redirect to if payment is cancelled
+ * @param secretKey      the Stripe secret API key
+ * @param successUrl     the URL to redirect to after a successful payment
+ * @param cancelUrl      the URL to redirect to if payment is cancelled
+ * @param linkExpiry     lifetime of each Checkout Session (Stripe accepts 30 minutes to 24 hours);
+ *                       at 24 hours, Stripe's default, no explicit expiry is sent
+ * @param linkCacheSize  maximum number of recently created links kept for reuse, 0 to disable
+ * @param threads        threads making Stripe calls in the background
+ * @param queueCapacity  link requests waiting for a thread before new ones are rejected
+ * @param timeout        time after which a pending link request is reported as failed
+ * @param connectTimeout time allowed to open a connection to Stripe
+ * @param apiBase        base URL of the Stripe API, or null for the real one; point it at a local
+ *                       stand-in server for load tests
  */
-public record StripeConfig(String secretKey, String successUrl, String cancelUrl) {
+public record StripeConfig(
+        String secretKey,
+        String successUrl,
+        String cancelUrl,
+        Duration linkExpiry,
+        int linkCacheSize,
+        int threads,
+        int queueCapacity,
+        Duration timeout,
+        Duration connectTimeout,
+        String apiBase) {
 
     /**
      * Loads Stripe configuration from environment variables or config.properties.
      *
      * @return a new StripeConfig instance with loaded values
+     * @throws IllegalStateException if the link expiry is outside Stripe's accepted range or a size
+     *                               is not positive
      */
     public static StripeConfig load() {
         var secretKey = Config.getRequired("payments.stripe.key.secret");
         var successUrl = Config.getRequired("payments.stripe.success-url");
         var cancelUrl = Config.getRequired("payments.stripe.cancel-url");
-        return new StripeConfig(secretKey, successUrl, cancelUrl);
+        var linkExpiryMinutes = Config.getInt("payments.stripe.link-expiry-minutes", 24 * 60);
+        var linkCacheSize = Config.getInt("payments.stripe.link-cache-size", 1000);
+        var threads = Config.getInt("payments.stripe.threads", 4);
+        var queueCapacity = Config.getInt("payments.stripe.queue-capacity", 100);
+        var timeoutSeconds = Config.getInt("payments.stripe.timeout-seconds", 30);
+        var connectTimeoutSeconds = Config.getInt("payments.stripe.connect-timeout-seconds", 10);
+        var apiBase = Config.get("payments.stripe.api-base");
+        if (linkExpiryMinutes < 30 || linkExpiryMinutes > 24 * 60) {
+            throw new IllegalStateException(
+                    "payments.stripe.link-expiry-minutes must be between 30 and 1440");
+        }
+        if (linkCacheSize < 0) {
+            throw new IllegalStateException("payments.stripe.link-cache-size must not be negative");
+        }
+        if (threads < 1 || queueCapacity < 1 || timeoutSeconds < 1 || connectTimeoutSeconds < 1) {
+            throw new IllegalStateException(
+                    "payments.stripe.threads, queue-capacity and timeouts must be positive");
+        }
+        return new StripeConfig(
+                secretKey,
+                successUrl,
+                cancelUrl,
+                Duration.ofMinutes(linkExpiryMinutes),
+                linkCacheSize,
+                threads,
+                queueCapacity,
+                Duration.ofSeconds(timeoutSeconds),
+                Duration.ofSeconds(connectTimeoutSeconds),
+                apiBase == null || apiBase.isBlank() ? null : apiBase);
     }
 }
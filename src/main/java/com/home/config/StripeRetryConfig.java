@@ -0,0 +1,49 @@
+package com.home.config;
+
+import com.home.config.loader.Config;
+
+import java.time.Duration;
+
+/**
+ * Configuration for retrying Stripe calls and failing fast while Stripe is degraded.
+ *
+ * @param maxRetries              retries after the first attempt for transient failures
+ * @param baseBackoff             backoff cap of the first retry; doubles with each further retry
+ * @param maxBackoff              upper bound of any single backoff
+ * @param breakerFailureThreshold consecutive transient failures that open the circuit
+ * @param breakerOpenDuration     time the circuit stays open before a probe call is let through
+ */
+public record StripeRetryConfig(
+        int maxRetries,
+        Duration baseBackoff,
+        Duration maxBackoff,
+        int breakerFailureThreshold,
+        Duration breakerOpenDuration) {
+
+    /**
+     * Loads the retry configuration from environment variables or config.properties.
+     *
+     * @return a new StripeRetryConfig instance with loaded values
+     * @throws IllegalStateException if a value is out of range
+     */
+    public static StripeRetryConfig load() {
+        var maxRetries = Config.getInt("payments.stripe.retry.max-retries", 2);
+        var baseMillis = Config.getInt("payments.stripe.retry.base-millis", 250);
+        var maxMillis = Config.getInt("payments.stripe.retry.max-millis", 4000);
+        var failureThreshold = Config.getInt("payments.stripe.breaker.failure-threshold", 5);
+        var openSeconds = Config.getInt("payments.stripe.breaker.open-seconds", 30);
+        if (maxRetries < 0 || baseMillis < 1 || maxMillis < baseMillis) {
+            throw new IllegalStateException(
+                    "payments.stripe.retry.* must satisfy max-retries >= 0 and 0 < base-millis <= max-millis");
+        }
+        if (failureThreshold < 1 || openSeconds < 1) {
+            throw new IllegalStateException("payments.stripe.breaker.* must be positive");
+        }
+        return new StripeRetryConfig(
+                maxRetries,
+                Duration.ofMillis(baseMillis),
+                Duration.ofMillis(maxMillis),
+                failureThreshold,
+                Duration.ofSeconds(openSeconds));
+    }
+}
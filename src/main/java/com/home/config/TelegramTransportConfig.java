@@ -0,0 +1,72 @@
+package com.home.config;
+
+import com.home.config.loader.Config;
+
+import java.time.Duration;
+
+/**
+ * Configuration for the HTTP connections to the Telegram Bot API. Sending and polling use separate
+ * connection pools, so a pending long poll never holds up a reply.
+ *
+ * @param sendConnections    connections kept for sending messages and other calls
+ * @param pollConnections    connections kept for getUpdates
+ * @param keepAlive          time an idle connection is kept open for reuse
+ * @param connectTimeout     time allowed to open a connection, or to wait for a free one
+ * @param socketTimeout      time allowed between response packets of a send call
+ * @param pollSocketTimeout  time allowed between response packets of getUpdates; must exceed the
+ *                           long-poll timeout
+ * @param proxyHost          HTTP proxy to connect through, or null for a direct connection
+ * @param proxyPort          HTTP proxy port
+ * @param statsInterval      interval of the connection statistics log line, or null for none
+ */
+public record TelegramTransportConfig(
+        int sendConnections,
+        int pollConnections,
+        Duration keepAlive,
+        Duration connectTimeout,
+        Duration socketTimeout,
+        Duration pollSocketTimeout,
+        String proxyHost,
+        int proxyPort,
+        Duration statsInterval) {
+
+    /**
+     * Loads the transport configuration from environment variables or config.properties.
+     *
+     * @param pollingConfig long-poll settings the getUpdates socket timeout must allow for
+     * @return a new TelegramTransportConfig instance with loaded values
+     */
+    public static TelegramTransportConfig load(PollingConfig pollingConfig) {
+        var sendConnections = Config.getInt("bot.transport.send-connections", 16);
+        var pollConnections = Config.getInt("bot.transport.poll-connections", 1);
+        var keepAliveSeconds = Config.getInt("bot.transport.keep-alive-seconds", 60);
+        var connectTimeoutSeconds = Config.getInt("bot.transport.connect-timeout-seconds", 10);
+        var socketTimeoutSeconds = Config.getInt("bot.transport.socket-timeout-seconds", 30);
+        var pollSocketTimeoutSeconds = Config.getInt("bot.transport.poll-socket-timeout-seconds", 90);
+        var proxyHost = Config.get("bot.transport.proxy-host");
+        var proxyPort = Config.getInt("bot.transport.proxy-port", 8080);
+        var statsIntervalSeconds = Config.getInt("bot.transport.stats-interval-seconds", 300);
+        if (sendConnections < 1 || pollConnections < 1) {
+            throw new IllegalStateException(
+                    "bot.transport.send-connections and poll-connections must be positive");
+        }
+        if (keepAliveSeconds < 1 || connectTimeoutSeconds < 1 || socketTimeoutSeconds < 1) {
+            throw new IllegalStateException(
+                    "bot.transport.keep-alive-seconds and timeouts must be positive");
+        }
+        if (pollSocketTimeoutSeconds <= pollingConfig.timeoutSeconds()) {
+            throw new IllegalStateException(
+                    "bot.transport.poll-socket-timeout-seconds must exceed bot.polling.timeout");
+        }
+        return new TelegramTransportConfig(
+                sendConnections,
+                pollConnections,
+                Duration.ofSeconds(keepAliveSeconds),
+                Duration.ofSeconds(connectTimeoutSeconds),
+                Duration.ofSeconds(socketTimeoutSeconds),
+                Duration.ofSeconds(pollSocketTimeoutSeconds),
+                proxyHost == null || proxyHost.isBlank() ? null : proxyHost,
+                proxyPort,
+                statsIntervalSeconds > 0 ? Duration.ofSeconds(statsIntervalSeconds) : null);
+    }
+}
@@ -0,0 +1,31 @@
+package com.home.config;
+
+import com.home.config.loader.Config;
+
+/**
+ * Configuration for webhook receive mode.
+ *
+ * @param publicUrl   externally reachable base URL registered with Telegram; when blank the
+ *                    webhook is not registered, which allows POSTing recorded updates offline
+ * @param port        local port of the embedded HTTP listener
+ * @param path        request path updates are POSTed to
+ * @param secretToken value expected in the X-Telegram-Bot-Api-Secret-Token header
+ */
+public record WebhookConfig(String publicUrl, int port, String path, String secretToken) {
+
+    /**
+     * Loads the webhook configuration from environment variables or config.properties.
+     *
+     * @return a new WebhookConfig instance with loaded values
+     */
+    public static WebhookConfig load() {
+        var publicUrl = Config.get("bot.webhook.url");
+        var port = Config.getInt("bot.webhook.port", 8443);
+        var path = Config.get("bot.webhook.path");
+        var secretToken = Config.getRequired("bot.webhook.secret");
+        if (path == null || path.isBlank()) {
+            path = "/telegram";
+        }
+        return new WebhookConfig(publicUrl, port, path, secretToken);
+    }
+}
@@ -2,6 +2,8 @@ package com.home.config.loader;
 
 import java.io.IOException;
 import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Properties;
 
 /**
@@ -55,4 +57,55 @@ public class Config {
         }
         return value;
     }
+
+    /**
+     * Gets an optional integer configuration value.
+     *
+     * @param key          the config key
+     * @param defaultValue the value to use when the key is missing or blank
+     * @return the parsed value, or {@code defaultValue} if not set
+     * @throws IllegalStateException if the value is not a valid integer
+     */
+    public static int getInt(String key, int defaultValue) {
+        var value = get(key);
+        if (value == null || value.isBlank()) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalStateException("Invalid integer config: " + key + "=" + value, e);
+        }
+    }
+
+    /**
+     * Gets an optional comma-separated list configuration value. Entries are trimmed and empty
+     * entries are dropped.
+     *
+     * @param key          the config key
+     * @param defaultValue the value to use when the key is missing or blank
+     * @return the parsed list, or {@code defaultValue} if not set
+     */
+    public static List<String> getList(String key, List<String> defaultValue) {
+        var value = get(key);
+        if (value == null || value.isBlank()) {
+            return defaultValue;
+        }
+        return Arrays.stream(value.split(",")).map(String::trim).filter(s -> !s.isEmpty()).toList();
+    }
+
+    /**
+     * Gets an optional boolean configuration value ("true" or "false", case-insensitive).
+     *
+     * @param key          the config key
+     * @param defaultValue the value to use when the key is missing or blank
+     * @return the parsed value, or {@code defaultValue} if not set
+     */
+    public static boolean getBoolean(String key, boolean defaultValue) {
+        var value = get(key);
+        if (value == null || value.isBlank()) {
+            return defaultValue;
+        }
+        return Boolean.parseBoolean(value.trim());
+    }
 }
@@ -0,0 +1,19 @@
+package com.home.model;
+
+/**
+ * Immutable snapshot of a chat's payment flow: the current step, the product data entered so far,
+ * when the session was last touched (epoch millis) and the message whose buttons answer the current
+ * step (0 if none).
+ *
+ * <p>Snapshots are compared by identity when a session is updated, so a transition only succeeds if
+ * nothing else changed the session since it was read.
+ */
+public record ChatSession(State state, ProductInfo info, long touchedAt, int promptId) {
+
+    /**
+     * Creates a snapshot of a step that has no prompt with buttons yet.
+     */
+    public ChatSession(State state, ProductInfo info, long touchedAt) {
+        this(state, info, touchedAt, 0);
+    }
+}
@@ -0,0 +1,11 @@
+package com.home.model;
+
+/**
+ * An exact amount of money in the currency's minor units, e.g. 1999 for 19.99 EUR or 500 for
+ * 500 JPY.
+ *
+ * @param minorUnits amount in the smallest unit of the currency
+ * @param currency   lowercase ISO 4217 code, as Stripe expects it
+ */
+public record Money(long minorUnits, String currency) {
+}
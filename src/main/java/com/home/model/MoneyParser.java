@@ -0,0 +1,327 @@
+package com.home.model;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Parses user input such as "19.99 EUR" into exact minor units.
+ *
+ * <p>The input is scanned once, without floating point or intermediate strings, so 19.99 is always
+ * 1999 cents and only the returned {@link Money} is allocated. Currencies are looked up in a
+ * precomputed table indexed by the three letters, which holds each currency's number of minor-unit
+ * digits and its interned lowercase code: 500 JPY is 500, 1.250 KWD is 1250. The digits are the
+ * ones Stripe expects, which follow ISO 4217 except for a few codes: MGA has none, and ISK and UGX
+ * take no decimals but are sent in two-decimal form, so 500 ISK is 50000. Stripe also only charges
+ * three-decimal currencies in steps of 0.010, so 1.255 KWD is rejected.
+ *
+ * <p>Accepted forms:
+ * <ul>
+ *   <li>the code before or after the amount, in any case, with or without whitespace between
+ *       ("19.99 eur", "EUR 19,99", "19.99EUR");</li>
+ *   <li>'.' or ',' as the decimal separator;</li>
+ *   <li>thousands grouped with spaces (including no-break spaces), apostrophes, underscores or
+ *       the other of '.' and ','
+ *       ("1 234.50", "1'234.50", "1.234,50", "1,234.50").</li>
+ * </ul>
+ * A lone separator followed by exactly three digits is a thousands separator unless the currency
+ * has three minor-unit digits, so "1,500 USD" is 1500.00 USD and "1,500 KWD" is 1.500 KWD.
+ */
+public final class MoneyParser {
+
+    private static final int MAX_DIGITS = 15;
+    private static final long[] POWERS_OF_TEN = {1, 10, 100, 1000, 10_000};
+
+    /**
+     * Minor-unit digits per currency, indexed by {@link #index}; -1 for unknown codes.
+     */
+    private static final byte[] EXPONENTS = new byte[26 * 26 * 26];
+
+    /**
+     * Decimals a user may enter per currency, indexed like {@link #EXPONENTS}; at most its
+     * exponent.
+     */
+    private static final byte[] DECIMALS = new byte[26 * 26 * 26];
+
+    /**
+     * Interned lowercase codes, indexed like {@link #EXPONENTS}.
+     */
+    private static final String[] CODES = new String[26 * 26 * 26];
+
+    static {
+        Arrays.fill(EXPONENTS, (byte) -1);
+        // MGA has two decimals in ISO 4217 but none at Stripe
+        register(
+                0,
+                "BIF CLP DJF GNF JPY KMF KRW MGA PYG RWF UYI VND VUV XAF XOF XPF");
+        // Zero-decimal, but Stripe takes them in two-decimal form
+        register(2, 0, "ISK UGX");
+        register(
+                2,
+                "AED AFN ALL AMD ANG AOA ARS AUD AWG AZN BAM BBD BDT BGN BMD BND BOB BOV BRL BSD "
+                        + "BTN BWP BYN BZD CAD CDF CHE CHF CHW CNY COP COU CRC CUC CUP CVE CZK "
+                        + "DKK DOP DZD EGP ERN ETB EUR FJD FKP GBP GEL GHS GIP GMD GTQ GYD HKD "
+                        + "HNL HTG HUF IDR ILS INR IRR JMD KES KGS KHR KPW KYD KZT LAK LBP LKR "
+                        + "LRD LSL MAD MDL MKD MMK MNT MOP MRU MUR MVR MWK MXN MXV MYR MZN "
+                        + "NAD NGN NIO NOK NPR NZD PAB PEN PGK PHP PKR PLN QAR RON RSD RUB SAR "
+                        + "SBD SCR SDG SEK SGD SHP SLE SLL SOS SRD SSP STN SVC SYP SZL THB TJS "
+                        + "TMT TOP TRY TTD TWD TZS UAH USD USN UYU UZS VED VES WST XCD XCG YER "
+                        + "ZAR ZMW ZWG ZWL");
+        register(3, "BHD IQD JOD KWD LYD OMR TND");
+        register(4, "CLF UYW");
+    }
+
+    private MoneyParser() {
+    }
+
+    /**
+     * Parses an amount and currency code.
+     *
+     * @param input the text to parse
+     * @return the exact amount in minor units
+     * @throws NumberFormatException with a message fit for the user if the input is malformed, the
+     *                               currency is unknown or the amount has more decimals than
+     *                               Stripe can charge in the currency
+     */
+    public static Money parse(CharSequence input) {
+        return parse(input, null);
+    }
+
+    /**
+     * Parses an amount with an optional currency code, using the given currency if the input has
+     * none, e.g. "19.99" after the user picked EUR.
+     *
+     * @param input           the text to parse
+     * @param defaultCurrency ISO 4217 code in any case to use when the input has no code, or null
+     *                        to require one
+     * @return the exact amount in minor units
+     * @throws NumberFormatException as for {@link #parse(CharSequence)}
+     */
+    public static Money parse(CharSequence input, String defaultCurrency) {
+        var length = input.length();
+        var i = skipWhitespace(input, 0);
+
+        // Currency code first, e.g. "EUR 19.99"
+        var currency = -1;
+        if (i < length && isLetter(input.charAt(i))) {
+            currency = readCurrency(input, i);
+            i = skipWhitespace(input, i + 3);
+        }
+
+        // Amount: digits with separators, validated once the currency is known
+        long value = 0;
+        var digits = 0;
+        var separators = 0;
+        var dots = 0;
+        var commas = 0;
+        var lastSeparator = (char) 0;
+        var firstGroup = 0;
+        var groupDigits = 0;
+        var intermediateGroupsValid = true;
+        while (i < length) {
+            var c = input.charAt(i);
+            if (c >= '0' && c <= '9') {
+                if (++digits > MAX_DIGITS) {
+                    throw new NumberFormatException("The amount is too large");
+                }
+                value = value * 10 + (c - '0');
+                groupDigits++;
+                i++;
+            } else if (isSeparator(c) && digits > 0) {
+                // Whitespace only separates groups if more digits follow
+                var next = isSpace(c) ? skipWhitespace(input, i) : i + 1;
+                if (next >= length || !isDigit(input.charAt(next))) {
+                    if (isSpace(c)) {
+                        break;
+                    }
+                    throw new NumberFormatException("The amount must end with a digit");
+                }
+                if (separators == 0) {
+                    firstGroup = groupDigits;
+                } else if (groupDigits != 3) {
+                    intermediateGroupsValid = false;
+                }
+                separators++;
+                dots += c == '.' ? 1 : 0;
+                commas += c == ',' ? 1 : 0;
+                lastSeparator = c;
+                groupDigits = 0;
+                i = next;
+            } else {
+                break;
+            }
+        }
+        if (digits == 0) {
+            throw new NumberFormatException("Enter the amount as a number, e.g. 10.00 USD");
+        }
+
+        // Currency code last, e.g. "19.99 EUR"
+        i = skipWhitespace(input, i);
+        if (currency < 0 && i >= length && defaultCurrency != null) {
+            currency = readCurrency(defaultCurrency, 0);
+        } else if (currency < 0) {
+            if (i >= length || !isLetter(input.charAt(i))) {
+                throw new NumberFormatException("Add a currency code, e.g. 10.00 USD");
+            }
+            currency = readCurrency(input, i);
+            i = skipWhitespace(input, i + 3);
+        }
+        if (i != length) {
+            throw new NumberFormatException(
+                    "Enter only the amount and a currency code, e.g. 10.00 USD");
+        }
+
+        var exponent = EXPONENTS[currency];
+        var maxDecimals = DECIMALS[currency];
+        var decimals = 0;
+        if (separators > 0) {
+            var decimal =
+                    (lastSeparator == '.' && dots == 1 || lastSeparator == ',' && commas == 1)
+                            && (separators > 1 || groupDigits != 3 || maxDecimals == 3);
+            if (!intermediateGroupsValid
+                    || (separators > 1 || !decimal) && (firstGroup < 1 || firstGroup > 3)
+                    || !decimal && groupDigits != 3) {
+                throw new NumberFormatException("The amount has misplaced separators");
+            }
+            if (decimal) {
+                decimals = groupDigits;
+            }
+        }
+        if (decimals > maxDecimals) {
+            var code = CODES[currency].toUpperCase(Locale.ROOT);
+            throw new NumberFormatException(
+                    maxDecimals == 0
+                            ? code + " amounts have no decimals"
+                            : code + " amounts have at most " + maxDecimals + " decimals");
+        }
+        var scale = exponent - decimals;
+        if (digits + scale > MAX_DIGITS) {
+            throw new NumberFormatException("The amount is too large");
+        }
+        var minorUnits = value * POWERS_OF_TEN[scale];
+        if (exponent == 3 && minorUnits % 10 != 0) {
+            throw new NumberFormatException(
+                    CODES[currency].toUpperCase(Locale.ROOT)
+                            + " amounts must end in 0, e.g. 1.250");
+        }
+        return new Money(minorUnits, CODES[currency]);
+    }
+
+    /**
+     * Returns the number of minor-unit digits of a currency, or -1 if the code is unknown.
+     *
+     * @param currency ISO 4217 code in any case
+     */
+    public static int exponent(String currency) {
+        if (currency == null || currency.length() != 3) {
+            return -1;
+        }
+        var index = index(currency, 0);
+        return index < 0 ? -1 : EXPONENTS[index];
+    }
+
+    /**
+     * Returns the number of decimals a user may enter for a currency, or -1 if the code is unknown.
+     * This is the exponent except for currencies Stripe takes in two-decimal form, such as ISK.
+     *
+     * @param currency ISO 4217 code in any case
+     */
+    public static int decimals(String currency) {
+        if (currency == null || currency.length() != 3) {
+            return -1;
+        }
+        var index = index(currency, 0);
+        return index < 0 || EXPONENTS[index] < 0 ? -1 : DECIMALS[index];
+    }
+
+    /**
+     * Formats an amount in minor units as a decimal number, e.g. "19.99" for 1999 EUR, "500" for
+     * 500 JPY or "500" for 50000 ISK.
+     *
+     * @param minorUnits amount in minor units
+     * @param currency   ISO 4217 code in any case
+     * @return the formatted amount, or the plain number if the currency is unknown
+     */
+    public static String format(long minorUnits, String currency) {
+        var exponent = exponent(currency);
+        if (exponent <= 0) {
+            return Long.toString(minorUnits);
+        }
+        var unit = POWERS_OF_TEN[exponent];
+        var decimals = decimals(currency);
+        var whole = (minorUnits < 0 ? "-" : "") + Math.abs(minorUnits / unit);
+        if (decimals == 0 && minorUnits % unit == 0) {
+            return whole;
+        }
+        var fraction = Long.toString(Math.abs(minorUnits % unit) + unit).substring(1);
+        return whole + "." + fraction;
+    }
+
+    private static int readCurrency(CharSequence input, int start) {
+        var index = start + 3 <= input.length() ? index(input, start) : -1;
+        if (index < 0
+                || EXPONENTS[index] < 0
+                || start + 3 < input.length() && isLetter(input.charAt(start + 3))) {
+            var end = start;
+            while (end < input.length() && isLetter(input.charAt(end))) {
+                end++;
+            }
+            throw new NumberFormatException(
+                    "Unsupported currency '" + input.subSequence(start, end) + "'");
+        }
+        return index;
+    }
+
+    /**
+     * Maps three letters in any case to a table index, or -1 if any of them is not a letter.
+     */
+    private static int index(CharSequence code, int start) {
+        var index = 0;
+        for (var i = start; i < start + 3; i++) {
+            var c = code.charAt(i) | 0x20; // Lowercase ASCII letters
+            if (c < 'a' || c > 'z') {
+                return -1;
+            }
+            index = index * 26 + (c - 'a');
+        }
+        return index;
+    }
+
+    private static void register(int exponent, String codes) {
+        register(exponent, exponent, codes);
+    }
+
+    private static void register(int exponent, int decimals, String codes) {
+        for (var code : codes.split(" ")) {
+            var index = index(code, 0);
+            EXPONENTS[index] = (byte) exponent;
+            DECIMALS[index] = (byte) decimals;
+            CODES[index] = code.toLowerCase(Locale.ROOT).intern();
+        }
+    }
+
+    private static int skipWhitespace(CharSequence input, int i) {
+        while (i < input.length() && isSpace(input.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    private static boolean isSeparator(char c) {
+        return c == '.' || c == ',' || c == '\'' || c == '_' || isSpace(c);
+    }
+
+    /**
+     * Whitespace including the no-break spaces many locales group thousands with.
+     */
+    private static boolean isSpace(char c) {
+        return Character.isWhitespace(c) || c == '\u00A0' || c == '\u202F';
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isLetter(char c) {
+        return (c | 0x20) >= 'a' && (c | 0x20) <= 'z';
+    }
+}
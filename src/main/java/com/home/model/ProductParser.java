@@ -0,0 +1,123 @@
+package com.home.model;
+
+/**
+ * Parses a whole product from one line of text, e.g. {@code 19.99 EUR "Blue mug" x3}, as typed
+ * after /pay or in inline mode.
+ *
+ * <p>The line holds the price and currency in any form {@link MoneyParser} accepts, the product
+ * name and an optional quantity written as {@code x3} (1 if omitted). A name with spaces after a
+ * multi-word amount such as "1 234,50 EUR" must be quoted; otherwise everything between the
+ * currency and the quantity is the name.
+ */
+public final class ProductParser {
+
+    private ProductParser() {
+    }
+
+    /**
+     * Splits a product description into price, name and quantity.
+     *
+     * @param args the description, e.g. {@code 19.99 EUR "Blue mug" x3}
+     * @return the product
+     * @throws IllegalArgumentException with a message fit for the user if a part is missing or
+     *                                  invalid; {@link NumberFormatException} for the price
+     */
+    public static ProductInfo parse(String args) {
+        if (args.isEmpty()) {
+            throw new IllegalArgumentException("Enter the price, currency and product name");
+        }
+
+        // Optional trailing quantity, e.g. "x3"
+        var end = args.length();
+        var quantity = 1;
+        var lastSpace = lastWhitespace(args);
+        var last = args.substring(lastSpace + 1);
+        if (isQuantity(last)) {
+            try {
+                quantity = Integer.parseInt(last, 1, last.length(), 10);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("The quantity is too large");
+            }
+            if (quantity <= 0) {
+                throw new IllegalArgumentException("Quantity must be a positive number");
+            }
+            end = Math.max(lastSpace, 0);
+        }
+
+        // Name in straight or typographic quotes, or the words after the first two tokens
+        int moneyEnd;
+        String name;
+        var open = indexOfQuote(args, 0, end);
+        if (open >= 0) {
+            var close = indexOfQuote(args, open + 1, end);
+            if (close < 0 || !args.substring(close + 1, end).isBlank()) {
+                throw new IllegalArgumentException("Close the quoted product name");
+            }
+            moneyEnd = open;
+            name = args.substring(open + 1, close).trim();
+        } else {
+            moneyEnd = tokenEnd(args, tokenEnd(args, 0));
+            name = args.substring(Math.min(moneyEnd, end), end).trim();
+        }
+        if (name.isEmpty()) {
+            throw new IllegalArgumentException("Enter the product name");
+        }
+
+        var price = MoneyParser.parse(args.subSequence(0, Math.min(moneyEnd, end)));
+        if (price.minorUnits() <= 0) {
+            throw new IllegalArgumentException("Price must be a positive number");
+        }
+        return new ProductInfo(price.minorUnits(), price.currency(), name, quantity);
+    }
+
+    /**
+     * Whether a token is a quantity such as "x3", "X3" or "×3" rather than part of the name.
+     */
+    private static boolean isQuantity(String token) {
+        if (token.length() < 2 || (token.charAt(0) | 0x20) != 'x' && token.charAt(0) != '×') {
+            return false;
+        }
+        for (var i = 1; i < token.length(); i++) {
+            if (token.charAt(i) < '0' || token.charAt(i) > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the index just past the next whitespace-separated token starting at or after from.
+     */
+    private static int tokenEnd(String text, int from) {
+        var i = from;
+        while (i < text.length() && Character.isWhitespace(text.charAt(i))) {
+            i++;
+        }
+        while (i < text.length() && !Character.isWhitespace(text.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    private static int lastWhitespace(String text) {
+        for (var i = text.length() - 1; i >= 0; i--) {
+            if (Character.isWhitespace(text.charAt(i))) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Finds a quote character in [from, to); phones often replace '"' with typographic quotes.
+     */
+    private static int indexOfQuote(String text, int from, int to) {
+        for (var i = from; i < to; i++) {
+            var c = text.charAt(i);
+            if (c == '"' || c == '“' || c == '”' || c == '«' || c == '»') {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,64 @@
+package com.home.stripe;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded, access-ordered cache of Checkout links. An entry is served only until its reuse
+ * deadline, which callers set well before the Checkout Session itself expires so a reused link
+ * still leaves the payer enough time.
+ *
+ * @param <K> link key type
+ */
+final class CheckoutLinkCache<K> {
+
+    private final int maxSize;
+    private final LinkedHashMap<K, Entry> entries;
+
+    CheckoutLinkCache(int maxSize) {
+        this.maxSize = maxSize;
+        this.entries =
+                new LinkedHashMap<>(16, 0.75f, true) {
+                    @Override
+                    protected boolean removeEldestEntry(Map.Entry<K, Entry> eldest) {
+                        return size() > CheckoutLinkCache.this.maxSize;
+                    }
+                };
+    }
+
+    /**
+     * Returns the cached URL if it may still be reused.
+     *
+     * @param now current time in epoch millis
+     * @return the URL, or null if absent or past its reuse deadline
+     */
+    synchronized String get(K key, long now) {
+        var entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (now >= entry.reuseUntil()) {
+            entries.remove(key);
+            return null;
+        }
+        return entry.url();
+    }
+
+    /**
+     * Caches a URL, evicting the least recently used entry when full.
+     *
+     * @param reuseUntil epoch millis after which the URL is no longer handed out
+     */
+    synchronized void put(K key, String url, long reuseUntil) {
+        if (maxSize > 0) {
+            entries.put(key, new Entry(url, reuseUntil));
+        }
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+
+    private record Entry(String url, long reuseUntil) {
+    }
+}
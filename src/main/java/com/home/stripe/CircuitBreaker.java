@@ -0,0 +1,110 @@
+package com.home.stripe;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Consecutive-failure circuit breaker.
+ *
+ * <p>While closed every call goes through. After {@code failureThreshold} failures in a row the
+ * circuit opens and calls are refused without touching the network. Once {@code openDuration} has
+ * passed, a single probe call is let through (half-open): success closes the circuit, failure
+ * opens it again for another period.
+ */
+final class CircuitBreaker {
+
+    private static final Logger log = LoggerFactory.getLogger(CircuitBreaker.class);
+
+    enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    private final String name;
+    private final int failureThreshold;
+    private final long openMillis;
+    private final AtomicLong transitions = new AtomicLong();
+
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long openedAt;
+
+    CircuitBreaker(String name, int failureThreshold, Duration openDuration) {
+        this.name = name;
+        this.failureThreshold = failureThreshold;
+        this.openMillis = openDuration.toMillis();
+    }
+
+    /**
+     * Asks whether a call may proceed; in the half-open state only the first caller is admitted.
+     *
+     * @return true if the call may be made
+     */
+    synchronized boolean tryAcquire() {
+        switch (state) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                if (System.currentTimeMillis() - openedAt < openMillis) {
+                    return false;
+                }
+                transition(State.HALF_OPEN);
+                return true;
+            default:
+                // A probe is already in flight
+                return false;
+        }
+    }
+
+    /**
+     * Records a call that reached the service, including calls it rejected as invalid.
+     */
+    synchronized void onSuccess() {
+        consecutiveFailures = 0;
+        if (state != State.CLOSED) {
+            transition(State.CLOSED);
+        }
+    }
+
+    /**
+     * Records a call that failed because the service was unavailable.
+     */
+    synchronized void onFailure() {
+        consecutiveFailures++;
+        if (state == State.HALF_OPEN
+                || state == State.CLOSED && consecutiveFailures >= failureThreshold) {
+            openedAt = System.currentTimeMillis();
+            transition(State.OPEN);
+        }
+    }
+
+    synchronized State state() {
+        return state;
+    }
+
+    /**
+     * Returns how many times the breaker has changed state.
+     */
+    long transitionCount() {
+        return transitions.get();
+    }
+
+    private void transition(State next) {
+        transitions.incrementAndGet();
+        if (next == State.OPEN) {
+            log.warn(
+                    "{} circuit {} -> OPEN after {} consecutive failures; failing fast for {} ms",
+                    name,
+                    state,
+                    consecutiveFailures,
+                    openMillis);
+        } else {
+            log.info("{} circuit {} -> {}", name, state, next);
+        }
+        state = next;
+    }
+}
@@ -0,0 +1,68 @@
+package com.home.stripe;
+
+import com.stripe.exception.StripeException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Wording shown to the user when {@link StripeLinkCreator#createStripeLinkAsync} fails, one text
+ * per kind of failure. Each caller supplies its own wording; which text applies, and how the
+ * failure is logged, is decided here.
+ *
+ * @param busy        shown when the Stripe pool is saturated
+ * @param unavailable shown while the circuit breaker refuses calls
+ * @param timedOut    shown when the link took longer than the configured timeout
+ * @param failed      shown for any other failure; a {@code %s} in it is replaced with the
+ *                    failure's message
+ */
+public record LinkFailureMessages(String busy, String unavailable, String timedOut, String failed) {
+
+    private static final Logger log = LoggerFactory.getLogger(LinkFailureMessages.class);
+
+    /**
+     * Returns the wording for a chat reply that asks the user to repeat their last input.
+     *
+     * @param retry what the user should do again, e.g. "send the command again"
+     */
+    public static LinkFailureMessages retrying(String retry) {
+        return new LinkFailureMessages(
+                "The bot is busy right now. Please " + retry + " in a minute.",
+                "Payments are temporarily unavailable. Please " + retry + " in a few minutes.",
+                "Generating the payment link took too long. Please " + retry + ".",
+                "Failed to generate Stripe payment link. Please try again later.");
+    }
+
+    /**
+     * Logs a failed link request and returns the text for it.
+     *
+     * @param failure the failure the link request completed with, possibly wrapped
+     */
+    public String describe(Throwable failure) {
+        var cause =
+                failure instanceof CompletionException && failure.getCause() != null
+                        ? failure.getCause()
+                        : failure;
+        if (cause instanceof RejectedExecutionException) {
+            log.warn("Stripe link request rejected: pool saturated");
+            return busy;
+        }
+        if (cause instanceof StripeUnavailableException) {
+            log.warn("Stripe link request refused: circuit open");
+            return unavailable;
+        }
+        if (cause instanceof TimeoutException) {
+            log.error("Stripe link request timed out");
+            return timedOut;
+        }
+        if (cause instanceof StripeException) {
+            log.error("Stripe error: {}", cause.getMessage());
+        } else {
+            log.error("Unexpected error creating Stripe link", cause);
+        }
+        return failed.formatted(cause.getMessage());
+    }
+}
@@ -0,0 +1,189 @@
+package com.home.stripe;
+
+import com.stripe.Stripe;
+import com.stripe.exception.ApiConnectionException;
+import com.stripe.exception.StripeException;
+import com.stripe.net.HttpClient;
+import com.stripe.net.HttpHeaders;
+import com.stripe.net.StripeRequest;
+import com.stripe.net.StripeResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Stripe SDK transport built on {@link java.net.http.HttpClient}.
+ *
+ * <p>The SDK's default client opens a new {@code HttpURLConnection} per call and relies on the JDK
+ * keep-alive cache, which on a quiet bot usually means a fresh TLS handshake per payment link.
+ * This client keeps its connection open and negotiates HTTP/2 where the server supports it, so
+ * every call after {@link #warmUp()} reuses one TLS session and concurrent calls share it as
+ * streams. Each request is timed; totals are exposed for monitoring and every call is logged at
+ * debug level with its duration and Stripe request ID.
+ */
+public class PooledStripeHttpClient extends HttpClient {
+
+    private static final Logger log = LoggerFactory.getLogger(PooledStripeHttpClient.class);
+
+    private final java.net.http.HttpClient httpClient;
+    private final Duration readTimeout;
+    private final AtomicLong requestCount = new AtomicLong();
+    private final AtomicLong totalNanos = new AtomicLong();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    /**
+     * Creates the client; no connection is opened until the first request or {@link #warmUp()}.
+     *
+     * @param connectTimeout time allowed to establish a connection
+     * @param readTimeout    time allowed for a whole request once connected
+     */
+    public PooledStripeHttpClient(Duration connectTimeout, Duration readTimeout) {
+        this.readTimeout = readTimeout;
+        this.httpClient =
+                java.net.http.HttpClient.newBuilder()
+                        .version(java.net.http.HttpClient.Version.HTTP_2)
+                        .connectTimeout(connectTimeout)
+                        .followRedirects(java.net.http.HttpClient.Redirect.NEVER)
+                        .build();
+    }
+
+    @Override
+    public StripeResponse request(StripeRequest request) throws StripeException {
+        var httpRequest = toHttpRequest(request);
+        var started = System.nanoTime();
+        try {
+            var response = httpClient.send(httpRequest, HttpResponse.BodyHandlers.ofString());
+            var elapsed = record(started);
+            var headers = HttpHeaders.of(response.headers().map());
+            if (log.isDebugEnabled()) {
+                log.debug(
+                        "Stripe {} {} -> {} in {} ms ({}, request {})",
+                        request.method(),
+                        request.url().getPath(),
+                        response.statusCode(),
+                        elapsed / 1_000_000,
+                        response.version(),
+                        headers.firstValue("Request-Id").orElse("-"));
+            }
+            return new StripeResponse(response.statusCode(), headers, response.body());
+        } catch (IOException e) {
+            record(started);
+            throw new ApiConnectionException(
+                    String.format(
+                            "IOException during API request to Stripe (%s): %s",
+                            Stripe.getApiBase(), e),
+                    e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ApiConnectionException("Interrupted during API request to Stripe", e);
+        }
+    }
+
+    /**
+     * Opens the connection ahead of the first payment link: performs the TLS handshake and HTTP/2
+     * negotiation with an unauthenticated request whose response is ignored.
+     *
+     * @return how long the warm-up took
+     */
+    public Duration warmUp() {
+        var started = System.nanoTime();
+        try {
+            var request =
+                    HttpRequest.newBuilder(new URI(Stripe.getApiBase() + "/v1/"))
+                            .timeout(readTimeout)
+                            .GET()
+                            .build();
+            var response = httpClient.send(request, HttpResponse.BodyHandlers.discarding());
+            log.info(
+                    "Stripe connection warmed up over {} in {} ms",
+                    response.version(),
+                    (System.nanoTime() - started) / 1_000_000);
+        } catch (IOException | URISyntaxException e) {
+            log.warn("Stripe connection warm-up failed: {}", e.toString());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return Duration.ofNanos(System.nanoTime() - started);
+    }
+
+    /**
+     * Returns the number of requests sent, including failed ones.
+     */
+    public long requestCount() {
+        return requestCount.get();
+    }
+
+    /**
+     * Returns the mean request duration in milliseconds, or 0 before the first request.
+     */
+    public double averageLatencyMillis() {
+        var count = requestCount.get();
+        return count == 0 ? 0 : totalNanos.get() / 1e6 / count;
+    }
+
+    /**
+     * Returns the longest request duration in milliseconds.
+     */
+    public double maxLatencyMillis() {
+        return maxNanos.get() / 1e6;
+    }
+
+    private HttpRequest toHttpRequest(StripeRequest request) throws ApiConnectionException {
+        URI uri;
+        try {
+            uri = request.url().toURI();
+        } catch (URISyntaxException e) {
+            throw new ApiConnectionException("Invalid Stripe URL: " + request.url(), e);
+        }
+
+        // A call may ask for less than the configured timeout, e.g. what is left of its deadline
+        var timeout = readTimeout;
+        var options = request.options();
+        if (options != null && options.getReadTimeout() != null) {
+            var requested = Duration.ofMillis(options.getReadTimeout());
+            if (requested.compareTo(timeout) < 0) {
+                timeout = requested;
+            }
+        }
+        var builder = HttpRequest.newBuilder(uri).timeout(timeout);
+        var headers =
+                request.headers()
+                        .withAdditionalHeaders(
+                                Map.of(
+                                        "User-Agent", List.of(buildUserAgentString(request)),
+                                        "X-Stripe-Client-User-Agent",
+                                                List.of(buildXStripeClientUserAgentString())));
+        for (var header : headers.map().entrySet()) {
+            for (var value : header.getValue()) {
+                builder.header(header.getKey(), value);
+            }
+        }
+
+        var content = request.content();
+        var body =
+                content != null
+                        ? HttpRequest.BodyPublishers.ofByteArray(content.byteArrayContent())
+                        : HttpRequest.BodyPublishers.noBody();
+        if (content != null) {
+            builder.header("Content-Type", content.contentType());
+        }
+        return builder.method(request.method().name(), body).build();
+    }
+
+    private long record(long started) {
+        var elapsed = System.nanoTime() - started;
+        requestCount.incrementAndGet();
+        totalNanos.addAndGet(elapsed);
+        maxNanos.accumulateAndGet(elapsed, Math::max);
+        return elapsed;
+    }
+}
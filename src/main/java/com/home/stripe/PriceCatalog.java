@@ -0,0 +1,172 @@
+package com.home.stripe;
+
+import com.home.config.PriceCatalogConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Local index from product identity (name, currency, unit amount) to the ID of a reusable Stripe
+ * Price.
+ *
+ * <p>Each product is identified in Stripe by a lookup key derived from its identity, so any bot
+ * instance can find a Price created by another. This index only saves that lookup: it is bounded
+ * with least-recently-used eviction, written to a file whenever a new Price is added, and read
+ * back at startup so repeat products skip the lookup from the first link on.
+ */
+public class PriceCatalog {
+
+    private static final Logger log = LoggerFactory.getLogger(PriceCatalog.class);
+
+    private static final String LOOKUP_KEY_PREFIX = "tgbot_";
+
+    private final PriceCatalogConfig config;
+    private final Path file;
+    private final LinkedHashMap<String, String> priceIds;
+    private final Object fileLock = new Object();
+
+    /**
+     * Creates an empty catalog; call {@link #load()} to restore the persisted index.
+     *
+     * @param config index size and persistence file
+     */
+    public PriceCatalog(PriceCatalogConfig config) {
+        this.config = config;
+        this.file = config.file() != null ? Path.of(config.file()) : null;
+        this.priceIds =
+                new LinkedHashMap<>(16, 0.75f, true) {
+                    @Override
+                    protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+                        return size() > config.maxSize();
+                    }
+                };
+    }
+
+    /**
+     * Restores the persisted index.
+     *
+     * @return the number of loaded prices
+     */
+    public int load() {
+        if (file == null || !config.enabled()) {
+            return 0;
+        }
+        try {
+            var loaded = 0;
+            for (var line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+                var separator = line.indexOf(' ');
+                if (separator > 0) {
+                    synchronized (this) {
+                        priceIds.put(line.substring(0, separator), line.substring(separator + 1));
+                    }
+                    loaded++;
+                }
+            }
+            return loaded;
+        } catch (NoSuchFileException e) {
+            return 0;
+        } catch (IOException e) {
+            log.warn("Failed to load price catalog {}: {}", file, e.getMessage());
+            return 0;
+        }
+    }
+
+    /**
+     * Returns whether links should reference catalog prices.
+     */
+    public boolean enabled() {
+        return config.enabled();
+    }
+
+    /**
+     * Returns the indexed Price ID for the lookup key.
+     *
+     * @return the Price ID, or null if not indexed
+     */
+    public synchronized String get(String lookupKey) {
+        return priceIds.get(lookupKey);
+    }
+
+    /**
+     * Indexes a Price and persists the index.
+     */
+    public void put(String lookupKey, String priceId) {
+        synchronized (this) {
+            if (priceId.equals(priceIds.put(lookupKey, priceId))) {
+                return;
+            }
+        }
+        persist();
+    }
+
+    /**
+     * Drops an entry whose Price was rejected by Stripe (e.g. archived in the dashboard), so the
+     * next link looks it up again.
+     */
+    public void remove(String lookupKey) {
+        synchronized (this) {
+            if (priceIds.remove(lookupKey) == null) {
+                return;
+            }
+        }
+        persist();
+    }
+
+    /**
+     * Derives the Stripe lookup key for a product. Names are compared after trimming and
+     * currencies case-insensitively, matching how Stripe displays and stores them.
+     *
+     * @return a key of at most 200 characters, as Stripe requires
+     */
+    public static String lookupKey(String name, String currency, long unitAmount) {
+        try {
+            var material =
+                    name.strip() + "\u0000" + currency.toLowerCase(Locale.ROOT) + "\u0000" + unitAmount;
+            var hash =
+                    MessageDigest.getInstance("SHA-256")
+                            .digest(material.getBytes(StandardCharsets.UTF_8));
+            return LOOKUP_KEY_PREFIX + HexFormat.of().formatHex(hash, 0, 16);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * Rewrites the index file, least recently used entries first so a reload keeps the order.
+     */
+    private void persist() {
+        if (file == null) {
+            return;
+        }
+        synchronized (fileLock) {
+            ArrayList<String> lines;
+            synchronized (this) {
+                lines = new ArrayList<>(priceIds.size());
+                for (var entry : priceIds.entrySet()) {
+                    lines.add(entry.getKey() + " " + entry.getValue());
+                }
+            }
+            try {
+                var tmp = file.resolveSibling(file.getFileName() + ".tmp");
+                Files.write(tmp, lines, StandardCharsets.UTF_8);
+                Files.move(
+                        tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                log.warn("Failed to persist price catalog {}: {}", file, e.getMessage());
+            }
+        }
+    }
+}
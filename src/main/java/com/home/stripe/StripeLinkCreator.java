@@ -1,62 +1,560 @@
 package com.home.stripe;
 
 import com.home.config.StripeConfig;
+import com.home.config.StripeRetryConfig;
 import com.home.model.ProductInfo;
 import com.stripe.Stripe;
+import com.stripe.exception.ApiConnectionException;
+import com.stripe.exception.InvalidRequestException;
+import com.stripe.exception.RateLimitException;
 import com.stripe.exception.StripeException;
+import com.stripe.model.Price;
 import com.stripe.model.checkout.Session;
+import com.stripe.net.ApiResource;
+import com.stripe.net.HttpClient;
+import com.stripe.net.LiveStripeResponseGetter;
+import com.stripe.net.RequestOptions;
+import com.stripe.param.PriceCreateParams;
+import com.stripe.param.PriceListParams;
 import com.stripe.param.checkout.SessionCreateParams;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.Locale;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Creates Stripe payment links based on product information.
+ *
+ * <p>A Checkout Session can be paid only once, so links are reused per chat: when the same chat
+ * asks again for an identical product, the link created earlier is returned while at least half of
+ * its lifetime remains. Identical requests that arrive while a link is being created wait for that
+ * one call instead of starting their own.
+ *
+ * <p>{@link #createStripeLinkAsync} runs the call on a small bounded pool so update handlers never
+ * wait on Stripe.
+ *
+ * <p>Transient failures (network errors, 429 and 5xx responses) are retried with jittered
+ * exponential backoff. Every attempt for the same link carries the same idempotency key, derived
+ * from the chat and the session parameters, so a retry after a lost response returns the session
+ * Stripe already created instead of creating a second one. A circuit breaker stops calling Stripe
+ * for a while after repeated transient failures, so users get an answer at once during an outage.
+ *
+ * <p>With the {@link PriceCatalog} enabled, each distinct product is created once as a reusable
+ * Stripe Price and later links reference it by ID instead of sending inline price data, which
+ * would create a throwaway product per link.
  */
 public class StripeLinkCreator {
+
+    private static final Logger log = LoggerFactory.getLogger(StripeLinkCreator.class);
+
+    private static final Duration MAX_LINK_EXPIRY = Duration.ofHours(24);
+    // Parameter Stripe names when a session's catalog Price is archived or missing
+    private static final String PRICE_PARAM = "line_items[0][price]";
+    private static final int MAX_REJECTED_PRICES = 1024;
+
     private final StripeConfig stripeConfig;
+    private final StripeRetryConfig retryConfig;
+    private final CircuitBreaker circuitBreaker;
+    private final PriceCatalog priceCatalog;
+    // Lookup key to the Price a session was rejected for, e.g. archived in the dashboard; replaced
+    // when next needed. Guarded by itself and bounded, least recently rejected dropped first.
+    private final Map<String, String> rejectedPrices =
+            new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+                    return size() > MAX_REJECTED_PRICES;
+                }
+            };
+    private final AtomicLong retryCount = new AtomicLong();
+    private final AtomicLong rejectedCount = new AtomicLong();
+    private final CheckoutLinkCache<LinkKey> linkCache;
+    private final ConcurrentHashMap<LinkKey, CompletableFuture<String>> inFlight =
+            new ConcurrentHashMap<>();
+    private final ExecutorService executor;
+    private final ExecutorService callbackExecutor;
 
     /**
      * Initializes Stripe with the provided configuration.
      *
-     * @param stripeConfig contains API key and redirect URLs
+     * @param stripeConfig contains API key, redirect URLs and link cache settings
+     * @param retryConfig  retry backoff and circuit breaker settings
+     * @param priceCatalog index of reusable Prices, already loaded
+     * @param httpClient   transport used for all Stripe API calls
      */
-    public StripeLinkCreator(StripeConfig stripeConfig) {
+    public StripeLinkCreator(
+            StripeConfig stripeConfig,
+            StripeRetryConfig retryConfig,
+            PriceCatalog priceCatalog,
+            HttpClient httpClient) {
         this.stripeConfig = stripeConfig;
+        this.priceCatalog = priceCatalog;
+        this.retryConfig = retryConfig;
+        this.circuitBreaker =
+                new CircuitBreaker(
+                        "Stripe",
+                        retryConfig.breakerFailureThreshold(),
+                        retryConfig.breakerOpenDuration());
+        this.linkCache = new CheckoutLinkCache<>(stripeConfig.linkCacheSize());
+        this.executor =
+                new ThreadPoolExecutor(
+                        stripeConfig.threads(),
+                        stripeConfig.threads(),
+                        0,
+                        TimeUnit.MILLISECONDS,
+                        new ArrayBlockingQueue<>(stripeConfig.queueCapacity()),
+                        new StripeThreadFactory("stripe"));
+        this.callbackExecutor =
+                Executors.newFixedThreadPool(
+                        stripeConfig.threads(), new StripeThreadFactory("stripe-callback"));
         Stripe.apiKey = stripeConfig.secretKey(); // Init once
+        if (stripeConfig.apiBase() != null) {
+            Stripe.overrideApiBase(stripeConfig.apiBase());
+        }
+        ApiResource.setGlobalResponseGetter(new LiveStripeResponseGetter(httpClient));
+    }
+
+    /**
+     * Creates the link on the Stripe pool.
+     *
+     * @param chatId the chat the link is for
+     * @param info   the product information to include in the payment
+     * @return a future completed with the URL, or exceptionally with the {@link StripeException},
+     *     a {@link StripeUnavailableException} while the circuit is open,
+     *     a {@link RejectedExecutionException} when the pool is saturated, or a
+     *     {@link java.util.concurrent.TimeoutException} after the configured timeout. Callbacks
+     *     attached to it run on a dedicated callback pool, never on the Stripe pool or the JDK's
+     *     shared timeout thread, so they may block, e.g. on a full outbound queue
+     */
+    public CompletableFuture<String> createStripeLinkAsync(long chatId, ProductInfo info) {
+        var future = new CompletableFuture<String>();
+        // Retries stop at the same deadline the caller is told the request timed out
+        var deadline = System.nanoTime() + stripeConfig.timeout().toNanos();
+        try {
+            executor.execute(
+                    () -> {
+                        try {
+                            future.complete(createStripeLink(chatId, info, deadline));
+                        } catch (StripeException | RuntimeException e) {
+                            future.completeExceptionally(e);
+                        }
+                    });
+        } catch (RejectedExecutionException e) {
+            future.completeExceptionally(e);
+            return future;
+        }
+        // A timeout completes the future on the JDK's single delayer thread; hop off it before any
+        // caller's callback can run there
+        return future.orTimeout(stripeConfig.timeout().toMillis(), TimeUnit.MILLISECONDS)
+                .whenCompleteAsync((url, failure) -> { }, callbackExecutor);
     }
 
     /**
-     * Creates a Stripe Checkout Session and returns the payment link.
+     * Returns a Stripe Checkout link for the product, reusing a recent identical link of the same
+     * chat or an identical creation already in progress.
      *
-     * @param info the product information to include in the payment
+     * @param chatId the chat the link is for
+     * @param info   the product information to include in the payment
      * @return the URL to the Stripe Checkout session
-     * @throws StripeException if Stripe API call fails
+     * @throws StripeException            if Stripe API call fails after retries, or the configured
+     *                                    timeout passes first
+     * @throws StripeUnavailableException if the circuit is open
+     */
+    public String createStripeLink(long chatId, ProductInfo info) throws StripeException {
+        return createStripeLink(
+                chatId, info, System.nanoTime() + stripeConfig.timeout().toNanos());
+    }
+
+    private String createStripeLink(long chatId, ProductInfo info, long deadline)
+            throws StripeException {
+        var key = LinkKey.of(chatId, info, stripeConfig);
+        var cached = linkCache.get(key, System.currentTimeMillis());
+        if (cached != null) {
+            return cached;
+        }
+
+        var flight = new CompletableFuture<String>();
+        var existing = inFlight.putIfAbsent(key, flight);
+        if (existing != null) {
+            return await(existing);
+        }
+
+        try {
+            // A flight for this key may have finished between the cache check and putIfAbsent
+            var now = System.currentTimeMillis();
+            var url = linkCache.get(key, now);
+            if (url == null) {
+                var expiresAt = now + stripeConfig.linkExpiry().toMillis();
+                url = createSession(key, info, expiresAt / 1000, deadline);
+                linkCache.put(key, url, now + stripeConfig.linkExpiry().toMillis() / 2);
+            }
+            flight.complete(url);
+            return url;
+        } catch (StripeException | RuntimeException e) {
+            flight.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, flight);
+        }
+    }
+
+    /**
+     * Returns the number of retried Stripe calls since startup.
+     */
+    public long retryCount() {
+        return retryCount.get();
+    }
+
+    /**
+     * Returns the number of calls refused because the circuit was open.
+     */
+    public long rejectedCount() {
+        return rejectedCount.get();
+    }
+
+    /**
+     * Returns the number of circuit breaker state changes since startup.
+     */
+    public long breakerTransitionCount() {
+        return circuitBreaker.transitionCount();
+    }
+
+    /**
+     * Returns the circuit breaker state: CLOSED, OPEN or HALF_OPEN.
      */
-    public String createStripeLink(ProductInfo info) throws StripeException {
-        var productData =
-                SessionCreateParams.LineItem.PriceData.ProductData.builder().setName(info.name()).build();
+    public String breakerState() {
+        return circuitBreaker.state().name();
+    }
 
-        var priceData =
-                SessionCreateParams.LineItem.PriceData.builder()
-                        .setCurrency(info.currency())
-                        .setUnitAmount(info.price())
-                        .setProductData(productData)
-                        .build();
+    /**
+     * Creates a Stripe Checkout Session and returns the payment link, retrying transient failures
+     * under one idempotency key. The line item references a catalog Price when the catalog is
+     * enabled and carries inline price data otherwise.
+     *
+     * @param key       identity of the link, used to derive the idempotency key
+     * @param info      the product information to include in the payment
+     * @param expiresAt epoch second at which the session expires
+     * @param deadline  {@link System#nanoTime} by which all Stripe calls for the link must finish
+     * @return the URL to the Stripe Checkout session
+     * @throws StripeException if Stripe API call fails
+     */
+    private String createSession(LinkKey key, ProductInfo info, long expiresAt, long deadline)
+            throws StripeException {
+        var lineItem = SessionCreateParams.LineItem.builder().setQuantity((long) info.quantity());
+        String lookupKey = null;
+        String priceId = null;
+        if (priceCatalog.enabled()) {
+            lookupKey = PriceCatalog.lookupKey(info.name(), info.currency(), info.price());
+            priceId = resolvePrice(lookupKey, info, deadline);
+            lineItem.setPrice(priceId);
+        } else {
+            var productData =
+                    SessionCreateParams.LineItem.PriceData.ProductData.builder()
+                            .setName(info.name())
+                            .build();
 
-        var lineItem =
-                SessionCreateParams.LineItem.builder()
-                        .setQuantity((long) info.quantity())
-                        .setPriceData(priceData)
-                        .build();
+            var priceData =
+                    SessionCreateParams.LineItem.PriceData.builder()
+                            .setCurrency(info.currency())
+                            .setUnitAmount(info.price())
+                            .setProductData(productData)
+                            .build();
+            lineItem.setPriceData(priceData);
+        }
 
         var params =
                 SessionCreateParams.builder()
-                        .addLineItem(lineItem)
+                        .addLineItem(lineItem.build())
                         .addPaymentMethodType(SessionCreateParams.PaymentMethodType.CARD)
                         .setMode(SessionCreateParams.Mode.PAYMENT)
                         .setSuccessUrl(stripeConfig.successUrl())
-                        .setCancelUrl(stripeConfig.cancelUrl())
-                        .build();
+                        .setCancelUrl(stripeConfig.cancelUrl());
+        // A full 24 hours is Stripe's default; sending it could exceed the limit by clock skew
+        if (stripeConfig.linkExpiry().compareTo(MAX_LINK_EXPIRY) < 0) {
+            params.setExpiresAt(expiresAt);
+        }
+
+        try {
+            var request = params.build();
+            return call(
+                            idempotencyKey(key, expiresAt),
+                            deadline,
+                            options -> Session.create(request, options))
+                    .getUrl();
+        } catch (InvalidRequestException e) {
+            if (lookupKey != null && PRICE_PARAM.equals(e.getParam())) {
+                // The Price was archived or deleted; replace it next time instead of reusing it
+                priceCatalog.remove(lookupKey);
+                synchronized (rejectedPrices) {
+                    rejectedPrices.put(lookupKey, priceId);
+                }
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the ID of the reusable Price for the product: from the local index, else the active
+     * Price carrying its lookup key, else a newly created one.
+     *
+     * <p>A new Price takes the lookup key over from an archived or rejected holder. Its idempotency
+     * key names the holder it replaces, so concurrent creations still collapse into one Price, but
+     * a replacement is never answered with the Price it is meant to replace.
+     */
+    private String resolvePrice(String lookupKey, ProductInfo info, long deadline)
+            throws StripeException {
+        var priceId = priceCatalog.get(lookupKey);
+        if (priceId != null) {
+            return priceId;
+        }
+
+        // Lookup keys are unique, so this is the one Price holding it, active or archived
+        var listParams = PriceListParams.builder().addLookupKey(lookupKey).setLimit(1L).build();
+        var existing = call(null, deadline, options -> Price.list(listParams, options)).getData();
+        var holder = existing.isEmpty() ? null : existing.get(0);
+        String rejected;
+        synchronized (rejectedPrices) {
+            rejected = rejectedPrices.get(lookupKey);
+        }
+        if (holder != null
+                && Boolean.TRUE.equals(holder.getActive())
+                && !holder.getId().equals(rejected)) {
+            priceId = holder.getId();
+        } else {
+            var createParams =
+                    PriceCreateParams.builder()
+                            .setCurrency(info.currency())
+                            .setUnitAmount(info.price())
+                            .setLookupKey(lookupKey)
+                            .setTransferLookupKey(true)
+                            .setProductData(
+                                    PriceCreateParams.ProductData.builder()
+                                            .setName(info.name().strip())
+                                            .build())
+                            .build();
+            var idempotencyKey = "price-" + lookupKey;
+            if (holder != null) {
+                idempotencyKey += "-" + holder.getId();
+            }
+            priceId =
+                    call(
+                                    idempotencyKey,
+                                    deadline,
+                                    options -> Price.create(createParams, options))
+                            .getId();
+            synchronized (rejectedPrices) {
+                rejectedPrices.remove(lookupKey);
+            }
+            log.info("Created catalog price {} for '{}'", priceId, info.name());
+        }
+        priceCatalog.put(lookupKey, priceId);
+        return priceId;
+    }
+
+    /**
+     * Makes a Stripe call through the circuit breaker, retrying transient failures with the same
+     * idempotency key. Each attempt may only read for the time left until the deadline, and no
+     * retry is made once a backoff would pass it, so no attempt outlives the caller's timeout.
+     *
+     * @param idempotencyKey key sent with every attempt, or null for read-only calls
+     * @param deadline       {@link System#nanoTime} after which no attempt is started
+     * @param request        the call, given the request options to use
+     * @return the call's result
+     * @throws StripeException             if the call fails after retries or the deadline passed
+     * @throws StripeUnavailableException if the circuit is open
+     */
+    private <T> T call(String idempotencyKey, long deadline, StripeCall<T> request)
+            throws StripeException {
+        for (var attempt = 0; ; attempt++) {
+            var remainingMillis = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            if (remainingMillis <= 0) {
+                throw new ApiConnectionException("Stripe call timed out before it could be made");
+            }
+            // Retries are made here, not by the SDK, so they go through the circuit breaker
+            var requestOptions =
+                    RequestOptions.builder()
+                            .setIdempotencyKey(idempotencyKey)
+                            .setMaxNetworkRetries(0)
+                            .setReadTimeout((int) Math.min(remainingMillis, Integer.MAX_VALUE))
+                            .build();
+
+            if (!circuitBreaker.tryAcquire()) {
+                rejectedCount.incrementAndGet();
+                throw new StripeUnavailableException("Stripe circuit is open");
+            }
+            try {
+                var result = request.execute(requestOptions);
+                circuitBreaker.onSuccess();
+                return result;
+            } catch (StripeException e) {
+                if (!isTransient(e)) {
+                    // Stripe answered; the request itself was wrong
+                    circuitBreaker.onSuccess();
+                    throw e;
+                }
+                circuitBreaker.onFailure();
+                if (attempt >= retryConfig.maxRetries() || !backOff(attempt, deadline)) {
+                    throw e;
+                }
+                retryCount.incrementAndGet();
+                log.warn(
+                        "Retrying Stripe call after attempt {} failed: {}",
+                        attempt + 1,
+                        e.getMessage());
+            } catch (RuntimeException e) {
+                circuitBreaker.onFailure();
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Sleeps for a random time up to the exponential backoff cap of the attempt ("full jitter"), so
+     * callers that failed together do not retry together.
+     *
+     * @return false if interrupted or if the sleep would reach the deadline, in which case no retry
+     *     should be made
+     */
+    private boolean backOff(int attempt, long deadline) {
+        var cap =
+                Math.min(
+                        retryConfig.maxBackoff().toMillis(),
+                        retryConfig.baseBackoff().toMillis() << Math.min(attempt, 20));
+        var sleepMillis = ThreadLocalRandom.current().nextLong(cap + 1);
+        if (System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(sleepMillis) >= deadline) {
+            return false;
+        }
+        try {
+            Thread.sleep(sleepMillis);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Network errors, rate limiting, lock conflicts and server errors may succeed on a later try.
+     */
+    private static boolean isTransient(StripeException e) {
+        if (e instanceof ApiConnectionException || e instanceof RateLimitException) {
+            return true;
+        }
+        var status = e.getStatusCode();
+        return status != null && (status == 409 || status >= 500);
+    }
+
+    /**
+     * Derives the idempotency key from everything sent to Stripe, so the same request always
+     * carries the same key and a different one never does.
+     */
+    private static String idempotencyKey(LinkKey key, long expiresAt) {
+        try {
+            var digest = MessageDigest.getInstance("SHA-256");
+            var material =
+                    String.join(
+                            "\u0000",
+                            Long.toString(key.chatId()),
+                            Long.toString(key.price()),
+                            String.valueOf(key.currency()),
+                            String.valueOf(key.name()),
+                            Integer.toString(key.quantity()),
+                            key.successUrl(),
+                            key.cancelUrl(),
+                            Long.toString(expiresAt));
+            var hash = digest.digest(material.getBytes(StandardCharsets.UTF_8));
+            return "checkout-" + HexFormat.of().formatHex(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * Waits for another caller's creation of the same link and surfaces its outcome as if this
+     * caller had made the call.
+     */
+    private static String await(CompletableFuture<String> flight) throws StripeException {
+        try {
+            return flight.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof StripeException stripeException) {
+                throw stripeException;
+            }
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * A Stripe API call parameterized by its request options.
+     */
+    @FunctionalInterface
+    private interface StripeCall<T> {
+        T execute(RequestOptions options) throws StripeException;
+    }
+
+    /**
+     * Identity of a Checkout link: everything that ends up in the session, normalized the way
+     * Stripe treats it (currency codes are case-insensitive), plus the chat it was made for.
+     */
+    private record LinkKey(
+            long chatId,
+            long price,
+            String currency,
+            String name,
+            int quantity,
+            String successUrl,
+            String cancelUrl) {
+
+        static LinkKey of(long chatId, ProductInfo info, StripeConfig config) {
+            return new LinkKey(
+                    chatId,
+                    info.price(),
+                    info.currency() != null ? info.currency().toLowerCase(Locale.ROOT) : null,
+                    info.name() != null ? info.name().strip() : null,
+                    info.quantity(),
+                    config.successUrl(),
+                    config.cancelUrl());
+        }
+    }
+
+    /**
+     * Names pool threads so they are recognizable in logs and thread dumps.
+     */
+    private static final class StripeThreadFactory implements ThreadFactory {
+        private final String prefix;
+        private final AtomicInteger counter = new AtomicInteger();
+
+        private StripeThreadFactory(String prefix) {
+            this.prefix = prefix;
+        }
 
-        var session = Session.create(params);
-        return session.getUrl();
+        @Override
+        public Thread newThread(Runnable runnable) {
+            var thread = new Thread(runnable, prefix + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
     }
 }
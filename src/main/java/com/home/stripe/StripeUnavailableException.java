@@ -0,0 +1,19 @@
+package com.home.stripe;
+
+import java.io.Serial;
+
+/**
+ * Thrown instead of calling Stripe while the circuit breaker considers it unavailable.
+ */
+public class StripeUnavailableException extends RuntimeException {
+
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * @param message description of why the call was refused
+     */
+    public StripeUnavailableException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,83 @@
+package com.home.model;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Measures {@link MoneyParser#parse} against the previous split-and-parseDouble approach: time per
+ * parse and bytes allocated per parse on the calling thread, over a mix of typical inputs.
+ *
+ * <p>Runs a warm-up pass before measuring so both paths are compiled. Reads
+ * {@code bench.iterations} (2,000,000) and {@code bench.rounds} (5).
+ */
+public final class MoneyParserBenchmark {
+
+    private static final String[] INPUTS = {
+            "10.00 USD", "19.99 eur", "500 JPY", "1 234,56 EUR", "EUR 5", "1250.75 gbp",
+            "1.234 KWD", "7 chf"
+    };
+
+    private static long sink;
+
+    private MoneyParserBenchmark() {
+    }
+
+    public static void main(String[] args) {
+        var iterations = Integer.getInteger("bench.iterations", 2_000_000);
+        var rounds = Integer.getInteger("bench.rounds", 5);
+        var threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+        run("warm-up parser", iterations, MoneyParserBenchmark::parseExact, threads);
+        run("warm-up legacy", iterations, MoneyParserBenchmark::parseLegacy, threads);
+        for (var round = 1; round <= rounds; round++) {
+            run("MoneyParser  #" + round, iterations, MoneyParserBenchmark::parseExact, threads);
+            run("split+double #" + round, iterations, MoneyParserBenchmark::parseLegacy, threads);
+        }
+        System.out.println("(checksum " + sink + ")");
+    }
+
+    private static void run(
+            String label,
+            int iterations,
+            Parser parser,
+            com.sun.management.ThreadMXBean threads) {
+        var threadId = Thread.currentThread().getId();
+        var bytesBefore = threads.getThreadAllocatedBytes(threadId);
+        var start = System.nanoTime();
+        long checksum = 0;
+        for (var i = 0; i < iterations; i++) {
+            checksum += parser.parse(INPUTS[i & 7]);
+        }
+        var elapsed = System.nanoTime() - start;
+        var bytes = threads.getThreadAllocatedBytes(threadId) - bytesBefore;
+        sink += checksum;
+        System.out.printf(
+                "%-16s %6.1f ns/op %6.1f B/op%n",
+                label, (double) elapsed / iterations, (double) bytes / iterations);
+    }
+
+    private static long parseExact(String input) {
+        var money = MoneyParser.parse(input);
+        return money.minorUnits() + money.currency().length();
+    }
+
+    /**
+     * The parsing PriceInputHandler did before MoneyParser, adjusted to accept the same inputs.
+     */
+    private static long parseLegacy(String input) {
+        var parts = input.trim().split(" ");
+        var amount = parts.length == 2 ? parts[0] : parts[0] + parts[1];
+        var currency = parts[parts.length - 1].toLowerCase();
+        if (Character.isLetter(amount.charAt(0))) {
+            var swap = amount;
+            amount = currency;
+            currency = swap.toLowerCase();
+        }
+        var price = Double.parseDouble(amount.replace(",", "."));
+        return (long) (price * 100) + currency.length();
+    }
+
+    @FunctionalInterface
+    private interface Parser {
+        long parse(String input);
+    }
+}
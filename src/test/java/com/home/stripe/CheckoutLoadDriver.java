@@ -0,0 +1,213 @@
+package com.home.stripe;
+
+import com.home.bot.common.api.MessageSender;
+import com.home.bot.session.InMemorySessionStore;
+import com.home.bot.state.QuantityInputHandler;
+import com.home.config.JournalConfig;
+import com.home.config.PriceCatalogConfig;
+import com.home.config.SessionConfig;
+import com.home.config.StripeConfig;
+import com.home.config.StripeRetryConfig;
+import com.home.model.ProductInfo;
+import com.home.model.State;
+import org.telegram.telegrambots.meta.api.objects.replykeyboard.ReplyKeyboard;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Drives the checkout step end to end against {@link FakeStripeServer}: thousands of chats send
+ * their quantity at once, and the time from the quantity message to the edited reply is measured
+ * per chat. Prints latency percentiles, the mix of replies and the Stripe client's own counters.
+ *
+ * <p>Everything runs in-process with no network or Telegram access. Besides the
+ * {@code fake.stripe.*} properties of {@link FakeStripeServer.Settings}, reads
+ * {@code load.checkouts} (2000), {@code load.products} (50), {@code load.threads} (32),
+ * {@code load.queue} (2000) and {@code load.catalog} (true).
+ */
+public final class CheckoutLoadDriver {
+
+    private static final String SUCCESS_PREFIX = "Here is your payment link";
+
+    private CheckoutLoadDriver() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        var checkouts = Integer.getInteger("load.checkouts", 2000);
+        var products = Integer.getInteger("load.products", 50);
+        var settings = FakeStripeServer.Settings.fromSystemProperties();
+        var server = new FakeStripeServer(settings);
+        server.start();
+
+        var stripeConfig =
+                new StripeConfig(
+                        "sk_test_load",
+                        "https://example.com/success",
+                        "https://example.com/cancel",
+                        Duration.ofMinutes(60),
+                        1000,
+                        Integer.getInteger("load.threads", 32),
+                        Integer.getInteger("load.queue", 2000),
+                        Duration.ofSeconds(30),
+                        Duration.ofSeconds(10),
+                        server.baseUrl());
+        var retryConfig =
+                new StripeRetryConfig(
+                        2, Duration.ofMillis(250), Duration.ofMillis(4000), 5, Duration.ofSeconds(30));
+        var catalogSize = Boolean.parseBoolean(System.getProperty("load.catalog", "true")) ? 10_000 : 0;
+        var catalog = new PriceCatalog(new PriceCatalogConfig(null, catalogSize));
+        var httpClient =
+                new PooledStripeHttpClient(stripeConfig.connectTimeout(), stripeConfig.timeout());
+        var linkCreator = new StripeLinkCreator(stripeConfig, retryConfig, catalog, httpClient);
+        var sessionStore =
+                new InMemorySessionStore(
+                        new SessionConfig(Duration.ofMinutes(30), false, checkouts * 2),
+                        new JournalConfig(null, 0, 0));
+
+        var startedAt = new ConcurrentHashMap<Long, Long>();
+        var latencies = new long[checkouts];
+        var replies = new ConcurrentHashMap<String, AtomicInteger>();
+        var done = new CountDownLatch(checkouts);
+        var sender = new RecordingSender(startedAt, latencies, replies, done);
+        var handler = new QuantityInputHandler(sessionStore, linkCreator, sender);
+
+        for (long chatId = 0; chatId < checkouts; chatId++) {
+            sessionStore.start(chatId);
+            var info = new ProductInfo(500 + chatId % products, "usd", "Product " + chatId % products, 0);
+            sessionStore.transition(
+                    chatId, sessionStore.get(chatId), State.WAITING_FOR_QUANTITY, info);
+        }
+
+        var wallStart = System.nanoTime();
+        var submitters = Executors.newFixedThreadPool(64);
+        for (long chatId = 0; chatId < checkouts; chatId++) {
+            var id = chatId;
+            submitters.execute(
+                    () -> {
+                        startedAt.put(id, System.nanoTime());
+                        handler.handle(id, sessionStore.get(id), "2");
+                    });
+        }
+        submitters.shutdown();
+        if (!done.await(5, TimeUnit.MINUTES)) {
+            System.out.printf("Gave up with %d checkouts unanswered%n", done.getCount());
+        }
+        var wallMillis = (System.nanoTime() - wallStart) / 1_000_000;
+
+        Arrays.sort(latencies);
+        System.out.printf(
+                "%d checkouts in %d ms (%.0f/s)%n",
+                checkouts, wallMillis, checkouts * 1000.0 / Math.max(wallMillis, 1));
+        System.out.printf(
+                "reply latency ms: p50=%d p90=%d p99=%d max=%d%n",
+                percentile(latencies, 0.50),
+                percentile(latencies, 0.90),
+                percentile(latencies, 0.99),
+                latencies[latencies.length - 1]);
+        replies.forEach((reply, count) -> System.out.printf("%6d  %s%n", count.get(), reply));
+        System.out.printf(
+                "stripe: %d requests (avg %.1f ms, max %.1f ms), %d retries, %d rejected, breaker %s"
+                        + " after %d transitions%n",
+                httpClient.requestCount(),
+                httpClient.averageLatencyMillis(),
+                httpClient.maxLatencyMillis(),
+                linkCreator.retryCount(),
+                linkCreator.rejectedCount(),
+                linkCreator.breakerState(),
+                linkCreator.breakerTransitionCount());
+        System.out.printf(
+                "fake server: %d requests, %d injected 500s, %d rate-limited%n",
+                server.requestCount(), server.injectedErrorCount(), server.rateLimitedCount());
+
+        server.stop();
+        System.exit(0);
+    }
+
+    private static long percentile(long[] sorted, double quantile) {
+        return sorted[Math.min(sorted.length - 1, (int) (sorted.length * quantile))];
+    }
+
+    /**
+     * Stands in for Telegram: records when each chat's placeholder is edited into its final reply.
+     */
+    private static final class RecordingSender implements MessageSender {
+        private final Map<Long, Long> startedAt;
+        private final long[] latencies;
+        private final Map<String, AtomicInteger> replies;
+        private final CountDownLatch done;
+        private final AtomicInteger answered = new AtomicInteger();
+        private final AtomicInteger messageIds = new AtomicInteger();
+
+        private RecordingSender(
+                Map<Long, Long> startedAt,
+                long[] latencies,
+                Map<String, AtomicInteger> replies,
+                CountDownLatch done) {
+            this.startedAt = startedAt;
+            this.latencies = latencies;
+            this.replies = replies;
+            this.done = done;
+        }
+
+        @Override
+        public void send(Long chatId, String text) {
+            record(chatId, text);
+        }
+
+        @Override
+        public void send(Long chatId, String text, ReplyKeyboard keyboard) {
+            record(chatId, text);
+        }
+
+        @Override
+        public void answerCallback(String callbackQueryId, String text) {
+        }
+
+        @Override
+        public CompletableFuture<Integer> sendAsync(Long chatId, String text) {
+            send(chatId, text);
+            return CompletableFuture.completedFuture(messageIds.incrementAndGet());
+        }
+
+        @Override
+        public CompletableFuture<Integer> sendEditable(Long chatId, String text) {
+            return CompletableFuture.completedFuture(messageIds.incrementAndGet());
+        }
+
+        @Override
+        public CompletableFuture<Integer> sendEditable(
+                Long chatId, String text, ReplyKeyboard keyboard) {
+            record(chatId, text);
+            return CompletableFuture.completedFuture(messageIds.incrementAndGet());
+        }
+
+        @Override
+        public void edit(Long chatId, Integer messageId, String text) {
+            record(chatId, text);
+        }
+
+        @Override
+        public CompletableFuture<Void> editAsync(Long chatId, Integer messageId, String text) {
+            edit(chatId, messageId, text);
+            return CompletableFuture.completedFuture(null);
+        }
+
+        private void record(Long chatId, String text) {
+            var elapsed = (System.nanoTime() - startedAt.get(chatId)) / 1_000_000;
+            var slot = answered.getAndIncrement();
+            if (slot < latencies.length) {
+                latencies[slot] = elapsed;
+            }
+            var reply = text.startsWith(SUCCESS_PREFIX) ? SUCCESS_PREFIX : text;
+            replies.computeIfAbsent(reply, k -> new AtomicInteger()).incrementAndGet();
+            done.countDown();
+        }
+    }
+}
@@ -0,0 +1,289 @@
+package com.home.stripe;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Offline stand-in for the parts of the Stripe API the bot uses: creating Checkout Sessions and
+ * listing and creating Prices. Meant for load tests; point the bot at it with
+ * {@code payments.stripe.api-base=http://localhost:<port>}.
+ *
+ * <p>Responses are delayed by a log-normal latency distribution, a configurable share of requests
+ * fail with 500, and periodic bursts answer every request with 429. Idempotency keys are honored
+ * like Stripe does: a repeated key replays the stored response instead of creating another object.
+ * Latency is simulated on a scheduler, so thousands of requests can be pending without a thread
+ * each.
+ *
+ * <p>Run standalone with
+ * {@code mvn -q test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.home.stripe.FakeStripeServer}; settings are read from the system properties
+ * listed in {@link Settings#fromSystemProperties()}.
+ */
+public class FakeStripeServer {
+
+    private static final Logger log = LoggerFactory.getLogger(FakeStripeServer.class);
+
+    /**
+     * Behavior of the stand-in.
+     *
+     * @param port          port to listen on, 0 for any free port
+     * @param medianMillis  median response latency
+     * @param sigma         spread of the log-normal latency; 0 makes every response take the median
+     * @param errorRate     share of requests answered with 500, between 0 and 1
+     * @param burstEveryMs  period of 429 bursts, 0 for none
+     * @param burstMillis   length of each 429 burst
+     */
+    public record Settings(
+            int port,
+            long medianMillis,
+            double sigma,
+            double errorRate,
+            long burstEveryMs,
+            long burstMillis) {
+
+        /**
+         * Reads {@code fake.stripe.port} (12111), {@code fake.stripe.latency.median-ms} (250),
+         * {@code fake.stripe.latency.sigma} (0.5), {@code fake.stripe.error-rate} (0.01),
+         * {@code fake.stripe.burst.every-ms} (0) and {@code fake.stripe.burst.ms} (1000).
+         */
+        public static Settings fromSystemProperties() {
+            return new Settings(
+                    Integer.getInteger("fake.stripe.port", 12111),
+                    Long.getLong("fake.stripe.latency.median-ms", 250),
+                    Double.parseDouble(System.getProperty("fake.stripe.latency.sigma", "0.5")),
+                    Double.parseDouble(System.getProperty("fake.stripe.error-rate", "0.01")),
+                    Long.getLong("fake.stripe.burst.every-ms", 0),
+                    Long.getLong("fake.stripe.burst.ms", 1000));
+        }
+    }
+
+    private final Settings settings;
+    private final Map<String, StoredResponse> idempotentResponses = new ConcurrentHashMap<>();
+    private final Map<String, String> pricesByLookupKey = new ConcurrentHashMap<>();
+    private final AtomicLong ids = new AtomicLong();
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong injectedErrors = new AtomicLong();
+    private final AtomicLong rateLimited = new AtomicLong();
+    private final long startedAt = System.currentTimeMillis();
+
+    private HttpServer server;
+    private ExecutorService handlers;
+    private ScheduledExecutorService responder;
+
+    public FakeStripeServer(Settings settings) {
+        this.settings = settings;
+    }
+
+    /**
+     * Starts listening.
+     *
+     * @throws IOException if the port cannot be bound
+     */
+    public void start() throws IOException {
+        handlers = Executors.newFixedThreadPool(4);
+        responder = Executors.newScheduledThreadPool(4);
+        server = HttpServer.create(new InetSocketAddress("localhost", settings.port()), 1024);
+        server.createContext("/", this::handle);
+        server.setExecutor(handlers);
+        server.start();
+        log.info("Fake Stripe listening on {}", baseUrl());
+    }
+
+    /**
+     * Stops listening and drops pending responses.
+     */
+    public void stop() {
+        server.stop(0);
+        responder.shutdownNow();
+        handlers.shutdownNow();
+    }
+
+    /**
+     * Returns the URL to use as the Stripe API base.
+     */
+    public String baseUrl() {
+        return "http://localhost:" + server.getAddress().getPort();
+    }
+
+    public long requestCount() {
+        return requests.get();
+    }
+
+    public long injectedErrorCount() {
+        return injectedErrors.get();
+    }
+
+    public long rateLimitedCount() {
+        return rateLimited.get();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        var form = parseForm(exchange);
+        var response = respond(exchange, form);
+        var delay = latencyMillis();
+        responder.schedule(() -> send(exchange, response), delay, TimeUnit.MILLISECONDS);
+    }
+
+    private StoredResponse respond(HttpExchange exchange, Map<String, String> form) {
+        var authorization = exchange.getRequestHeaders().getFirst("Authorization");
+        if (authorization == null || !authorization.startsWith("Bearer sk_")) {
+            return error(401, "invalid_request_error", "Invalid API Key provided");
+        }
+        if (inBurst()) {
+            rateLimited.incrementAndGet();
+            return error(429, "invalid_request_error", "Request rate limit exceeded");
+        }
+        if (ThreadLocalRandom.current().nextDouble() < settings.errorRate()) {
+            injectedErrors.incrementAndGet();
+            return error(500, "api_error", "Injected failure");
+        }
+
+        var idempotencyKey = exchange.getRequestHeaders().getFirst("Idempotency-Key");
+        if (idempotencyKey != null) {
+            var stored = idempotentResponses.get(idempotencyKey);
+            if (stored != null) {
+                return stored;
+            }
+        }
+
+        var method = exchange.getRequestMethod();
+        var path = exchange.getRequestURI().getPath();
+        StoredResponse response;
+        if ("POST".equals(method) && "/v1/checkout/sessions".equals(path)) {
+            response = createSession(form);
+        } else if ("GET".equals(method) && "/v1/prices".equals(path)) {
+            response = listPrices(form);
+        } else if ("POST".equals(method) && "/v1/prices".equals(path)) {
+            response = createPrice(form);
+        } else {
+            response = error(404, "invalid_request_error", "Unrecognized request URL (" + method + ": " + path + ")");
+        }
+
+        if (idempotencyKey != null && response.status() < 500) {
+            var previous = idempotentResponses.putIfAbsent(idempotencyKey, response);
+            if (previous != null) {
+                return previous;
+            }
+        }
+        return response;
+    }
+
+    private StoredResponse createSession(Map<String, String> form) {
+        if (form.get("line_items[0][price]") == null
+                && form.get("line_items[0][price_data][unit_amount]") == null) {
+            return error(400, "invalid_request_error", "Missing required param: line_items[0][price].");
+        }
+        var price = form.get("line_items[0][price]");
+        if (price != null && !pricesByLookupKey.containsValue(price)) {
+            return error(400, "invalid_request_error", "No such price: '" + price + "'");
+        }
+        var id = "cs_test_" + ids.incrementAndGet();
+        return new StoredResponse(
+                200,
+                "{\"id\":\"" + id + "\",\"object\":\"checkout.session\",\"mode\":\"payment\","
+                        + "\"status\":\"open\",\"expires_at\":" + form.getOrDefault("expires_at", "0")
+                        + ",\"url\":\"" + baseUrl() + "/pay/" + id + "\"}");
+    }
+
+    private StoredResponse listPrices(Map<String, String> query) {
+        var priceId = pricesByLookupKey.get(query.getOrDefault("lookup_keys[0]", ""));
+        var data = priceId != null ? priceJson(priceId, query.get("lookup_keys[0]")) : "";
+        return new StoredResponse(
+                200,
+                "{\"object\":\"list\",\"url\":\"/v1/prices\",\"has_more\":false,\"data\":[" + data + "]}");
+    }
+
+    private StoredResponse createPrice(Map<String, String> form) {
+        var lookupKey = form.get("lookup_key");
+        var id = "price_" + ids.incrementAndGet();
+        if (lookupKey != null && pricesByLookupKey.putIfAbsent(lookupKey, id) != null) {
+            return error(
+                    400,
+                    "invalid_request_error",
+                    "A price (`" + pricesByLookupKey.get(lookupKey) + "`) already uses that lookup key.");
+        }
+        return new StoredResponse(200, priceJson(id, lookupKey));
+    }
+
+    private boolean inBurst() {
+        if (settings.burstEveryMs() <= 0) {
+            return false;
+        }
+        return (System.currentTimeMillis() - startedAt) % settings.burstEveryMs() < settings.burstMillis();
+    }
+
+    private long latencyMillis() {
+        var gaussian = ThreadLocalRandom.current().nextGaussian();
+        return Math.round(settings.medianMillis() * Math.exp(settings.sigma() * gaussian));
+    }
+
+    private void send(HttpExchange exchange, StoredResponse response) {
+        try (exchange) {
+            var body = response.body().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.getResponseHeaders().set("Request-Id", "req_" + ids.incrementAndGet());
+            exchange.sendResponseHeaders(response.status(), body.length);
+            exchange.getResponseBody().write(body);
+        } catch (IOException e) {
+            log.debug("Client went away before the response: {}", e.getMessage());
+        }
+    }
+
+    private static String priceJson(String id, String lookupKey) {
+        return "{\"id\":\"" + id + "\",\"object\":\"price\",\"active\":true,\"lookup_key\":"
+                + (lookupKey != null ? "\"" + lookupKey + "\"" : "null") + "}";
+    }
+
+    private static StoredResponse error(int status, String type, String message) {
+        return new StoredResponse(
+                status,
+                "{\"error\":{\"type\":\"" + type + "\",\"message\":\"" + message.replace("\"", "'") + "\"}}");
+    }
+
+    /**
+     * Decodes an x-www-form-urlencoded body, or the query string for GET requests.
+     */
+    private static Map<String, String> parseForm(HttpExchange exchange) throws IOException {
+        var raw =
+                "GET".equals(exchange.getRequestMethod())
+                        ? exchange.getRequestURI().getRawQuery()
+                        : new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+        var form = new HashMap<String, String>();
+        if (raw == null || raw.isEmpty()) {
+            return form;
+        }
+        for (var pair : raw.split("&")) {
+            var separator = pair.indexOf('=');
+            var key = separator >= 0 ? pair.substring(0, separator) : pair;
+            var value = separator >= 0 ? pair.substring(separator + 1) : "";
+            form.put(
+                    URLDecoder.decode(key, StandardCharsets.UTF_8),
+                    URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+        return form;
+    }
+
+    private record StoredResponse(int status, String body) {
+    }
+
+    public static void main(String[] args) throws IOException {
+        new FakeStripeServer(Settings.fromSystemProperties()).start();
+    }
+}